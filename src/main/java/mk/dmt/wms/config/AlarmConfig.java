@@ -0,0 +1,77 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for alarm episodes.
+ * <p>
+ * An episode is raised once a sensor has been across a threshold for {@code raise-after}, and
+ * cleared once it has been back inside the threshold by at least the hysteresis of its type for
+ * {@code clear-after}. Measurement timestamps are used, not arrival time.
+ * <p>
+ * Severity is the distance past the threshold relative to the threshold itself, or to the
+ * severity scale of the type for thresholds closer to zero than that, e.g. a cold room's
+ * {@code min: 0}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "alarm")
+public class AlarmConfig {
+
+    private Duration raiseAfter = Duration.ZERO;
+    private Duration clearAfter = Duration.ofSeconds(30);
+    private double temperatureHysteresis = 0.5;
+    private double humidityHysteresis = 2.0;
+    private double temperatureSeverityScale = 10.0;
+    private double humiditySeverityScale = 20.0;
+
+    public Duration getRaiseAfter() {
+        return raiseAfter;
+    }
+
+    public void setRaiseAfter(Duration raiseAfter) {
+        this.raiseAfter = raiseAfter;
+    }
+
+    public Duration getClearAfter() {
+        return clearAfter;
+    }
+
+    public void setClearAfter(Duration clearAfter) {
+        this.clearAfter = clearAfter;
+    }
+
+    public double getTemperatureHysteresis() {
+        return temperatureHysteresis;
+    }
+
+    public void setTemperatureHysteresis(double temperatureHysteresis) {
+        this.temperatureHysteresis = temperatureHysteresis;
+    }
+
+    public double getHumidityHysteresis() {
+        return humidityHysteresis;
+    }
+
+    public void setHumidityHysteresis(double humidityHysteresis) {
+        this.humidityHysteresis = humidityHysteresis;
+    }
+
+    public double getTemperatureSeverityScale() {
+        return temperatureSeverityScale;
+    }
+
+    public void setTemperatureSeverityScale(double temperatureSeverityScale) {
+        this.temperatureSeverityScale = temperatureSeverityScale;
+    }
+
+    public double getHumiditySeverityScale() {
+        return humiditySeverityScale;
+    }
+
+    public void setHumiditySeverityScale(double humiditySeverityScale) {
+        this.humiditySeverityScale = humiditySeverityScale;
+    }
+}
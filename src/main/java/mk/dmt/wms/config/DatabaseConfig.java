@@ -8,6 +8,8 @@ import org.springframework.context.annotation.Configuration;
 /**
  * Database configuration for Flyway migrations.
  * Spring Data R2DBC uses reactive connections, but Flyway needs a traditional JDBC DataSource.
+ * Migrations in {@code db/migration} run on every database; those that use vendor-specific
+ * features live in {@code db/vendor/<vendor>}, with the vendor taken from the JDBC URL.
  */
 @Configuration
 public class DatabaseConfig {
@@ -26,8 +28,20 @@ public class DatabaseConfig {
         return new Flyway(Flyway.configure()
                 .baselineOnMigrate(true)
                 .placeholderReplacement(false)
+                .locations("classpath:db/migration", "classpath:db/vendor/" + vendor(url))
                 .dataSource(url, username, password)
         );
     }
+
+    /**
+     * Returns the vendor part of a JDBC URL, e.g. {@code postgresql} for {@code jdbc:postgresql://host/db}.
+     */
+    static String vendor(String jdbcUrl) {
+        String[] parts = jdbcUrl.split(":", 3);
+        if (parts.length < 3 || !parts[0].equals("jdbc")) {
+            throw new IllegalArgumentException("Not a JDBC URL: " + jdbcUrl);
+        }
+        return parts[1];
+    }
 }
 
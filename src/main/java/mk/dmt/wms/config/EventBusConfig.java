@@ -0,0 +1,121 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the measurement event bus.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "event-bus")
+public class EventBusConfig {
+
+    /**
+     * Event bus implementation.
+     */
+    public enum Type {
+        /** A single multicast Reactor sink. */
+        SINK,
+        /** Ring buffers partitioned by sensor id, each drained by its own thread. */
+        PARTITIONED
+    }
+
+    /**
+     * What to do with a batch when the bus buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** Wait up to {@code block-timeout} for room, then drop the batch. */
+        BLOCK,
+        /** Keep the newest batches and drop the oldest buffered ones, per subscriber. */
+        DROP_OLDEST,
+        /** Drop the batch being published. */
+        DROP_NEWEST,
+        /** Append the batch to a file on disk and replay it once there is room again. */
+        SPILL
+    }
+
+    private Type type = Type.SINK;
+    private int bufferSize = 1000;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    private Duration blockTimeout = Duration.ofMillis(10);
+    private String spillDirectory = "spill";
+    private DataSize spillMaxSize = DataSize.ofMegabytes(256);
+    private Duration spillDrainInterval = Duration.ofMillis(100);
+    private int partitions = Runtime.getRuntime().availableProcessors();
+    private int ringSize = 8192;
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public Duration getBlockTimeout() {
+        return blockTimeout;
+    }
+
+    public void setBlockTimeout(Duration blockTimeout) {
+        this.blockTimeout = blockTimeout;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public DataSize getSpillMaxSize() {
+        return spillMaxSize;
+    }
+
+    public void setSpillMaxSize(DataSize spillMaxSize) {
+        this.spillMaxSize = spillMaxSize;
+    }
+
+    public Duration getSpillDrainInterval() {
+        return spillDrainInterval;
+    }
+
+    public void setSpillDrainInterval(Duration spillDrainInterval) {
+        this.spillDrainInterval = spillDrainInterval;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public void setRingSize(int ringSize) {
+        this.ringSize = ringSize;
+    }
+}
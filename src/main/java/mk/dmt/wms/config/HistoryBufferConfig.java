@@ -0,0 +1,32 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration properties for the in-memory recent-history buffers.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "history-buffer")
+public class HistoryBufferConfig {
+
+    private int capacityPerSensor = 128;
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    public int getCapacityPerSensor() {
+        return capacityPerSensor;
+    }
+
+    public void setCapacityPerSensor(int capacityPerSensor) {
+        this.capacityPerSensor = capacityPerSensor;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+}
@@ -0,0 +1,42 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for ingest summary logging.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ingest-log")
+public class IngestLogConfig {
+
+    private Duration summaryInterval = Duration.ofSeconds(10);
+    private int sampleRate = 100;
+    private int maxAlarmLinesPerInterval = 20;
+
+    public Duration getSummaryInterval() {
+        return summaryInterval;
+    }
+
+    public void setSummaryInterval(Duration summaryInterval) {
+        this.summaryInterval = summaryInterval;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getMaxAlarmLinesPerInterval() {
+        return maxAlarmLinesPerInterval;
+    }
+
+    public void setMaxAlarmLinesPerInterval(int maxAlarmLinesPerInterval) {
+        this.maxAlarmLinesPerInterval = maxAlarmLinesPerInterval;
+    }
+}
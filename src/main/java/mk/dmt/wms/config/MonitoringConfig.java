@@ -1,10 +1,22 @@
 package mk.dmt.wms.config;
 
+import mk.dmt.wms.model.SensorType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration properties for monitoring thresholds.
+ * <p>
+ * The per-type thresholds are the upper bound of every sensor without a more specific rule.
+ * If {@code rules-file} is set, the thresholds and rules in that JSON file replace these and are
+ * reloaded whenever it changes.
+ * <p>
+ * Window rules evaluate a sliding window of each matching sensor's recent measurements, holding at
+ * most {@code window-capacity} samples per sensor.
  */
 @Configuration
 @ConfigurationProperties(prefix = "monitoring")
@@ -12,6 +24,191 @@ public class MonitoringConfig {
 
     private double temperatureThreshold = 35.0;
     private double humidityThreshold = 50.0;
+    private List<Rule> rules = new ArrayList<>();
+    private String rulesFile;
+    private Duration rulesFilePollInterval = Duration.ofSeconds(5);
+    private List<WindowRule> windowRules = new ArrayList<>();
+    private int windowCapacity = 256;
+
+    /**
+     * Lower and/or upper bound of one sensor, or of one sensor type in one warehouse. Each bound
+     * falls back separately: sensor rule, then warehouse rule, then the per-type threshold.
+     */
+    public static class Rule {
+
+        private String sensorId;
+        private String warehouseId;
+        private SensorType sensorType;
+        private Double min;
+        private Double max;
+
+        public String getSensorId() {
+            return sensorId;
+        }
+
+        public void setSensorId(String sensorId) {
+            this.sensorId = sensorId;
+        }
+
+        public String getWarehouseId() {
+            return warehouseId;
+        }
+
+        public void setWarehouseId(String warehouseId) {
+            this.warehouseId = warehouseId;
+        }
+
+        public SensorType getSensorType() {
+            return sensorType;
+        }
+
+        public void setSensorType(SensorType sensorType) {
+            this.sensorType = sensorType;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+    }
+
+    /**
+     * Alarm rule on a sliding window of the measurements of every sensor it matches: all sensors
+     * of a type, optionally narrowed to one warehouse or one sensor. AVERAGE and RATE_OF_CHANGE
+     * (per minute) alarm outside min/max; TIME_ABOVE alarms when more than {@code percent} of the
+     * window's samples are above {@code level}. {@code hysteresis} defaults to the type's for
+     * AVERAGE and to none otherwise. {@code severityScale} defaults to the type's for AVERAGE, to
+     * max - min for RATE_OF_CHANGE and to 100 for TIME_ABOVE.
+     */
+    public static class WindowRule {
+
+        /**
+         * Windowed value a rule evaluates.
+         */
+        public enum Type {
+            AVERAGE, RATE_OF_CHANGE, TIME_ABOVE
+        }
+
+        private String name;
+        private Type type;
+        private SensorType sensorType;
+        private String warehouseId;
+        private String sensorId;
+        private Duration window = Duration.ofMinutes(5);
+        private Double min;
+        private Double max;
+        private Double level;
+        private Double percent;
+        private Double hysteresis;
+        private Double severityScale;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public void setType(Type type) {
+            this.type = type;
+        }
+
+        public SensorType getSensorType() {
+            return sensorType;
+        }
+
+        public void setSensorType(SensorType sensorType) {
+            this.sensorType = sensorType;
+        }
+
+        public String getWarehouseId() {
+            return warehouseId;
+        }
+
+        public void setWarehouseId(String warehouseId) {
+            this.warehouseId = warehouseId;
+        }
+
+        public String getSensorId() {
+            return sensorId;
+        }
+
+        public void setSensorId(String sensorId) {
+            this.sensorId = sensorId;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+
+        public Double getLevel() {
+            return level;
+        }
+
+        public void setLevel(Double level) {
+            this.level = level;
+        }
+
+        public Double getPercent() {
+            return percent;
+        }
+
+        public void setPercent(Double percent) {
+            this.percent = percent;
+        }
+
+        public Double getHysteresis() {
+            return hysteresis;
+        }
+
+        public void setHysteresis(Double hysteresis) {
+            this.hysteresis = hysteresis;
+        }
+
+        public Double getSeverityScale() {
+            return severityScale;
+        }
+
+        public void setSeverityScale(Double severityScale) {
+            this.severityScale = severityScale;
+        }
+    }
 
     public double getTemperatureThreshold() {
         return temperatureThreshold;
@@ -28,4 +225,44 @@ public class MonitoringConfig {
     public void setHumidityThreshold(double humidityThreshold) {
         this.humidityThreshold = humidityThreshold;
     }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public String getRulesFile() {
+        return rulesFile;
+    }
+
+    public void setRulesFile(String rulesFile) {
+        this.rulesFile = rulesFile;
+    }
+
+    public Duration getRulesFilePollInterval() {
+        return rulesFilePollInterval;
+    }
+
+    public void setRulesFilePollInterval(Duration rulesFilePollInterval) {
+        this.rulesFilePollInterval = rulesFilePollInterval;
+    }
+
+    public List<WindowRule> getWindowRules() {
+        return windowRules;
+    }
+
+    public void setWindowRules(List<WindowRule> windowRules) {
+        this.windowRules = windowRules;
+    }
+
+    public int getWindowCapacity() {
+        return windowCapacity;
+    }
+
+    public void setWindowCapacity(int windowCapacity) {
+        this.windowCapacity = windowCapacity;
+    }
 }
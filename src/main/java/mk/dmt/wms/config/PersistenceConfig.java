@@ -0,0 +1,152 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the measurement write pipeline.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "persistence")
+public class PersistenceConfig {
+
+    /**
+     * How measurement batches are written.
+     */
+    public enum WriteMode {
+        /** One multi-row INSERT per batch. */
+        INSERT,
+        /** Stream each batch with the Postgres COPY protocol; falls back to INSERT on other databases. */
+        COPY
+    }
+
+    private WriteMode writeMode = WriteMode.INSERT;
+    private int batchSize = 500;
+    private Duration batchLinger = Duration.ofMillis(50);
+    private int maxInFlightBatches = 4;
+    private int maxInFlightAlarms = 4;
+    private int retryMaxAttempts = 3;
+    private Duration retryMinBackoff = Duration.ofMillis(100);
+    private Duration retryMaxBackoff = Duration.ofSeconds(2);
+    private String spillDirectory = "spill";
+    private DataSize spillMaxSize = DataSize.ofMegabytes(512);
+    private Duration replayInterval = Duration.ofSeconds(1);
+    private Duration retention = Duration.ofDays(30);
+    private int partitionsAhead = 7;
+    private Duration partitionMaintenanceInterval = Duration.ofHours(1);
+
+    public WriteMode getWriteMode() {
+        return writeMode;
+    }
+
+    public void setWriteMode(WriteMode writeMode) {
+        this.writeMode = writeMode;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getBatchLinger() {
+        return batchLinger;
+    }
+
+    public void setBatchLinger(Duration batchLinger) {
+        this.batchLinger = batchLinger;
+    }
+
+    public int getMaxInFlightBatches() {
+        return maxInFlightBatches;
+    }
+
+    public void setMaxInFlightBatches(int maxInFlightBatches) {
+        this.maxInFlightBatches = maxInFlightBatches;
+    }
+
+    public int getMaxInFlightAlarms() {
+        return maxInFlightAlarms;
+    }
+
+    public void setMaxInFlightAlarms(int maxInFlightAlarms) {
+        this.maxInFlightAlarms = maxInFlightAlarms;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    public Duration getRetryMinBackoff() {
+        return retryMinBackoff;
+    }
+
+    public void setRetryMinBackoff(Duration retryMinBackoff) {
+        this.retryMinBackoff = retryMinBackoff;
+    }
+
+    public Duration getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+
+    public void setRetryMaxBackoff(Duration retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+    public DataSize getSpillMaxSize() {
+        return spillMaxSize;
+    }
+
+    public void setSpillMaxSize(DataSize spillMaxSize) {
+        this.spillMaxSize = spillMaxSize;
+    }
+
+    public Duration getReplayInterval() {
+        return replayInterval;
+    }
+
+    public void setReplayInterval(Duration replayInterval) {
+        this.replayInterval = replayInterval;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    public int getPartitionsAhead() {
+        return partitionsAhead;
+    }
+
+    public void setPartitionsAhead(int partitionsAhead) {
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    public Duration getPartitionMaintenanceInterval() {
+        return partitionMaintenanceInterval;
+    }
+
+    public void setPartitionMaintenanceInterval(Duration partitionMaintenanceInterval) {
+        this.partitionMaintenanceInterval = partitionMaintenanceInterval;
+    }
+}
@@ -0,0 +1,60 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the 1-minute and 1-hour measurement rollups.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rollup")
+public class RollupConfig {
+
+    private Duration flushInterval = Duration.ofSeconds(10);
+    private Duration allowedLateness = Duration.ofSeconds(5);
+    private Duration minuteRetention = Duration.ofDays(30);
+    private Duration hourRetention = Duration.ofDays(730);
+    private Duration purgeInterval = Duration.ofHours(1);
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public Duration getAllowedLateness() {
+        return allowedLateness;
+    }
+
+    public void setAllowedLateness(Duration allowedLateness) {
+        this.allowedLateness = allowedLateness;
+    }
+
+    public Duration getMinuteRetention() {
+        return minuteRetention;
+    }
+
+    public void setMinuteRetention(Duration minuteRetention) {
+        this.minuteRetention = minuteRetention;
+    }
+
+    public Duration getHourRetention() {
+        return hourRetention;
+    }
+
+    public void setHourRetention(Duration hourRetention) {
+        this.hourRetention = hourRetention;
+    }
+
+    public Duration getPurgeInterval() {
+        return purgeInterval;
+    }
+
+    public void setPurgeInterval(Duration purgeInterval) {
+        this.purgeInterval = purgeInterval;
+    }
+}
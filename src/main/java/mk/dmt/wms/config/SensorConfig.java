@@ -12,7 +12,11 @@ public class SensorConfig {
 
     private int temperaturePort = 3344;
     private int humidityPort = 3355;
+    private int binaryPort = 3366;
     private String host = "0.0.0.0";
+    private int socketsPerPort = 1;
+    private int receiveBufferSize = 0;
+    private boolean nativeTransport = true;
 
     public int getTemperaturePort() {
         return temperaturePort;
@@ -30,6 +34,14 @@ public class SensorConfig {
         this.humidityPort = humidityPort;
     }
 
+    public int getBinaryPort() {
+        return binaryPort;
+    }
+
+    public void setBinaryPort(int binaryPort) {
+        this.binaryPort = binaryPort;
+    }
+
     public String getHost() {
         return host;
     }
@@ -37,4 +49,28 @@ public class SensorConfig {
     public void setHost(String host) {
         this.host = host;
     }
+
+    public int getSocketsPerPort() {
+        return socketsPerPort;
+    }
+
+    public void setSocketsPerPort(int socketsPerPort) {
+        this.socketsPerPort = socketsPerPort;
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    public boolean isNativeTransport() {
+        return nativeTransport;
+    }
+
+    public void setNativeTransport(boolean nativeTransport) {
+        this.nativeTransport = nativeTransport;
+    }
 }
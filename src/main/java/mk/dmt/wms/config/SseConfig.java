@@ -0,0 +1,52 @@
+package mk.dmt.wms.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for Server-Sent Event subscribers.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "sse")
+public class SseConfig {
+
+    /**
+     * What to do when a client falls more than {@code buffer-size} events behind.
+     */
+    public enum SlowConsumerPolicy {
+        /** Drop the oldest buffered events of that client. */
+        DROP,
+        /** Close the connection; the browser's EventSource reconnects on its own. */
+        DISCONNECT
+    }
+
+    private int bufferSize = 1024;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP;
+    private Duration snapshotMinInterval = Duration.ofMillis(100);
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    public Duration getSnapshotMinInterval() {
+        return snapshotMinInterval;
+    }
+
+    public void setSnapshotMinInterval(Duration snapshotMinInterval) {
+        this.snapshotMinInterval = snapshotMinInterval;
+    }
+}
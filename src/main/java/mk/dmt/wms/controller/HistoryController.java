@@ -1,12 +1,22 @@
 package mk.dmt.wms.controller;
 
 import mk.dmt.wms.model.AlarmEventEntity;
+import mk.dmt.wms.model.MeasurementAggregate;
 import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.monitoring.RecentMeasurementBuffer;
 import mk.dmt.wms.service.MeasurementPersistenceService;
+import mk.dmt.wms.service.MeasurementRollups;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
 /**
  * REST controller for querying historical measurement and alarm data.
  */
@@ -14,10 +24,18 @@ import reactor.core.publisher.Mono;
 @RequestMapping("/api/history")
 public class HistoryController {
 
+    // Caps the response size, e.g. one week of 1m buckets
+    private static final long MAX_BUCKETS = 10_080;
+
     private final MeasurementPersistenceService persistenceService;
+    private final MeasurementRollups rollups;
+    private final RecentMeasurementBuffer recentBuffer;
 
-    public HistoryController(MeasurementPersistenceService persistenceService) {
+    public HistoryController(MeasurementPersistenceService persistenceService, MeasurementRollups rollups,
+                             RecentMeasurementBuffer recentBuffer) {
         this.persistenceService = persistenceService;
+        this.rollups = rollups;
+        this.recentBuffer = recentBuffer;
     }
 
     /**
@@ -40,23 +58,69 @@ public class HistoryController {
     }
 
     /**
-     * Get measurement history for a specific sensor.
+     * Get measurement history for a specific sensor, from memory if the buffer holds enough of it.
      */
     @GetMapping("/measurements/sensor/{sensorId}")
     public Flux<SensorMeasurement> getMeasurementHistory(
             @PathVariable String sensorId,
             @RequestParam(defaultValue = "100") int limit) {
-        return persistenceService.getMeasurementHistory(sensorId, limit);
+        return Flux.defer(() -> {
+            List<SensorMeasurement> buffered = recentBuffer.history(sensorId, limit);
+            return buffered != null ? Flux.fromIterable(buffered) : persistenceService.getMeasurementHistory(sensorId, limit);
+        });
     }
 
     /**
-     * Get recent measurements (last N minutes).
+     * Get recent measurements (last N minutes), from memory if the whole window is still buffered.
      */
     @GetMapping("/measurements/recent")
     public Flux<SensorMeasurement> getRecentMeasurements(
             @RequestParam(defaultValue = "60") int minutes,
             @RequestParam(defaultValue = "100") int limit) {
-        return persistenceService.getRecentMeasurements(minutes, limit);
+        return Flux.defer(() -> {
+            List<SensorMeasurement> buffered = recentBuffer.recent(Instant.now().minus(Duration.ofMinutes(minutes)), limit);
+            return buffered != null ? Flux.fromIterable(buffered) : persistenceService.getRecentMeasurements(minutes, limit);
+        });
+    }
+
+    /**
+     * Get min, max, avg, count and last value per time bucket (1m, 5m, 1h or 1d) of exactly one
+     * sensor, sensor type or warehouse, read from the rollup tables and the buckets still open in
+     * memory. The range defaults to the last 24 hours.
+     */
+    @GetMapping("/measurements/aggregate")
+    public Flux<MeasurementAggregate> getAggregates(
+            @RequestParam(required = false) String sensorId,
+            @RequestParam(required = false) String sensorType,
+            @RequestParam(required = false) String warehouseId,
+            @RequestParam(defaultValue = "5m") String bucket,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        MeasurementAggregate.Bucket size = MeasurementAggregate.Bucket.fromLabel(bucket);
+        if (size == null) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown bucket: " + bucket));
+        }
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        if (!start.isBefore(end)) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must be before to"));
+        }
+        if (Duration.between(start, end).dividedBy(size.getSize()) > MAX_BUCKETS) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Range spans more than " + MAX_BUCKETS + " buckets of " + bucket));
+        }
+
+        if (sensorId != null && sensorType == null && warehouseId == null) {
+            return rollups.getSensorAggregates(sensorId, size, start, end);
+        }
+        if (sensorType != null && sensorId == null && warehouseId == null) {
+            return rollups.getSensorTypeAggregates(sensorType, size, start, end);
+        }
+        if (warehouseId != null && sensorId == null && sensorType == null) {
+            return rollups.getWarehouseAggregates(warehouseId, size, start, end);
+        }
+        return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Exactly one of sensorId, sensorType or warehouseId is required"));
     }
 
     /**
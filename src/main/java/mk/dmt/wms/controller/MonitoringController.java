@@ -1,44 +1,95 @@
 package mk.dmt.wms.controller;
 
+import mk.dmt.wms.config.SseConfig;
 import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.event.AlarmEventBus;
 import mk.dmt.wms.event.MeasurementEventBus;
 import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import mk.dmt.wms.monitoring.LatestMeasurementCache;
+import mk.dmt.wms.monitoring.SensorSnapshot;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/monitoring")
 public class MonitoringController {
 
     private final MeasurementEventBus eventBus;
+    private final AlarmEventBus alarmEventBus;
+    private final SseConnectionManager connections;
+    private final LatestMeasurementCache latestMeasurements;
+    private final SseConfig sseConfig;
 
-    public MonitoringController(MeasurementEventBus eventBus) {
+    public MonitoringController(MeasurementEventBus eventBus,
+                                AlarmEventBus alarmEventBus,
+                                SseConnectionManager connections,
+                                LatestMeasurementCache latestMeasurements,
+                                SseConfig sseConfig) {
         this.eventBus = eventBus;
+        this.alarmEventBus = alarmEventBus;
+        this.connections = connections;
+        this.latestMeasurements = latestMeasurements;
+        this.sseConfig = sseConfig;
     }
 
     @GetMapping(value = "/measurements", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<SensorMeasurement> streamMeasurements() {
-        return eventBus.subscribe();
+        return connections.attach("measurements", eventBus.subscribe());
     }
 
-    @GetMapping(value = "/alarms", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<AlarmEvent> streamAlarms() {
-        // You'll need to add this to your CentralMonitoringService
-        // For now, this shows the pattern
-        return eventBus.subscribe()
-                .filter(this::exceedsThreshold)
-                .map(this::createAlarm);
+    /**
+     * Streams the latest value of every sensor that changed, at most once per interval.
+     * Each event is a JSON array; the first one holds all known sensors.
+     */
+    @GetMapping(value = "/snapshots", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<List<SensorMeasurement>> streamSnapshots(@RequestParam(defaultValue = "250") long intervalMs) {
+        Duration interval = Duration.ofMillis(Math.max(intervalMs, sseConfig.getSnapshotMinInterval().toMillis()));
+        return latestMeasurements.changes(interval);
     }
 
-    private boolean exceedsThreshold(SensorMeasurement m) {
-        return m.value() > m.sensorType().getDefaultThreshold();
+    /**
+     * Returns the current reading and alarm state of every sensor, optionally only those of a
+     * warehouse, of a sensor type or in alarm. Served from memory; the database is not queried.
+     */
+    @GetMapping("/latest")
+    public Flux<SensorSnapshot> getLatest(@RequestParam(required = false) String warehouseId,
+                                          @RequestParam(required = false) SensorType sensorType,
+                                          @RequestParam(defaultValue = "false") boolean alarmsOnly) {
+        return latestMeasurements.snapshot()
+                .filter(snapshot -> (warehouseId == null || warehouseId.equals(snapshot.warehouseId()))
+                        && (sensorType == null || sensorType == snapshot.sensorType())
+                        && (!alarmsOnly || snapshot.alarm() != null));
     }
 
-    private AlarmEvent createAlarm(SensorMeasurement m) {
-        double threshold = m.sensorType().getDefaultThreshold();
-        return AlarmEvent.of(m, threshold);
+    /**
+     * Returns the current reading and alarm state of one sensor.
+     */
+    @GetMapping("/latest/{sensorId}")
+    public Mono<SensorSnapshot> getLatest(@PathVariable String sensorId) {
+        SensorSnapshot snapshot = latestMeasurements.get(sensorId);
+        return snapshot != null
+                ? Mono.just(snapshot)
+                : Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown sensor: " + sensorId));
+    }
+
+    /**
+     * Streams the alarms raised by the central monitoring service once they are stored, or spilled
+     * to be stored later.
+     */
+    @GetMapping(value = "/alarms", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<AlarmEvent> streamAlarms() {
+        return connections.attach("alarms", alarmEventBus.subscribe());
     }
 }
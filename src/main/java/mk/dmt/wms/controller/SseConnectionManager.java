@@ -0,0 +1,149 @@
+package mk.dmt.wms.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import mk.dmt.wms.config.SseConfig;
+import mk.dmt.wms.config.SseConfig.SlowConsumerPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Isolates SSE clients from each other and from the event bus.
+ * Every connection consumes its source without backpressure into its own bounded buffer, so a
+ * stalled browser tab never slows down the bus or other consumers; once the buffer is full the
+ * configured {@link SlowConsumerPolicy} drops that client's oldest events or disconnects it.
+ * Lag (events buffered but not yet written) and drops are exposed per connection.
+ */
+@Component
+public class SseConnectionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SseConnectionManager.class);
+
+    private final SseConfig config;
+    private final MeterRegistry registry;
+    private final AtomicLong connectionIds = new AtomicLong();
+    private final Map<Long, Connection> connections = new ConcurrentHashMap<>();
+    private final LongAdder droppedTotal = new LongAdder();
+    private final Counter disconnects;
+
+    public SseConnectionManager(SseConfig config, MeterRegistry registry) {
+        this.config = config;
+        this.registry = registry;
+        Gauge.builder("wms.sse.connections", connections, Map::size)
+                .description("Open Server-Sent Event connections")
+                .register(registry);
+        FunctionCounter.builder("wms.sse.dropped", droppedTotal, LongAdder::sum)
+                .description("Events dropped for slow Server-Sent Event clients")
+                .register(registry);
+        this.disconnects = Counter.builder("wms.sse.disconnects")
+                .description("Server-Sent Event clients disconnected for falling behind")
+                .register(registry);
+    }
+
+    /**
+     * Wraps a shared source for one SSE client.
+     *
+     * @param stream Name of the stream, used as a metric tag
+     * @param source The shared source, e.g. an event bus subscription
+     * @return Flux to hand to WebFlux for this client
+     */
+    public <T> Flux<T> attach(String stream, Flux<T> source) {
+        return Flux.defer(() -> {
+            Connection connection = open(stream);
+            Flux<T> buffered = source
+                    .doOnNext(event -> connection.received.increment())
+                    .onBackpressureBuffer(config.getBufferSize(), event -> overflow(connection), BufferOverflowStrategy.DROP_OLDEST);
+            if (config.getSlowConsumerPolicy() == SlowConsumerPolicy.DISCONNECT) {
+                // Completes the response right away, even though the client is not requesting anything
+                buffered = buffered.takeUntilOther(connection.disconnect.asMono());
+            }
+            return buffered
+                    .doOnNext(event -> connection.sent.increment())
+                    .doFinally(signal -> close(connection, signal.toString()));
+        });
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedTotal.sum();
+    }
+
+    private void overflow(Connection connection) {
+        connection.drop();
+        if (config.getSlowConsumerPolicy() == SlowConsumerPolicy.DISCONNECT
+                && connection.disconnect.tryEmitEmpty().isSuccess()) {
+            disconnects.increment();
+            log.info("Disconnecting slow SSE client {} on {}: more than {} events behind",
+                    connection.id, connection.stream, config.getBufferSize());
+        }
+    }
+
+    private Connection open(String stream) {
+        long id = connectionIds.incrementAndGet();
+        Connection connection = new Connection(id, stream);
+        Tags tags = Tags.of("stream", stream, "connection", Long.toString(id));
+        connection.meters = List.of(
+                Gauge.builder("wms.sse.connection.lag", connection, Connection::lag)
+                        .description("Events buffered for a Server-Sent Event client but not yet written")
+                        .tags(tags)
+                        .register(registry),
+                FunctionCounter.builder("wms.sse.connection.dropped", connection.dropped, LongAdder::sum)
+                        .description("Events dropped for a Server-Sent Event client")
+                        .tags(tags)
+                        .register(registry));
+        connections.put(id, connection);
+        log.debug("SSE client {} connected to {}", id, stream);
+        return connection;
+    }
+
+    private void close(Connection connection, String signal) {
+        if (connections.remove(connection.id) == null) {
+            return;
+        }
+        connection.meters.forEach(registry::remove);
+        log.debug("SSE client {} on {} closed ({}): sent {}, dropped {}", connection.id, connection.stream,
+                signal, connection.sent.sum(), connection.dropped.sum());
+    }
+
+    private final class Connection {
+
+        private final long id;
+        private final String stream;
+        private final LongAdder received = new LongAdder();
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final Sinks.Empty<Void> disconnect = Sinks.empty();
+        private List<Meter> meters = List.of();
+
+        Connection(long id, String stream) {
+            this.id = id;
+            this.stream = stream;
+        }
+
+        void drop() {
+            dropped.increment();
+            droppedTotal.increment();
+        }
+
+        double lag() {
+            return Math.max(0, received.sum() - sent.sum() - dropped.sum());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package mk.dmt.wms.controller;
+
+import mk.dmt.wms.monitoring.ThresholdRuleEngine;
+import mk.dmt.wms.monitoring.ThresholdSettings;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Admin API for reading and replacing the alarm thresholds and rules at runtime.
+ */
+@RestController
+@RequestMapping("/api/admin/thresholds")
+public class ThresholdController {
+
+    private final ThresholdRuleEngine engine;
+
+    public ThresholdController(ThresholdRuleEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Get the thresholds and rules in effect.
+     */
+    @GetMapping
+    public Mono<ThresholdSettings> getThresholds() {
+        return Mono.fromSupplier(engine::getSettings);
+    }
+
+    /**
+     * Replace all rules, and the per-type thresholds that are given. Invalid settings are
+     * rejected as a whole. A watched rules file overrides them again once it changes.
+     */
+    @PutMapping
+    public Mono<ThresholdSettings> updateThresholds(@RequestBody ThresholdSettings settings) {
+        return Mono.fromSupplier(() -> {
+            try {
+                engine.update(settings, "admin API");
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            return engine.getSettings();
+        });
+    }
+}
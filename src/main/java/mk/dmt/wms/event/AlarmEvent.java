@@ -6,19 +6,35 @@ import mk.dmt.wms.model.SensorType;
 import java.time.Instant;
 
 /**
- * Record representing an alarm event triggered when a measurement exceeds threshold.
+ * Record representing a transition of an alarm episode: a sensor crossing a threshold, getting
+ * worse while it stays across, and coming back.
  *
- * @param measurement The sensor measurement that triggered the alarm
- * @param threshold   The threshold that was exceeded
- * @param timestamp   The time when the alarm was triggered
- * @param severity    The severity level of the alarm
+ * @param measurement The sensor measurement that caused the transition
+ * @param threshold   The threshold that was crossed
+ * @param timestamp   The time when the event was created
+ * @param severity    The highest severity level of the episode so far
+ * @param state       The transition
+ * @param raisedAt    The time of the measurement that raised the episode; identifies it per sensor
+ * @param peakValue   The value furthest past the threshold during the episode so far
+ * @param rule        The rule that was violated: {@link #THRESHOLD_RULE} for the bounds of the
+ *                    measured value, or the name of a windowed rule, whose threshold and peak
+ *                    apply to the windowed value
  */
 public record AlarmEvent(
         SensorMeasurement measurement,
         double threshold,
         Instant timestamp,
-        Severity severity
+        Severity severity,
+        State state,
+        Instant raisedAt,
+        double peakValue,
+        String rule
 ) {
+    /**
+     * Rule name of alarms on the measured value itself.
+     */
+    public static final String THRESHOLD_RULE = "threshold";
+
     /**
      * Severity levels for alarms.
      */
@@ -26,6 +42,34 @@ public record AlarmEvent(
         WARNING, HIGH, CRITICAL
     }
 
+    /**
+     * Transitions of an alarm episode.
+     */
+    public enum State {
+        /** The threshold was crossed; opens the episode. */
+        RAISED,
+        /** The severity rose while the episode was open. */
+        ESCALATED,
+        /** The value came back inside the hysteresis band; closes the episode. */
+        CLEARED
+    }
+
+    /**
+     * Creates a transition of a threshold alarm episode.
+     */
+    public AlarmEvent(SensorMeasurement measurement, double threshold, Instant timestamp, Severity severity,
+                      State state, Instant raisedAt, double peakValue) {
+        this(measurement, threshold, timestamp, severity, state, raisedAt, peakValue, THRESHOLD_RULE);
+    }
+
+    /**
+     * Creates the event that raises an episode at the given measurement.
+     */
+    public AlarmEvent(SensorMeasurement measurement, double threshold, Instant timestamp, Severity severity) {
+        this(measurement, threshold, timestamp, severity, State.RAISED, measurement.timestamp(), measurement.value(),
+                THRESHOLD_RULE);
+    }
+
     /**
      * Creates an AlarmEvent with current timestamp.
      */
@@ -42,11 +86,26 @@ public record AlarmEvent(
     }
 
     /**
-     * Calculates severity based on how much the threshold was exceeded.
+     * Calculates severity based on how far past the threshold the value is, above a maximum
+     * or below a minimum.
      */
-    private static Severity calculateSeverity(double value, double threshold) {
-        double exceededBy = value - threshold;
-        double percentage = (exceededBy / threshold) * 100;
+    public static Severity calculateSeverity(double value, double threshold) {
+        return calculateSeverity(value, threshold, 0.0);
+    }
+
+    /**
+     * Calculates severity based on how far past the threshold the value is, as a percentage of
+     * the larger of {@code |threshold|} and {@code scale}: more than 10% is HIGH and more than 20%
+     * CRITICAL. The scale keeps bounds at or near zero from turning every violation CRITICAL; with
+     * neither a bound nor a scale to measure against, the violation is a WARNING.
+     */
+    public static Severity calculateSeverity(double value, double threshold, double scale) {
+        double reference = Math.max(Math.abs(threshold), scale);
+        if (!(reference > 0)) {
+            return Severity.WARNING;
+        }
+        double exceededBy = Math.abs(value - threshold);
+        double percentage = (exceededBy / reference) * 100;
 
         if (percentage > 20) {
             return Severity.CRITICAL;
@@ -64,15 +123,43 @@ public record AlarmEvent(
         return severity.name();
     }
 
+    /**
+     * Returns whether this alarm is on the measured value rather than on a windowed rule.
+     */
+    public boolean isThresholdAlarm() {
+        return THRESHOLD_RULE.equals(rule);
+    }
+
     /**
      * Returns a formatted alarm message for console output.
      */
     public String toAlarmMessage() {
         SensorType type = measurement.sensorType();
+        if (!isThresholdAlarm()) {
+            return String.format(
+                    "🚨 ALARM [%s] - %s rule %s %s Sensor: %s, Value: %.2f%s, Peak: %.2f, Threshold: %.2f, Warehouse: %s",
+                    getSeverity(),
+                    type.getDisplayName().toUpperCase(),
+                    rule,
+                    state == State.CLEARED ? "cleared." : "violated!",
+                    measurement.sensorId(),
+                    measurement.value(),
+                    type.getUnit(),
+                    peakValue,
+                    threshold,
+                    measurement.warehouseId()
+            );
+        }
+        String transition = switch (state) {
+            case RAISED -> "threshold exceeded!";
+            case ESCALATED -> "threshold exceeded, escalated!";
+            case CLEARED -> "back within threshold.";
+        };
         return String.format(
-                "🚨 ALARM [%s] - %s threshold exceeded! Sensor: %s, Value: %.2f%s, Threshold: %.2f%s, Warehouse: %s",
+                "🚨 ALARM [%s] - %s %s Sensor: %s, Value: %.2f%s, Threshold: %.2f%s, Warehouse: %s",
                 getSeverity(),
                 type.getDisplayName().toUpperCase(),
+                transition,
                 measurement.sensorId(),
                 measurement.value(),
                 type.getUnit(),
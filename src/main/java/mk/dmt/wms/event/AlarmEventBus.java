@@ -0,0 +1,69 @@
+package mk.dmt.wms.event;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reactive bus for the alarms raised by the central monitoring service.
+ * Alarms are evaluated once per measurement and every subscriber, e.g. each dashboard,
+ * receives the same {@link AlarmEvent} instance that was persisted. Nothing is retained for
+ * later subscribers; each subscriber buffers for itself, like the SSE connections do.
+ */
+@Component
+public class AlarmEventBus implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(AlarmEventBus.class);
+
+    private final Sinks.Many<AlarmEvent> sink;
+    private final LongAdder dropped = new LongAdder();
+
+    public AlarmEventBus() {
+        // Keep the bus open when the last dashboard disconnects, and skip subscribers without demand
+        this.sink = Sinks.many().multicast().directBestEffort();
+    }
+
+    /**
+     * Publishes an alarm to all subscribers. Safe to call from several threads at once.
+     *
+     * @param alarm The alarm to publish
+     */
+    public void publish(AlarmEvent alarm) {
+        Sinks.EmitResult result;
+        while ((result = sink.tryEmitNext(alarm)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            Thread.onSpinWait();
+        }
+        // Nobody listening (or listeners without demand) is normal; alarms are persisted regardless
+        if (result.isFailure()) {
+            dropped.increment();
+            log.debug("Alarm not delivered to subscribers: {}", result);
+        }
+    }
+
+    /**
+     * Returns a Flux that emits all alarms raised from now on.
+     *
+     * @return Flux of alarm events
+     */
+    public Flux<AlarmEvent> subscribe() {
+        return sink.asFlux();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("wms.alarms.dropped", dropped, LongAdder::sum)
+                .description("Alarms not delivered to live subscribers")
+                .register(registry);
+    }
+}
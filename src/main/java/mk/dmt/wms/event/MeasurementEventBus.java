@@ -1,24 +1,37 @@
 package mk.dmt.wms.event;
 
 import mk.dmt.wms.model.SensorMeasurement;
-import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+import reactor.core.publisher.ParallelFlux;
+
+import java.util.List;
 
 /**
- * Reactive event bus for sensor measurements using Project Reactor's Sinks.
- * This provides a fully reactive way to publish and subscribe to measurement events.
+ * Reactive event bus for sensor measurements.
+ * Decouples the warehouse (UDP ingest) side from the monitoring, persistence and dashboard
+ * consumers. Implementations are selected with {@code event-bus.type}: {@code sink} for a single
+ * Reactor sink ({@link SinkMeasurementEventBus}) or {@code partitioned} for per-sensor ring
+ * buffers drained in parallel ({@link PartitionedMeasurementEventBus}).
+ * Measurements of the same sensor are always delivered in the order they were published.
  */
-@Component
-public class MeasurementEventBus {
-
-    private final Sinks.Many<SensorMeasurement> measurementSink;
-    private final Flux<SensorMeasurement> measurementFlux;
+public interface MeasurementEventBus {
 
-    public MeasurementEventBus() {
-        // Create a multicast sink that replays the last 100 measurements for late subscribers
-        this.measurementSink = Sinks.many().multicast().onBackpressureBuffer(1000);
-        this.measurementFlux = measurementSink.asFlux();
+    /**
+     * Why a measurement was not delivered.
+     */
+    enum DropReason {
+        /** The buffer was full and the policy drops the newest batch. */
+        OVERFLOW,
+        /** The buffer was full and the oldest buffered batch was evicted. */
+        DROPPED_OLDEST,
+        /** The buffer stayed full for the whole block timeout. */
+        BLOCK_TIMEOUT,
+        /** The spill file reached its size limit. */
+        SPILL_FULL,
+        /** Nobody was subscribed and the warm-up buffer was full. */
+        NO_SUBSCRIBERS,
+        /** The bus was already completed. */
+        TERMINATED
     }
 
     /**
@@ -26,9 +39,15 @@ public class MeasurementEventBus {
      *
      * @param measurement The sensor measurement to publish
      */
-    public void publish(SensorMeasurement measurement) {
-        measurementSink.tryEmitNext(measurement);
-    }
+    void publish(SensorMeasurement measurement);
+
+    /**
+     * Publishes a batch of measurements to all subscribers.
+     * Subscribers of {@link #subscribe()} still receive the measurements one by one, in order.
+     *
+     * @param measurements The sensor measurements to publish
+     */
+    void publishAll(List<SensorMeasurement> measurements);
 
     /**
      * Returns a Flux that emits all published measurements.
@@ -36,14 +55,30 @@ public class MeasurementEventBus {
      *
      * @return Flux of sensor measurements
      */
-    public Flux<SensorMeasurement> subscribe() {
-        return measurementFlux;
-    }
+    Flux<SensorMeasurement> subscribe();
+
+    /**
+     * Returns a Flux that emits measurements in batches.
+     *
+     * @return Flux of measurement batches
+     */
+    Flux<List<SensorMeasurement>> subscribeBatches();
 
     /**
-     * Completes the sink, signaling no more measurements will be published.
+     * Returns the measurements split into rails that can be consumed concurrently.
+     * All measurements of a sensor arrive on the same rail, in order.
+     *
+     * @return ParallelFlux of sensor measurements
      */
-    public void complete() {
-        measurementSink.tryEmitComplete();
-    }
+    ParallelFlux<SensorMeasurement> subscribeParallel();
+
+    /**
+     * Completes the bus, signaling no more measurements will be published.
+     */
+    void complete();
+
+    /**
+     * Returns the number of measurements dropped for the given reason.
+     */
+    long getDroppedCount(DropReason reason);
 }
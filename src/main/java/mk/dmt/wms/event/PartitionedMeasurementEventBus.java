@@ -0,0 +1,309 @@
+package mk.dmt.wms.event;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.EventBusConfig;
+import mk.dmt.wms.config.EventBusConfig.OverflowPolicy;
+import mk.dmt.wms.model.SensorMeasurement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Event bus that spreads measurements over N preallocated ring buffers, partitioned by a hash of
+ * the sensor id. Each partition is drained by its own thread into its own multicast sink, so
+ * consumers of {@link #subscribeParallel()} process the partitions concurrently while the
+ * measurements of one sensor stay in order.
+ * <p>
+ * Producers never block on each other: publishing is a CAS on the ring of the target partition.
+ * When a ring is full the {@code BLOCK} policy waits up to the block timeout; all other
+ * policies drop the measurement. A drain thread whose sink is full waits for subscribers to
+ * catch up, which in turn fills the ring.
+ */
+@Component
+@ConditionalOnProperty(prefix = "event-bus", name = "type", havingValue = "partitioned")
+public class PartitionedMeasurementEventBus implements MeasurementEventBus, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionedMeasurementEventBus.class);
+
+    private static final int MAX_DRAIN_BATCH = 256;
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BACKPRESSURE_PARK_NANOS = 50_000;
+
+    private final Partition[] partitions;
+    private final boolean block;
+    private final long blockTimeoutNanos;
+    private final LongAdder[] dropped = new LongAdder[DropReason.values().length];
+    private final Flux<SensorMeasurement> measurementFlux;
+    private final Flux<List<SensorMeasurement>> batchFlux;
+    private final ParallelFlux<SensorMeasurement> parallelFlux;
+    private volatile boolean completed;
+
+    @SuppressWarnings("unchecked")
+    public PartitionedMeasurementEventBus(EventBusConfig config) {
+        OverflowPolicy policy = config.getOverflowPolicy();
+        if (policy == OverflowPolicy.DROP_OLDEST || policy == OverflowPolicy.SPILL) {
+            log.warn("Overflow policy {} is not supported by the partitioned event bus, using DROP_NEWEST", policy);
+        }
+        this.block = policy == OverflowPolicy.BLOCK;
+        this.blockTimeoutNanos = config.getBlockTimeout().toNanos();
+        for (int i = 0; i < dropped.length; i++) {
+            dropped[i] = new LongAdder();
+        }
+
+        int count = Math.max(1, config.getPartitions());
+        this.partitions = new Partition[count];
+        List<Flux<SensorMeasurement>> measurementFluxes = new ArrayList<>(count);
+        List<Flux<List<SensorMeasurement>>> batchFluxes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new Partition(i, config.getRingSize(), config.getBufferSize());
+            batchFluxes.add(partitions[i].batches);
+            measurementFluxes.add(partitions[i].batches.flatMapIterable(Function.identity()));
+        }
+        this.batchFlux = Flux.merge(batchFluxes);
+        this.measurementFlux = Flux.merge(measurementFluxes);
+        this.parallelFlux = ParallelFlux.from(measurementFluxes.toArray(Flux[]::new));
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Partition partition : partitions) {
+            partition.start();
+        }
+        log.info("Partitioned event bus started with {} partitions of {} slots",
+                partitions.length, partitions[0].ring.capacity());
+    }
+
+    @Override
+    public void publish(SensorMeasurement measurement) {
+        offer(measurement);
+    }
+
+    @Override
+    public void publishAll(List<SensorMeasurement> measurements) {
+        for (int i = 0; i < measurements.size(); i++) {
+            offer(measurements.get(i));
+        }
+    }
+
+    @Override
+    public Flux<SensorMeasurement> subscribe() {
+        return measurementFlux;
+    }
+
+    /**
+     * Returns measurements in the batches each partition drained them in.
+     * A published batch that spans several partitions is split accordingly.
+     */
+    @Override
+    public Flux<List<SensorMeasurement>> subscribeBatches() {
+        return batchFlux;
+    }
+
+    /**
+     * Returns one rail per partition, emitted on that partition's drain thread.
+     */
+    @Override
+    public ParallelFlux<SensorMeasurement> subscribeParallel() {
+        return parallelFlux;
+    }
+
+    /**
+     * Lets every partition drain what it already holds, then completes its sink.
+     */
+    @Override
+    public void complete() {
+        completed = true;
+        for (Partition partition : partitions) {
+            partition.wakeUp();
+        }
+    }
+
+    @Override
+    public long getDroppedCount(DropReason reason) {
+        return dropped[reason.ordinal()].sum();
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    @PreDestroy
+    public void stop() {
+        complete();
+        for (Partition partition : partitions) {
+            partition.join();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (DropReason reason : DropReason.values()) {
+            FunctionCounter.builder("wms.eventbus.dropped", dropped[reason.ordinal()], LongAdder::sum)
+                    .description("Measurements the event bus could not deliver")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        for (Partition partition : partitions) {
+            Gauge.builder("wms.eventbus.partition.depth", partition.ring, MpscRingBuffer::size)
+                    .description("Measurements waiting in the ring buffer of an event bus partition")
+                    .tag("partition", Integer.toString(partition.index))
+                    .register(registry);
+        }
+    }
+
+    int partitionOf(String sensorId) {
+        int hash = sensorId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+    }
+
+    private void offer(SensorMeasurement measurement) {
+        if (completed) {
+            recordDrop(DropReason.TERMINATED);
+            return;
+        }
+        Partition partition = partitions[partitionOf(measurement.sensorId())];
+        if (!partition.ring.offer(measurement) && !(block && offerBlocking(partition, measurement))) {
+            recordDrop(block ? DropReason.BLOCK_TIMEOUT : DropReason.OVERFLOW);
+        }
+        partition.signal();
+    }
+
+    private boolean offerBlocking(Partition partition, SensorMeasurement measurement) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        do {
+            partition.signal();
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+            if (partition.ring.offer(measurement)) {
+                return true;
+            }
+        } while (System.nanoTime() < deadline);
+        return false;
+    }
+
+    private void recordDrop(DropReason reason) {
+        dropped[reason.ordinal()].increment();
+        if (log.isDebugEnabled()) {
+            log.debug("Dropped measurement: {}", reason);
+        }
+    }
+
+    /**
+     * A ring buffer, the thread draining it and the sink it drains into.
+     */
+    private final class Partition implements Runnable {
+
+        private final int index;
+        private final MpscRingBuffer<SensorMeasurement> ring;
+        private final Sinks.Many<List<SensorMeasurement>> sink;
+        private final Flux<List<SensorMeasurement>> batches;
+        private final Thread thread;
+        private volatile boolean parked;
+
+        Partition(int index, int ringSize, int bufferSize) {
+            this.index = index;
+            this.ring = new MpscRingBuffer<>(ringSize);
+            // Do not terminate the partition when its last subscriber goes away
+            this.sink = Sinks.many().multicast().onBackpressureBuffer(bufferSize, false);
+            this.batches = sink.asFlux();
+            this.thread = new Thread(this, "wms-bus-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void signal() {
+            if (parked) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void wakeUp() {
+            LockSupport.unpark(thread);
+        }
+
+        void join() {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            int idle = 0;
+            while (true) {
+                List<SensorMeasurement> batch = drain();
+                if (batch != null) {
+                    emit(batch);
+                    idle = 0;
+                } else if (completed) {
+                    // Producers stop offering once completed is set; pick up anything that raced in
+                    if (ring.isEmpty()) {
+                        sink.tryEmitComplete();
+                        return;
+                    }
+                } else if (++idle < IDLE_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    parked = true;
+                    if (ring.isEmpty() && !completed) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    parked = false;
+                }
+            }
+        }
+
+        private List<SensorMeasurement> drain() {
+            SensorMeasurement first = ring.poll();
+            if (first == null) {
+                return null;
+            }
+            List<SensorMeasurement> batch = new ArrayList<>(Math.min(MAX_DRAIN_BATCH, ring.size() + 1));
+            batch.add(first);
+            SensorMeasurement next;
+            while (batch.size() < MAX_DRAIN_BATCH && (next = ring.poll()) != null) {
+                batch.add(next);
+            }
+            return batch;
+        }
+
+        private void emit(List<SensorMeasurement> batch) {
+            while (true) {
+                Sinks.EmitResult result = sink.tryEmitNext(batch);
+                if (result.isSuccess()) {
+                    return;
+                }
+                if (result != Sinks.EmitResult.FAIL_OVERFLOW) {
+                    DropReason reason = result == Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER
+                            ? DropReason.NO_SUBSCRIBERS : DropReason.TERMINATED;
+                    dropped[reason.ordinal()].add(batch.size());
+                    return;
+                }
+                // Subscribers are behind; wait for them and let the ring absorb new measurements
+                LockSupport.parkNanos(this, BACKPRESSURE_PARK_NANOS);
+            }
+        }
+    }
+}
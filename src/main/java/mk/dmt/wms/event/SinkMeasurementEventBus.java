@@ -0,0 +1,261 @@
+package mk.dmt.wms.event;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.EventBusConfig;
+import mk.dmt.wms.config.EventBusConfig.OverflowPolicy;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.spill.MeasurementBatchCodec;
+import mk.dmt.wms.spill.SpillLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ParallelFlux;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Reactive event bus for sensor measurements backed by a single Project Reactor multicast sink.
+ * This provides a fully reactive way to publish and subscribe to measurement events.
+ * Measurements travel through the sink in batches, so a datagram carrying many readings
+ * costs a single emission regardless of its size.
+ * <p>
+ * Publishing is safe from several threads at once: concurrent emissions are retried instead
+ * of being lost. What happens when the buffer is full is decided by the configured
+ * {@link OverflowPolicy}, and every measurement that is not delivered is counted by
+ * {@link DropReason}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "event-bus", name = "type", havingValue = "sink", matchIfMissing = true)
+public class SinkMeasurementEventBus implements MeasurementEventBus, MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(SinkMeasurementEventBus.class);
+
+    private static final long BLOCK_PARK_NANOS = 50_000;
+
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final EventBusConfig config;
+    private final Sinks.Many<List<SensorMeasurement>> batchSink;
+    private final Flux<List<SensorMeasurement>> batchFlux;
+    private final Flux<SensorMeasurement> measurementFlux;
+    private final LongAdder[] dropped = new LongAdder[DropReason.values().length];
+    private final LongAdder spilled = new LongAdder();
+    private final SpillLog<List<SensorMeasurement>> spillLog;
+    private Disposable spillDrain;
+
+    public SinkMeasurementEventBus() {
+        this(new EventBusConfig());
+    }
+
+    @Autowired
+    public SinkMeasurementEventBus(EventBusConfig config) {
+        this.config = config;
+        this.policy = config.getOverflowPolicy();
+        this.blockTimeoutNanos = config.getBlockTimeout().toNanos();
+        for (int i = 0; i < dropped.length; i++) {
+            dropped[i] = new LongAdder();
+        }
+
+        // Create a multicast sink that buffers batches for slow or late subscribers
+        this.batchSink = Sinks.many().multicast().onBackpressureBuffer(config.getBufferSize());
+        this.batchFlux = policy == OverflowPolicy.DROP_OLDEST
+                // Each subscriber drains the sink eagerly into its own bounded buffer that evicts the oldest batch
+                ? batchSink.asFlux().onBackpressureBuffer(config.getBufferSize(),
+                        batch -> recordDrop(DropReason.DROPPED_OLDEST, batch.size()), BufferOverflowStrategy.DROP_OLDEST)
+                : batchSink.asFlux();
+        this.measurementFlux = batchFlux.flatMapIterable(Function.identity());
+        this.spillLog = policy == OverflowPolicy.SPILL ? openSpillLog(config) : null;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (spillLog != null) {
+            spillDrain = Flux.interval(config.getSpillDrainInterval(), config.getSpillDrainInterval())
+                    .subscribe(tick -> drainSpill());
+        }
+    }
+
+    @Override
+    public void publish(SensorMeasurement measurement) {
+        publishAll(List.of(measurement));
+    }
+
+    @Override
+    public void publishAll(List<SensorMeasurement> measurements) {
+        if (measurements.isEmpty()) {
+            return;
+        }
+        // Keep order while spilled batches are pending: new batches queue up behind them
+        if (spillLog != null && !spillLog.isEmpty()) {
+            spill(measurements);
+            return;
+        }
+
+        Sinks.EmitResult result = emit(measurements, policy == OverflowPolicy.BLOCK);
+        if (result.isSuccess()) {
+            return;
+        }
+        if (result == Sinks.EmitResult.FAIL_OVERFLOW && spillLog != null) {
+            spill(measurements);
+            return;
+        }
+        recordDrop(dropReason(result), measurements.size());
+    }
+
+    @Override
+    public Flux<SensorMeasurement> subscribe() {
+        return measurementFlux;
+    }
+
+    @Override
+    public Flux<List<SensorMeasurement>> subscribeBatches() {
+        return batchFlux;
+    }
+
+    /**
+     * Returns a single rail, since all measurements pass through one sink. More rails would be fed
+     * round-robin, and two measurements of one sensor could then be processed out of order.
+     */
+    @Override
+    public ParallelFlux<SensorMeasurement> subscribeParallel() {
+        return ParallelFlux.from(measurementFlux, 1);
+    }
+
+    @Override
+    public void complete() {
+        while (batchSink.tryEmitComplete() == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public long getDroppedCount(DropReason reason) {
+        return dropped[reason.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of measurements written to the spill file.
+     */
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (spillDrain != null && !spillDrain.isDisposed()) {
+            spillDrain.dispose();
+        }
+        if (spillLog != null) {
+            try {
+                if (!spillLog.isEmpty()) {
+                    log.info("Keeping {} spilled batch(es) in {} for replay on restart",
+                            spillLog.getRecordCount(), spillLog.getFile());
+                }
+                spillLog.close();
+            } catch (IOException e) {
+                log.warn("Failed to close spill file: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Re-publishes spilled batches, oldest first, until the buffer is full again.
+     */
+    void drainSpill() {
+        List<SensorMeasurement> batch;
+        while ((batch = spillLog.peek()) != null) {
+            Sinks.EmitResult result = emit(batch, false);
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                return;
+            }
+            spillLog.remove();
+            if (result.isFailure()) {
+                recordDrop(dropReason(result), batch.size());
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (DropReason reason : DropReason.values()) {
+            FunctionCounter.builder("wms.eventbus.dropped", dropped[reason.ordinal()], LongAdder::sum)
+                    .description("Measurements the event bus could not deliver")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        if (spillLog != null) {
+            FunctionCounter.builder("wms.eventbus.spilled", spilled, LongAdder::sum)
+                    .description("Measurements written to the event bus spill file")
+                    .register(registry);
+            Gauge.builder("wms.eventbus.spill.size", spillLog, SpillLog::getSizeBytes)
+                    .description("Bytes waiting in the event bus spill file")
+                    .baseUnit("bytes")
+                    .register(registry);
+        }
+    }
+
+    private Sinks.EmitResult emit(List<SensorMeasurement> batch, boolean block) {
+        long deadline = block ? System.nanoTime() + blockTimeoutNanos : 0;
+        while (true) {
+            Sinks.EmitResult result = batchSink.tryEmitNext(batch);
+            if (result == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                // Another event loop is emitting right now; this only lasts for the duration of one onNext
+                Thread.onSpinWait();
+            } else if (result == Sinks.EmitResult.FAIL_OVERFLOW && block && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            } else {
+                return result;
+            }
+        }
+    }
+
+    private void spill(List<SensorMeasurement> batch) {
+        if (spillLog.append(batch)) {
+            spilled.add(batch.size());
+        } else {
+            recordDrop(DropReason.SPILL_FULL, batch.size());
+        }
+    }
+
+    private DropReason dropReason(Sinks.EmitResult result) {
+        return switch (result) {
+            case FAIL_OVERFLOW -> policy == OverflowPolicy.BLOCK ? DropReason.BLOCK_TIMEOUT : DropReason.OVERFLOW;
+            case FAIL_ZERO_SUBSCRIBER -> DropReason.NO_SUBSCRIBERS;
+            default -> DropReason.TERMINATED;
+        };
+    }
+
+    private void recordDrop(DropReason reason, int count) {
+        dropped[reason.ordinal()].add(count);
+        if (log.isDebugEnabled()) {
+            log.debug("Dropped {} measurement(s): {}", count, reason);
+        }
+    }
+
+    private static SpillLog<List<SensorMeasurement>> openSpillLog(EventBusConfig config) {
+        Path file = Path.of(config.getSpillDirectory(), "measurements.spill");
+        try {
+            return new SpillLog<>(file, config.getSpillMaxSize().toBytes(), new MeasurementBatchCodec());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open event bus spill file " + file, e);
+        }
+    }
+}
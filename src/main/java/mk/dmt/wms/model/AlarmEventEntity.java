@@ -8,7 +8,9 @@ import org.springframework.data.relational.core.mapping.Table;
 import java.time.Instant;
 
 /**
- * Entity class for persisting alarm events to the database.
+ * Entity class for persisting alarm events to the database: one row per alarm episode, keyed by
+ * sensor, rule and the time it was raised ({@code updated_at}). {@code cleared_at} is null while
+ * the episode is open.
  */
 @Table("alarm_events")
 public class AlarmEventEntity {
@@ -41,6 +43,15 @@ public class AlarmEventEntity {
     @Column("created_at")
     private Instant createdAt;
 
+    @Column("peak_value")
+    private Double peakValue;
+
+    @Column("cleared_at")
+    private Instant clearedAt;
+
+    @Column("alarm_rule")
+    private String rule = AlarmEvent.THRESHOLD_RULE;
+
     public AlarmEventEntity() {
     }
 
@@ -57,15 +68,21 @@ public class AlarmEventEntity {
     }
 
     public static AlarmEventEntity fromAlarm(AlarmEvent alarm) {
-        return new AlarmEventEntity(
+        AlarmEventEntity entity = new AlarmEventEntity(
             alarm.measurement().sensorId(),
             alarm.measurement().sensorType().name(),
             alarm.measurement().value(),
             alarm.threshold(),
             alarm.severity().name(),
-            alarm.measurement().timestamp(),
+            alarm.raisedAt(),
             alarm.measurement().warehouseId()
         );
+        entity.setPeakValue(alarm.peakValue());
+        entity.setRule(alarm.rule());
+        if (alarm.state() == AlarmEvent.State.CLEARED) {
+            entity.setClearedAt(alarm.measurement().timestamp());
+        }
+        return entity;
     }
 
     // Getters and setters
@@ -140,4 +157,28 @@ public class AlarmEventEntity {
     public void setCreatedAt(Instant createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Double getPeakValue() {
+        return peakValue;
+    }
+
+    public void setPeakValue(Double peakValue) {
+        this.peakValue = peakValue;
+    }
+
+    public Instant getClearedAt() {
+        return clearedAt;
+    }
+
+    public void setClearedAt(Instant clearedAt) {
+        this.clearedAt = clearedAt;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public void setRule(String rule) {
+        this.rule = rule;
+    }
 }
@@ -0,0 +1,61 @@
+package mk.dmt.wms.model;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Summary of the measurements that fall into one time bucket.
+ *
+ * @param bucketStart Start of the bucket (inclusive); days start at midnight in the application's time zone
+ * @param count       Number of measurements in the bucket
+ * @param min         Lowest value
+ * @param max         Highest value
+ * @param avg         Mean value
+ * @param last        Value of the most recent measurement
+ */
+public record MeasurementAggregate(
+        Instant bucketStart,
+        long count,
+        double min,
+        double max,
+        double avg,
+        double last
+) {
+    /**
+     * Supported bucket sizes.
+     */
+    public enum Bucket {
+        ONE_MINUTE("1m", Duration.ofMinutes(1)),
+        FIVE_MINUTES("5m", Duration.ofMinutes(5)),
+        ONE_HOUR("1h", Duration.ofHours(1)),
+        ONE_DAY("1d", Duration.ofDays(1));
+
+        private final String label;
+        private final Duration size;
+
+        Bucket(String label, Duration size) {
+            this.label = label;
+            this.size = size;
+        }
+
+        /**
+         * Returns the bucket for a label such as "5m", or null if the label is unknown.
+         */
+        public static Bucket fromLabel(String label) {
+            for (Bucket bucket : values()) {
+                if (bucket.label.equals(label)) {
+                    return bucket;
+                }
+            }
+            return null;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public Duration getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package mk.dmt.wms.model;
+
+import java.time.Instant;
+
+/**
+ * Summary of one sensor's measurements in one rollup bucket.
+ *
+ * @param sensorId    The sensor
+ * @param sensorType  The sensor's type
+ * @param warehouseId The warehouse of the latest measurement
+ * @param bucketStart Start of the bucket (inclusive)
+ * @param min         Lowest value
+ * @param max         Highest value
+ * @param sum         Sum of the values
+ * @param count       Number of measurements
+ * @param last        Value of the most recent measurement
+ * @param lastAt      Timestamp of the most recent measurement
+ */
+public record MeasurementRollup(
+        String sensorId,
+        SensorType sensorType,
+        String warehouseId,
+        Instant bucketStart,
+        double min,
+        double max,
+        double sum,
+        long count,
+        double last,
+        Instant lastAt
+) {
+}
@@ -1,6 +1,7 @@
 package mk.dmt.wms.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -8,6 +9,11 @@ import java.time.Instant;
 
 /**
  * Entity class for persisting sensor measurements to the database.
+ * <p>
+ * Rows reference the sensor and warehouse by integer keys of the {@code sensors} and
+ * {@code warehouses} dictionary tables and store the sensor type as its {@link SensorType#getCode()}.
+ * The string ids are read-only: queries join them in as {@code sensor_id} and {@code warehouse_id},
+ * and the keys are resolved from them before an entity is saved.
  */
 @Table("sensor_measurements")
 public class SensorMeasurementEntity {
@@ -16,11 +22,15 @@ public class SensorMeasurementEntity {
     @Column("id")
     private Long id;
 
+    @Column("sensor_ref")
+    private Integer sensorRef;
+
+    @ReadOnlyProperty
     @Column("sensor_id")
     private String sensorId;
 
     @Column("sensor_type")
-    private String sensorType;
+    private Short sensorTypeCode;
 
     @Column("measurement_value")
     private Double value;
@@ -28,6 +38,10 @@ public class SensorMeasurementEntity {
     @Column("updated_at")
     private Instant timestamp;
 
+    @Column("warehouse_ref")
+    private Integer warehouseRef;
+
+    @ReadOnlyProperty
     @Column("warehouse_id")
     private String warehouseId;
 
@@ -40,7 +54,7 @@ public class SensorMeasurementEntity {
     public SensorMeasurementEntity(String sensorId, String sensorType, Double value,
                                    Instant timestamp, String warehouseId) {
         this.sensorId = sensorId;
-        this.sensorType = sensorType;
+        setSensorType(sensorType);
         this.value = value;
         this.timestamp = timestamp;
         this.warehouseId = warehouseId;
@@ -60,7 +74,7 @@ public class SensorMeasurementEntity {
     public SensorMeasurement toMeasurement() {
         return new SensorMeasurement(
             sensorId,
-            SensorType.valueOf(sensorType),
+            sensorTypeCode == null ? null : SensorType.fromCode(sensorTypeCode),
             value,
             timestamp,
             warehouseId
@@ -76,6 +90,14 @@ public class SensorMeasurementEntity {
         this.id = id;
     }
 
+    public Integer getSensorRef() {
+        return sensorRef;
+    }
+
+    public void setSensorRef(Integer sensorRef) {
+        this.sensorRef = sensorRef;
+    }
+
     public String getSensorId() {
         return sensorId;
     }
@@ -84,12 +106,24 @@ public class SensorMeasurementEntity {
         this.sensorId = sensorId;
     }
 
+    /**
+     * Returns the sensor type name, derived from the stored code.
+     */
     public String getSensorType() {
-        return sensorType;
+        SensorType type = sensorTypeCode == null ? null : SensorType.fromCode(sensorTypeCode);
+        return type == null ? null : type.name();
     }
 
     public void setSensorType(String sensorType) {
-        this.sensorType = sensorType;
+        this.sensorTypeCode = sensorType == null ? null : (short) SensorType.valueOf(sensorType).getCode();
+    }
+
+    public Short getSensorTypeCode() {
+        return sensorTypeCode;
+    }
+
+    public void setSensorTypeCode(Short sensorTypeCode) {
+        this.sensorTypeCode = sensorTypeCode;
     }
 
     public Double getValue() {
@@ -108,6 +142,14 @@ public class SensorMeasurementEntity {
         this.timestamp = timestamp;
     }
 
+    public Integer getWarehouseRef() {
+        return warehouseRef;
+    }
+
+    public void setWarehouseRef(Integer warehouseRef) {
+        this.warehouseRef = warehouseRef;
+    }
+
     public String getWarehouseId() {
         return warehouseId;
     }
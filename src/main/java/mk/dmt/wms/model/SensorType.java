@@ -4,19 +4,40 @@ package mk.dmt.wms.model;
  * Enum representing the types of sensors in the warehouse.
  */
 public enum SensorType {
-    TEMPERATURE("temperature", 35.0, "°C"),
-    HUMIDITY("humidity", 50.0, "%");
+    TEMPERATURE(1, "temperature", 35.0, "°C"),
+    HUMIDITY(2, "humidity", 50.0, "%");
 
+    private static final SensorType[] BY_CODE = new SensorType[3];
+
+    static {
+        for (SensorType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+
+    private final int code;
     private final String displayName;
     private final double defaultThreshold;
     private final String unit;
 
-    SensorType(String displayName, double defaultThreshold, String unit) {
+    SensorType(int code, String displayName, double defaultThreshold, String unit) {
+        this.code = code;
         this.displayName = displayName;
         this.defaultThreshold = defaultThreshold;
         this.unit = unit;
     }
 
+    /**
+     * Returns the sensor type for a compact wire/storage code, or null if the code is unknown.
+     */
+    public static SensorType fromCode(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
     public String getDisplayName() {
         return displayName;
     }
@@ -0,0 +1,244 @@
+package mk.dmt.wms.monitoring;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mk.dmt.wms.config.AlarmConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Per-sensor alarm state: turns the threshold verdict of every measurement into episode
+ * transitions, so a sensor that stays across its threshold raises one alarm instead of one per
+ * sample.
+ * <p>
+ * A sensor across its threshold is pending until it has been there for {@code alarm.raise-after},
+ * then the episode is RAISED. While it is open, a higher severity ESCALATES it. It is CLEARED once
+ * the value has been inside the crossed bound by at least the hysteresis of the sensor type for
+ * {@code alarm.clear-after}, judged by the thresholds in effect now, so a reload applies to open
+ * episodes too. A value that swings across the opposite bound clears the episode and raises one
+ * there at once. Only sensors that are pending or in an episode have state; a sensor
+ * within bounds costs one map lookup and no allocation. Windowed rules run the same
+ * {@link Episode} state machine on their windowed value, one per rule and sensor.
+ * <p>
+ * A sensor is always evaluated on the same monitoring rail, so its state is never updated
+ * concurrently; the map publishes it between threads.
+ */
+@Component
+public class AlarmEpisodeTracker implements MeterBinder {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * Alarm state of one rule of one sensor: idle, pending or in an episode. Not thread-safe; a
+     * sensor is always evaluated on the same monitoring rail.
+     */
+    static final class Episode {
+        // Epoch nanos of the first sample across the threshold, while pending
+        private long pendingSince = NONE;
+        // Epoch nanos of the first sample inside the hysteresis band, while clearing
+        private long clearingSince = NONE;
+        private boolean open;
+        private boolean upper;
+        private double bound;
+        private double peak;
+        private AlarmEvent.Severity severity;
+        private Instant raisedAt;
+
+        /**
+         * Advances the episode by one evaluation of the rule and returns the resulting transitions:
+         * usually none, one, or a CLEARED and a RAISED when the value swings across both bounds.
+         * An open episode follows the rule as it is now, so reloaded thresholds apply to it.
+         *
+         * @param value         the value the rule evaluated: the measured value, or a windowed value
+         * @param violatedBound the bound the value lies outside of, or NaN if it is within bounds
+         * @param bounds        the rule as it is now: the bound a given value lies outside of, or NaN
+         * @param severityScale the distance past a bound near zero that counts as 100%, see
+         *                      {@link AlarmEvent#calculateSeverity(double, double, double)}
+         */
+        List<AlarmEvent> advance(SensorMeasurement measurement, String rule, double value, double violatedBound,
+                                 DoubleUnaryOperator bounds, double hysteresis, double severityScale,
+                                 AlarmConfig config) {
+            if (!open) {
+                return advanceClosed(measurement, rule, value, violatedBound, severityScale, config);
+            }
+
+            if (Double.isNaN(violatedBound)) {
+                // Inside the bounds, but not by the hysteresis as long as the rule still rejects
+                // the value moved back towards the crossed bound by it
+                double towards = upper ? value + hysteresis : value - hysteresis;
+                if (!Double.isNaN(bounds.applyAsDouble(towards))) {
+                    clearingSince = NONE;
+                    return List.of();
+                }
+                long now = epochNanos(measurement);
+                if (clearingSince == NONE) {
+                    clearingSince = now;
+                }
+                if (now - clearingSince < config.getClearAfter().toNanos()) {
+                    return List.of();
+                }
+                AlarmEvent cleared = event(measurement, rule, AlarmEvent.State.CLEARED);
+                reset();
+                return List.of(cleared);
+            }
+
+            clearingSince = NONE;
+            if (value > violatedBound != upper) {
+                // Swung across the other bound: that is a new excursion, already out of bounds
+                AlarmEvent cleared = event(measurement, rule, AlarmEvent.State.CLEARED);
+                reset();
+                raise(measurement, value, violatedBound, severityScale);
+                return List.of(cleared, event(measurement, rule, AlarmEvent.State.RAISED));
+            }
+            bound = violatedBound;
+            if (upper ? value > peak : value < peak) {
+                peak = value;
+            }
+            AlarmEvent.Severity current = AlarmEvent.calculateSeverity(value, bound, severityScale);
+            if (current.compareTo(severity) <= 0) {
+                return List.of();
+            }
+            severity = current;
+            return List.of(event(measurement, rule, AlarmEvent.State.ESCALATED));
+        }
+
+        private List<AlarmEvent> advanceClosed(SensorMeasurement measurement, String rule, double value,
+                                               double violatedBound, double severityScale, AlarmConfig config) {
+            if (Double.isNaN(violatedBound)) {
+                pendingSince = NONE;
+                return List.of();
+            }
+            long now = epochNanos(measurement);
+            if (pendingSince == NONE) {
+                pendingSince = now;
+            }
+            if (now - pendingSince < config.getRaiseAfter().toNanos()) {
+                return List.of();
+            }
+            raise(measurement, value, violatedBound, severityScale);
+            return List.of(event(measurement, rule, AlarmEvent.State.RAISED));
+        }
+
+        private void raise(SensorMeasurement measurement, double value, double violatedBound, double severityScale) {
+            open = true;
+            upper = value > violatedBound;
+            bound = violatedBound;
+            peak = value;
+            severity = AlarmEvent.calculateSeverity(value, violatedBound, severityScale);
+            // Matches the database's timestamp precision, so the episode can be found by it
+            raisedAt = (measurement.timestamp() != null ? measurement.timestamp() : Instant.now())
+                    .truncatedTo(ChronoUnit.MICROS);
+        }
+
+        /**
+         * Returns whether the episode is neither pending nor open.
+         */
+        boolean isIdle() {
+            return !open && pendingSince == NONE;
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        private void reset() {
+            pendingSince = NONE;
+            clearingSince = NONE;
+            open = false;
+            raisedAt = null;
+        }
+
+        private AlarmEvent event(SensorMeasurement measurement, String rule, AlarmEvent.State transition) {
+            return new AlarmEvent(measurement, bound, Instant.now(), severity, transition, raisedAt, peak, rule);
+        }
+    }
+
+    private final AlarmConfig config;
+    private final ThresholdRuleEngine thresholds;
+    private final Map<String, Episode> states = new ConcurrentHashMap<>();
+
+    public AlarmEpisodeTracker(AlarmConfig config, ThresholdRuleEngine thresholds) {
+        this.config = config;
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Advances the threshold episode of the measurement's sensor and returns the resulting
+     * transitions, usually none.
+     *
+     * @param violatedBound the bound the measurement lies outside of, or NaN if it is within bounds
+     */
+    public List<AlarmEvent> evaluate(SensorMeasurement measurement, double violatedBound) {
+        Episode episode = states.get(measurement.sensorId());
+        if (episode == null) {
+            if (Double.isNaN(violatedBound)) {
+                return List.of();
+            }
+            episode = new Episode();
+            states.put(measurement.sensorId(), episode);
+        }
+        SensorType sensorType = measurement.sensorType();
+        List<AlarmEvent> transitions = episode.advance(measurement, AlarmEvent.THRESHOLD_RULE, measurement.value(),
+                violatedBound, value -> thresholds.violatedBound(measurement, value), hysteresis(sensorType),
+                severityScale(sensorType), config);
+        if (episode.isIdle()) {
+            states.remove(measurement.sensorId());
+        }
+        return transitions;
+    }
+
+    /**
+     * Returns the number of sensors with an open episode.
+     */
+    public int getOpenEpisodeCount() {
+        int open = 0;
+        for (Episode episode : states.values()) {
+            if (episode.isOpen()) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wms.alarm.episodes.open", this, AlarmEpisodeTracker::getOpenEpisodeCount)
+                .description("Sensors with an open alarm episode")
+                .register(registry);
+    }
+
+    /**
+     * Returns the hysteresis of a sensor type's thresholds.
+     */
+    double hysteresis(SensorType sensorType) {
+        return switch (sensorType) {
+            case TEMPERATURE -> config.getTemperatureHysteresis();
+            case HUMIDITY -> config.getHumidityHysteresis();
+        };
+    }
+
+    /**
+     * Returns the severity scale of a sensor type's thresholds.
+     */
+    double severityScale(SensorType sensorType) {
+        return switch (sensorType) {
+            case TEMPERATURE -> config.getTemperatureSeverityScale();
+            case HUMIDITY -> config.getHumiditySeverityScale();
+        };
+    }
+
+    private static long epochNanos(SensorMeasurement measurement) {
+        Instant timestamp = measurement.timestamp() != null ? measurement.timestamp() : Instant.now();
+        return timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano();
+    }
+}
@@ -1,24 +1,53 @@
 package mk.dmt.wms.monitoring;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.config.PersistenceConfig;
 import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.event.AlarmEventBus;
 import mk.dmt.wms.event.MeasurementEventBus;
 import mk.dmt.wms.model.SensorMeasurement;
-import mk.dmt.wms.model.SensorType;
 import mk.dmt.wms.service.MeasurementPersistenceService;
+import mk.dmt.wms.service.PersistenceRetry;
+import mk.dmt.wms.service.PersistenceSpill;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Central Monitoring Service that monitors measurements from all warehouses
  * and triggers alarms when thresholds are exceeded.
+ * <p>
+ * The {@link AlarmEpisodeTracker} turns threshold verdicts into alarm episodes, so only their
+ * transitions (raised, escalated, cleared) are published and persisted, not every sample. The
+ * {@link WindowRuleEvaluator} adds episodes of windowed rules (moving average, rate of change, time
+ * above a level) on top of the thresholds on each measured value.
+ * <p>
+ * Alarm persistence is a stage of the monitoring stream: each rail saves at most
+ * {@code persistence.max-in-flight-alarms} alarms at a time and stops requesting measurements
+ * while all of its slots are taken. Transient database failures are retried with backoff, then
+ * the alarm is handed to the {@link PersistenceSpill}. The writes of one sensor are made one after
+ * another, in the order of its transitions.
  */
 @Service
-public class CentralMonitoringService {
+public class CentralMonitoringService implements MeterBinder {
 
     private static final Logger log = LoggerFactory.getLogger(CentralMonitoringService.class);
 
@@ -28,16 +57,42 @@ public class CentralMonitoringService {
     private static final String ANSI_RESET = "\u001B[0m";
 
     private final MeasurementEventBus eventBus;
+    private final AlarmEventBus alarmEventBus;
     private final MonitoringConfig config;
+    private final ThresholdRuleEngine thresholds;
+    private final AlarmEpisodeTracker episodes;
+    private final WindowRuleEvaluator windowRules;
     private final MeasurementPersistenceService persistenceService;
+    private final IngestStatistics statistics;
+    private final PersistenceConfig persistenceConfig;
+    private final PersistenceSpill spill;
+    private final AtomicInteger alarmsInFlight = new AtomicInteger();
+    // Completes when the last alarm write of a sensor has finished
+    private final Map<String, CompletableFuture<Void>> lastAlarmWrites = new ConcurrentHashMap<>();
+    private final LongAdder alarmRetries = new LongAdder();
+    private final LongAdder alarmsFailed = new LongAdder();
     private Disposable subscription;
 
     public CentralMonitoringService(MeasurementEventBus eventBus,
+                                   AlarmEventBus alarmEventBus,
                                    MonitoringConfig config,
-                                   MeasurementPersistenceService persistenceService) {
+                                   ThresholdRuleEngine thresholds,
+                                   AlarmEpisodeTracker episodes,
+                                   WindowRuleEvaluator windowRules,
+                                   MeasurementPersistenceService persistenceService,
+                                   IngestStatistics statistics,
+                                   PersistenceConfig persistenceConfig,
+                                   PersistenceSpill spill) {
         this.eventBus = eventBus;
+        this.alarmEventBus = alarmEventBus;
         this.config = config;
+        this.thresholds = thresholds;
+        this.episodes = episodes;
+        this.windowRules = windowRules;
         this.persistenceService = persistenceService;
+        this.statistics = statistics;
+        this.persistenceConfig = persistenceConfig;
+        this.spill = spill;
     }
 
     @PostConstruct
@@ -46,11 +101,14 @@ public class CentralMonitoringService {
         log.info("Configured thresholds:");
         log.info("  - Temperature: {}°C", config.getTemperatureThreshold());
         log.info("  - Humidity: {}%", config.getHumidityThreshold());
+        log.info("  - Sensor and warehouse rules: {}", thresholds.getRules().size());
+        log.info("  - Window rules: {}", config.getWindowRules().size());
 
-        subscription = eventBus.subscribe()
-                .doOnNext(this::processMeasurement)
+        // Rails are processed concurrently when the bus is partitioned; a sensor always stays on one rail
+        subscription = eventBus.subscribeParallel()
+                .flatMap(this::processMeasurement, false, persistenceConfig.getMaxInFlightAlarms())
                 .subscribe(
-                        measurement -> {},
+                        alarm -> {},
                         error -> log.error("Error in monitoring stream: {}", error.getMessage()),
                         () -> log.info("Monitoring stream completed")
                 );
@@ -58,39 +116,104 @@ public class CentralMonitoringService {
         log.info("Central Monitoring Service started. Monitoring all warehouses...");
     }
 
-    private void processMeasurement(SensorMeasurement measurement) {
-        // Persist measurement to database
-        persistenceService.saveMeasurement(measurement)
-                .subscribe(
-                    entity -> log.debug("Persisted measurement: id={}", entity.getId()),
-                    error -> log.error("Failed to persist measurement: {}", error.getMessage())
-                );
-
-        double threshold = getThreshold(measurement.sensorType());
+    /**
+     * Evaluates a measurement and returns the stored or spilled alarm transitions it caused, if any.
+     */
+    private Publisher<AlarmEvent> processMeasurement(SensorMeasurement measurement) {
+        // Measurements are persisted in batches by MeasurementBatchWriter
+        double threshold = thresholds.violatedBound(measurement);
+        List<AlarmEvent> transitions = episodes.evaluate(measurement, threshold);
+        List<AlarmEvent> windowed = windowRules.evaluate(measurement);
 
-        if (measurement.value() > threshold) {
-            triggerAlarm(measurement, threshold);
-        } else {
+        if (!windowed.isEmpty()) {
+            if (!transitions.isEmpty()) {
+                List<AlarmEvent> all = new ArrayList<>(transitions.size() + windowed.size());
+                all.addAll(transitions);
+                all.addAll(windowed);
+                transitions = all;
+            } else {
+                transitions = windowed;
+            }
+        }
+        if (transitions.size() == 1) {
+            return triggerAlarm(transitions.get(0));
+        }
+        if (!transitions.isEmpty()) {
+            return Flux.fromIterable(transitions).concatMap(this::triggerAlarm);
+        }
+        if (Double.isNaN(threshold) && log.isDebugEnabled()) {
             log.debug("Measurement within normal range: {}", measurement.toDisplayString());
         }
+        return Mono.empty();
     }
 
-    private double getThreshold(SensorType sensorType) {
-        return switch (sensorType) {
-            case TEMPERATURE -> config.getTemperatureThreshold();
-            case HUMIDITY -> config.getHumidityThreshold();
-        };
+    /**
+     * Persists an alarm once the previous write for its sensor has finished, so that a raise is
+     * stored before the escalation or clear that follows it.
+     */
+    private Mono<AlarmEvent> persistAlarm(AlarmEvent alarm) {
+        String sensorId = alarm.measurement().sensorId();
+        Mono<AlarmEvent> save = saveAlarm(alarm);
+        return Mono.defer(() -> {
+            CompletableFuture<Void> written = new CompletableFuture<>();
+            CompletableFuture<Void> previous = lastAlarmWrites.put(sensorId, written);
+            Mono<Void> turn = previous == null ? Mono.empty() : Mono.fromFuture(previous, true);
+            return turn.then(save)
+                    .doFinally(signal -> {
+                        written.complete(null);
+                        lastAlarmWrites.remove(sensorId, written);
+                    });
+        });
     }
 
-    private void triggerAlarm(SensorMeasurement measurement, double threshold) {
-        AlarmEvent alarm = AlarmEvent.of(measurement, threshold);
+    private Mono<AlarmEvent> saveAlarm(AlarmEvent alarm) {
+        return persistenceService.saveAlarm(alarm)
+                .retryWhen(PersistenceRetry.transientErrors(persistenceConfig)
+                        .doBeforeRetry(signal -> alarmRetries.increment()))
+                .doOnNext(entity -> log.debug("Persisted alarm: id={}", entity.getId()))
+                .thenReturn(alarm)
+                .onErrorResume(error -> {
+                    if (PersistenceRetry.isTransient(error) && spill.spillAlarm(alarm)) {
+                        // Stored once the spill is replayed
+                        log.debug("Spilled alarm: {}", error.getMessage());
+                        return Mono.just(alarm);
+                    }
+                    log.error("Failed to persist alarm: {}", error.getMessage());
+                    alarmsFailed.increment();
+                    return Mono.empty();
+                })
+                .doOnSubscribe(subscription -> alarmsInFlight.incrementAndGet())
+                .doFinally(signal -> alarmsInFlight.decrementAndGet());
+    }
 
-        // Persist alarm to database
-        persistenceService.saveAlarm(alarm)
-                .subscribe(
-                    entity -> log.debug("Persisted alarm: id={}", entity.getId()),
-                    error -> log.error("Failed to persist alarm: {}", error.getMessage())
-                );
+    private Mono<AlarmEvent> triggerAlarm(AlarmEvent alarm) {
+        SensorMeasurement measurement = alarm.measurement();
+
+        // Persist alarm to database once the monitoring stream subscribes to it, then share it with
+        // all dashboards once it is stored or spilled; alarms the database rejected are not shown
+        Mono<AlarmEvent> persisted = persistAlarm(alarm).doOnNext(alarmEventBus::publish);
+
+        if (!alarm.isThresholdAlarm()) {
+            logWindowAlarm(alarm);
+            return persisted;
+        }
+
+        if (alarm.state() == AlarmEvent.State.CLEARED) {
+            log.info("ALARM CLEARED: {} sensor {} back within threshold {}{} (peak {}{}), Warehouse: {}",
+                    measurement.sensorType().getDisplayName(),
+                    measurement.sensorId(),
+                    alarm.threshold(),
+                    measurement.sensorType().getUnit(),
+                    alarm.peakValue(),
+                    measurement.sensorType().getUnit(),
+                    measurement.warehouseId());
+            return persisted;
+        }
+
+        // Alarms are always counted; individual lines are rate-limited per summary interval
+        if (!statistics.recordAlarm(alarm.severity())) {
+            return persisted;
+        }
 
         // Log with appropriate severity color
         String colorCode = switch (alarm.getSeverity()) {
@@ -103,14 +226,43 @@ public class CentralMonitoringService {
         System.out.println(colorCode + alarm.toAlarmMessage() + ANSI_RESET);
 
         // Also log for persistent record
-        log.warn("ALARM TRIGGERED: {} sensor {} exceeded threshold. Value: {}{}, Threshold: {}{}, Warehouse: {}",
+        log.warn("ALARM {}: {} sensor {} crossed threshold. Value: {}{}, Threshold: {}{}, Warehouse: {}",
+                alarm.state(),
                 measurement.sensorType().getDisplayName(),
                 measurement.sensorId(),
                 measurement.value(),
                 measurement.sensorType().getUnit(),
-                threshold,
+                alarm.threshold(),
                 measurement.sensorType().getUnit(),
                 measurement.warehouseId());
+        return persisted;
+    }
+
+    private void logWindowAlarm(AlarmEvent alarm) {
+        SensorMeasurement measurement = alarm.measurement();
+        if (alarm.state() == AlarmEvent.State.CLEARED) {
+            log.info("ALARM CLEARED: {} sensor {} back within window rule {} (threshold {}, peak {}), Warehouse: {}",
+                    measurement.sensorType().getDisplayName(),
+                    measurement.sensorId(),
+                    alarm.rule(),
+                    alarm.threshold(),
+                    alarm.peakValue(),
+                    measurement.warehouseId());
+            return;
+        }
+        if (!statistics.recordAlarm(alarm.severity())) {
+            return;
+        }
+        String colorCode = alarm.severity() == AlarmEvent.Severity.WARNING ? ANSI_YELLOW : ANSI_RED;
+        System.out.println(colorCode + alarm.toAlarmMessage() + ANSI_RESET);
+        log.warn("ALARM {}: {} sensor {} violated window rule {}. Peak: {}, Threshold: {}, Warehouse: {}",
+                alarm.state(),
+                measurement.sensorType().getDisplayName(),
+                measurement.sensorId(),
+                alarm.rule(),
+                alarm.peakValue(),
+                alarm.threshold(),
+                measurement.warehouseId());
     }
 
     @PreDestroy
@@ -122,12 +274,27 @@ public class CentralMonitoringService {
         log.info("Central Monitoring Service stopped.");
     }
 
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wms.persistence.inflight", alarmsInFlight, AtomicInteger::get)
+                .description("Writes currently executing")
+                .tag("stream", "alarms")
+                .register(registry);
+        FunctionCounter.builder("wms.persistence.retries", alarmRetries, LongAdder::sum)
+                .description("Writes retried after a transient failure")
+                .tag("stream", "alarms")
+                .register(registry);
+        FunctionCounter.builder("wms.persistence.failed", alarmsFailed, LongAdder::sum)
+                .description("Records that could not be written")
+                .tag("stream", "alarms")
+                .register(registry);
+    }
+
     /**
-     * Checks if a measurement exceeds its threshold.
+     * Checks if a measurement lies outside its thresholds.
      * Useful for testing.
      */
     public boolean exceedsThreshold(SensorMeasurement measurement) {
-        double threshold = getThreshold(measurement.sensorType());
-        return measurement.value() > threshold;
+        return !Double.isNaN(thresholds.violatedBound(measurement));
     }
 }
@@ -0,0 +1,224 @@
+package mk.dmt.wms.monitoring;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.IngestLogConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregated ingest counters that replace per-message logging on the hot path.
+ * Producers only increment striped counters; a single INFO summary with the per-interval
+ * deltas (measurements per sensor type, rejected records, alarms by severity) is logged
+ * once per configured interval, and only when something happened.
+ */
+@Component
+public class IngestStatistics implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestStatistics.class);
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final AlarmEvent.Severity[] SEVERITIES = AlarmEvent.Severity.values();
+    // Rejected records are tracked per sensor type, plus one slot for binary frames
+    private static final int BINARY_SLOT = SENSOR_TYPES.length;
+
+    private final IngestLogConfig config;
+    private final LongAdder[] measurements = newCounters(SENSOR_TYPES.length);
+    private final LongAdder[] rejected = newCounters(SENSOR_TYPES.length + 1);
+    private final LongAdder[] alarms = newCounters(SEVERITIES.length);
+    private final LongAdder suppressedAlarmLines = new LongAdder();
+    private final AtomicInteger alarmLineBudget = new AtomicInteger();
+
+    // Totals at the previous summary, only touched by the summary task
+    private final long[] lastMeasurements = new long[SENSOR_TYPES.length];
+    private final long[] lastRejected = new long[SENSOR_TYPES.length + 1];
+    private final long[] lastAlarms = new long[SEVERITIES.length];
+    private long lastSuppressedAlarmLines;
+
+    private Disposable summaryTask;
+
+    public IngestStatistics(IngestLogConfig config) {
+        this.config = config;
+        this.alarmLineBudget.set(config.getMaxAlarmLinesPerInterval());
+    }
+
+    @PostConstruct
+    public void start() {
+        summaryTask = Flux.interval(config.getSummaryInterval(), config.getSummaryInterval())
+                .subscribe(tick -> logSummary());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (summaryTask != null && !summaryTask.isDisposed()) {
+            summaryTask.dispose();
+        }
+        logSummary();
+    }
+
+    /**
+     * Counts the measurements of a decoded batch.
+     */
+    public void recordMeasurements(List<SensorMeasurement> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            measurements[batch.get(i).sensorType().ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts text records of the given sensor type that could not be parsed.
+     */
+    public void recordRejected(SensorType sensorType, int count) {
+        if (count > 0) {
+            rejected[sensorType.ordinal()].add(count);
+        }
+    }
+
+    /**
+     * Counts binary frames that could not be decoded.
+     */
+    public void recordRejectedBinary(int count) {
+        if (count > 0) {
+            rejected[BINARY_SLOT].add(count);
+        }
+    }
+
+    /**
+     * Counts a raised alarm and returns whether it may still be logged individually in the
+     * current interval. Alarms over the budget are only reported in the summary.
+     */
+    public boolean recordAlarm(AlarmEvent.Severity severity) {
+        alarms[severity.ordinal()].increment();
+        if (alarmLineBudget.get() > 0 && alarmLineBudget.getAndDecrement() > 0) {
+            return true;
+        }
+        suppressedAlarmLines.increment();
+        return false;
+    }
+
+    /**
+     * Returns whether a raw message should be logged in sampled debug mode.
+     * Callers should check {@code log.isDebugEnabled()} first so that no work is done otherwise.
+     */
+    public boolean sample() {
+        int rate = config.getSampleRate();
+        return rate <= 1 || ThreadLocalRandom.current().nextInt(rate) == 0;
+    }
+
+    public long getMeasurementCount(SensorType sensorType) {
+        return measurements[sensorType.ordinal()].sum();
+    }
+
+    public long getRejectedCount(SensorType sensorType) {
+        return rejected[sensorType.ordinal()].sum();
+    }
+
+    public long getRejectedBinaryCount() {
+        return rejected[BINARY_SLOT].sum();
+    }
+
+    public long getAlarmCount(AlarmEvent.Severity severity) {
+        return alarms[severity.ordinal()].sum();
+    }
+
+    synchronized void logSummary() {
+        alarmLineBudget.set(config.getMaxAlarmLinesPerInterval());
+
+        long[] measurementDeltas = deltas(measurements, lastMeasurements);
+        long[] rejectedDeltas = deltas(rejected, lastRejected);
+        long[] alarmDeltas = deltas(alarms, lastAlarms);
+        long suppressed = suppressedAlarmLines.sum();
+        long suppressedDelta = suppressed - lastSuppressedAlarmLines;
+        lastSuppressedAlarmLines = suppressed;
+
+        if (isZero(measurementDeltas) && isZero(rejectedDeltas) && isZero(alarmDeltas)) {
+            return;
+        }
+
+        StringBuilder summary = new StringBuilder("Ingest summary (last ")
+                .append(config.getSummaryInterval().toSeconds()).append("s): measurements [");
+        for (SensorType type : SENSOR_TYPES) {
+            summary.append(type.ordinal() == 0 ? "" : ", ")
+                    .append(type.getDisplayName()).append('=').append(measurementDeltas[type.ordinal()]);
+        }
+        summary.append("], rejected [");
+        for (SensorType type : SENSOR_TYPES) {
+            summary.append(type.getDisplayName()).append('=').append(rejectedDeltas[type.ordinal()]).append(", ");
+        }
+        summary.append("binary=").append(rejectedDeltas[BINARY_SLOT]).append("], alarms [");
+        for (AlarmEvent.Severity severity : SEVERITIES) {
+            summary.append(severity.ordinal() == 0 ? "" : ", ")
+                    .append(severity.name()).append('=').append(alarmDeltas[severity.ordinal()]);
+        }
+        summary.append(']');
+        if (suppressedDelta > 0) {
+            summary.append(", ").append(suppressedDelta).append(" alarm line(s) suppressed");
+        }
+        log.info(summary.toString());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (SensorType type : SENSOR_TYPES) {
+            FunctionCounter.builder("wms.ingest.measurements", measurements[type.ordinal()], LongAdder::sum)
+                    .description("Measurements decoded from sensor datagrams")
+                    .tag("sensor_type", type.getDisplayName())
+                    .register(registry);
+            FunctionCounter.builder("wms.ingest.rejected", rejected[type.ordinal()], LongAdder::sum)
+                    .description("Sensor records that could not be parsed")
+                    .tag("source", type.getDisplayName())
+                    .register(registry);
+        }
+        FunctionCounter.builder("wms.ingest.rejected", rejected[BINARY_SLOT], LongAdder::sum)
+                .description("Sensor records that could not be parsed")
+                .tag("source", "binary")
+                .register(registry);
+        for (AlarmEvent.Severity severity : SEVERITIES) {
+            FunctionCounter.builder("wms.alarms.raised", alarms[severity.ordinal()], LongAdder::sum)
+                    .description("Alarms raised by the central monitoring service")
+                    .tag("severity", severity.name())
+                    .register(registry);
+        }
+    }
+
+    private static long[] deltas(LongAdder[] counters, long[] last) {
+        long[] deltas = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            long total = counters[i].sum();
+            deltas[i] = total - last[i];
+            last[i] = total;
+        }
+        return deltas;
+    }
+
+    private static boolean isZero(long[] values) {
+        for (long value : values) {
+            if (value != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static LongAdder[] newCounters(int size) {
+        LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+}
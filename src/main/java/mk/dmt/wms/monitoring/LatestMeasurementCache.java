@@ -0,0 +1,368 @@
+package mk.dmt.wms.monitoring;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.event.AlarmEventBus;
+import mk.dmt.wms.event.MeasurementEventBus;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latest measurement and alarm state per sensor, shared by all dashboard clients and the
+ * snapshot endpoint. Every update is stamped with a global version, so a client only needs to
+ * remember the version it has seen to get the sensors that changed since, however many updates
+ * happened in between.
+ * <p>
+ * Sensors are assigned a slot on first sight and their fields are kept in primitive arrays,
+ * allocated in pages of {@value #PAGE_SIZE} slots, and found through an open-addressing index of
+ * slot numbers. An update allocates nothing and a sensor costs little more than its id
+ * (about 100 bytes per sensor for ids like {@code sensor-123456}). Measurements and alarms are written under
+ * the cache's lock; readers do not lock and instead retry a slot whose version changed while they
+ * read it. An entry is stored before the version counter is advanced past it, so everything at or
+ * below {@link #getVersion()} is visible.
+ * <p>
+ * The slot of every update is also recorded in a ring indexed by version, so the sensors changed
+ * since a recent version are found from the updates in between rather than by scanning every slot;
+ * a client that fell behind the ring, or whose updates outnumber the sensors, gets a full scan.
+ * <p>
+ * The alarm state of a sensor is the severity of its open alarm episode: set when the episode is
+ * raised or escalated on the {@link AlarmEventBus}, and reset when it is cleared. Only threshold
+ * episodes count; episodes of window rules would otherwise clear each other's state.
+ */
+@Component
+public class LatestMeasurementCache {
+
+    private static final Logger log = LoggerFactory.getLogger(LatestMeasurementCache.class);
+
+    static final int PAGE_SIZE = 4096;
+    private static final int PAGE_SHIFT = Integer.numberOfTrailingZeros(PAGE_SIZE);
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    static final int CHANGE_LOG_SIZE = 1 << 16;
+    private static final int CHANGE_LOG_MASK = CHANGE_LOG_SIZE - 1;
+    // Version of a slot that is being written
+    private static final long WRITING = -1;
+    private static final byte NO_ALARM = -1;
+    private static final int NO_WAREHOUSE = -1;
+    private static final AlarmEvent.Severity[] SEVERITIES = AlarmEvent.Severity.values();
+    private static final VarHandle VERSIONS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INDEX = MethodHandles.arrayElementVarHandle(int[].class);
+
+    /**
+     * Fields of {@value #PAGE_SIZE} consecutive slots.
+     */
+    private static final class Page {
+        final String[] sensorIds = new String[PAGE_SIZE];
+        final double[] values = new double[PAGE_SIZE];
+        final long[] epochSeconds = new long[PAGE_SIZE];
+        final int[] nanos = new int[PAGE_SIZE];
+        final int[] warehouses = new int[PAGE_SIZE];
+        final byte[] types = new byte[PAGE_SIZE];
+        final byte[] alarms = new byte[PAGE_SIZE];
+        final long[] versions = new long[PAGE_SIZE];
+    }
+
+    private final MeasurementEventBus eventBus;
+    private final AlarmEventBus alarmEventBus;
+    // Slot + 1 per entry, 0 = empty; at most half full
+    private volatile int[] index = new int[1024];
+    private final Map<String, Integer> warehouseIndex = new ConcurrentHashMap<>();
+    private volatile String[] warehouses = new String[8];
+    private volatile Page[] pages = new Page[0];
+    // Slot updated at each version, at version & CHANGE_LOG_MASK; written before the version is published
+    private final int[] changeLog = new int[CHANGE_LOG_SIZE];
+    private volatile int size;
+    private volatile long version;
+    private Disposable subscription;
+    private Disposable alarmSubscription;
+
+    public LatestMeasurementCache(MeasurementEventBus eventBus, AlarmEventBus alarmEventBus) {
+        this.eventBus = eventBus;
+        this.alarmEventBus = alarmEventBus;
+    }
+
+    @PostConstruct
+    public void start() {
+        subscription = eventBus.subscribe()
+                .subscribe(this::update, error -> log.error("Error in latest measurement stream: {}", error.getMessage()));
+        alarmSubscription = alarmEventBus.subscribe()
+                .subscribe(this::updateAlarm, error -> log.error("Error in latest alarm stream: {}", error.getMessage()));
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Disposable disposable : new Disposable[] {subscription, alarmSubscription}) {
+            if (disposable != null && !disposable.isDisposed()) {
+                disposable.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns the version of the most recent visible update.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the latest measurement of every sensor updated after {@code fromVersion},
+     * up to and including {@code toVersion}.
+     */
+    public List<SensorMeasurement> changedSince(long fromVersion, long toVersion) {
+        List<SensorMeasurement> changed = new ArrayList<>();
+        if (toVersion <= fromVersion) {
+            return changed;
+        }
+        if (toVersion - fromVersion <= Math.min(size, CHANGE_LOG_SIZE) && readChangeLog(fromVersion, toVersion, changed)) {
+            return changed;
+        }
+        changed.clear();
+        int count = size;
+        for (int slot = 0; slot < count; slot++) {
+            SensorSnapshot snapshot = read(slot, fromVersion, toVersion);
+            if (snapshot != null) {
+                changed.add(toMeasurement(snapshot));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Adds the sensors updated in (fromVersion, toVersion] from the change log, each at its
+     * latest update. Returns false if the log was overwritten meanwhile.
+     */
+    private boolean readChangeLog(long fromVersion, long toVersion, List<SensorMeasurement> changed) {
+        for (long v = fromVersion + 1; v <= toVersion; v++) {
+            int slot = (int) INDEX.getAcquire(changeLog, (int) (v & CHANGE_LOG_MASK));
+            Page page = pages[slot >> PAGE_SHIFT];
+            // Later updates of the slot are found at their own version, or in the next call
+            if ((long) VERSIONS.getAcquire(page.versions, slot & PAGE_MASK) != v) {
+                continue;
+            }
+            SensorSnapshot snapshot = read(slot, fromVersion, toVersion);
+            if (snapshot != null) {
+                changed.add(toMeasurement(snapshot));
+            }
+        }
+        VarHandle.loadLoadFence();
+        // The entry of version + 1 may already have been written over that of fromVersion + 1
+        return version + 1 - CHANGE_LOG_SIZE <= fromVersion;
+    }
+
+    /**
+     * Returns a stream that emits, every {@code interval}, the sensors that changed since the
+     * previous emission. The first emission contains all known sensors; intervals without
+     * changes emit nothing. Ticks the subscriber is not ready for are skipped and their changes
+     * are coalesced into the next emission.
+     */
+    public Flux<List<SensorMeasurement>> changes(Duration interval) {
+        return Flux.defer(() -> {
+            long[] seen = {0};
+            return Flux.interval(Duration.ZERO, interval)
+                    .onBackpressureDrop()
+                    .map(tick -> {
+                        long current = version;
+                        List<SensorMeasurement> changed = changedSince(seen[0], current);
+                        seen[0] = current;
+                        return changed;
+                    })
+                    .filter(changed -> !changed.isEmpty());
+        });
+    }
+
+    /**
+     * Returns the current reading of every known sensor, read slot by slot as the stream is consumed.
+     */
+    public Flux<SensorSnapshot> snapshot() {
+        return Flux.defer(() -> Flux.range(0, size))
+                .mapNotNull(slot -> read(slot, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the current reading of a sensor, or null if it has not reported yet.
+     */
+    public SensorSnapshot get(String sensorId) {
+        int slot = find(sensorId);
+        return slot < 0 ? null : read(slot, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Called serially by the measurement subscription
+    synchronized void update(SensorMeasurement measurement) {
+        int existing = find(measurement.sensorId());
+        int slot = existing >= 0 ? existing : size;
+        if (existing < 0 && (slot >> PAGE_SHIFT) >= pages.length) {
+            Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new Page();
+            pages = grown;
+        }
+        Page page = pages[slot >> PAGE_SHIFT];
+        int index = slot & PAGE_MASK;
+        long next = version + 1;
+
+        VERSIONS.setVolatile(page.versions, index, WRITING);
+        VarHandle.storeStoreFence();
+        page.values[index] = measurement.value();
+        Instant timestamp = measurement.timestamp();
+        page.epochSeconds[index] = timestamp == null ? Long.MIN_VALUE : timestamp.getEpochSecond();
+        page.nanos[index] = timestamp == null ? 0 : timestamp.getNano();
+        page.types[index] = measurement.sensorType() == null ? 0 : (byte) measurement.sensorType().getCode();
+        page.warehouses[index] = warehouseIndex(measurement.warehouseId());
+        if (existing < 0) {
+            page.alarms[index] = NO_ALARM;
+        }
+        VERSIONS.setRelease(page.versions, index, next);
+
+        if (existing < 0) {
+            page.sensorIds[index] = measurement.sensorId();
+            insert(measurement.sensorId(), slot);
+            size = slot + 1;
+        }
+        INDEX.setRelease(changeLog, (int) (next & CHANGE_LOG_MASK), slot);
+        version = next;
+    }
+
+    // Called by the alarm subscription
+    synchronized void updateAlarm(AlarmEvent alarm) {
+        if (!alarm.isThresholdAlarm()) {
+            return;
+        }
+        int slot = find(alarm.measurement().sensorId());
+        if (slot < 0) {
+            return;
+        }
+        Page page = pages[slot >> PAGE_SHIFT];
+        int index = slot & PAGE_MASK;
+        long next = version + 1;
+        VERSIONS.setVolatile(page.versions, index, WRITING);
+        VarHandle.storeStoreFence();
+        page.alarms[index] = alarm.state() == AlarmEvent.State.CLEARED ? NO_ALARM : (byte) alarm.severity().ordinal();
+        VERSIONS.setRelease(page.versions, index, next);
+        INDEX.setRelease(changeLog, (int) (next & CHANGE_LOG_MASK), slot);
+        version = next;
+    }
+
+    /**
+     * Returns the slot of a sensor, or -1. Lock-free; may miss a sensor that is being added.
+     */
+    private int find(String sensorId) {
+        int[] table = index;
+        int mask = table.length - 1;
+        for (int i = spread(sensorId.hashCode()) & mask; ; i = (i + 1) & mask) {
+            int entry = (int) INDEX.getAcquire(table, i);
+            if (entry == 0) {
+                return -1;
+            }
+            int slot = entry - 1;
+            if (sensorId.equals(pages[slot >> PAGE_SHIFT].sensorIds[slot & PAGE_MASK])) {
+                return slot;
+            }
+        }
+    }
+
+    // Called under the lock, after the slot's sensor id has been written
+    private void insert(String sensorId, int slot) {
+        int[] table = index;
+        if ((size + 1) * 2 > table.length) {
+            int[] grown = new int[table.length * 2];
+            for (int s = 0; s < size; s++) {
+                place(grown, pages[s >> PAGE_SHIFT].sensorIds[s & PAGE_MASK], s);
+            }
+            table = grown;
+            index = grown;
+        }
+        place(table, sensorId, slot);
+    }
+
+    private static void place(int[] table, String sensorId, int slot) {
+        int mask = table.length - 1;
+        int i = spread(sensorId.hashCode()) & mask;
+        while ((int) INDEX.getAcquire(table, i) != 0) {
+            i = (i + 1) & mask;
+        }
+        INDEX.setRelease(table, i, slot + 1);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Reads a consistent copy of a slot whose version is in (fromVersion, toVersion], or returns null.
+     */
+    private SensorSnapshot read(int slot, long fromVersion, long toVersion) {
+        Page page = pages[slot >> PAGE_SHIFT];
+        int index = slot & PAGE_MASK;
+        while (true) {
+            long before = (long) VERSIONS.getAcquire(page.versions, index);
+            if (before == WRITING) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (before <= fromVersion || before > toVersion) {
+                return null;
+            }
+            String sensorId = page.sensorIds[index];
+            double value = page.values[index];
+            long epochSecond = page.epochSeconds[index];
+            int nano = page.nanos[index];
+            int warehouse = page.warehouses[index];
+            byte type = page.types[index];
+            byte alarm = page.alarms[index];
+            VarHandle.loadLoadFence();
+            if ((long) VERSIONS.getVolatile(page.versions, index) == before) {
+                return new SensorSnapshot(sensorId,
+                        type == 0 ? null : SensorType.fromCode(type),
+                        value,
+                        epochSecond == Long.MIN_VALUE ? null : Instant.ofEpochSecond(epochSecond, nano),
+                        warehouse == NO_WAREHOUSE ? null : warehouses[warehouse],
+                        alarm == NO_ALARM ? null : SEVERITIES[alarm]);
+            }
+        }
+    }
+
+    // Warehouses are few; their ids are interned to a small table
+    private int warehouseIndex(String warehouseId) {
+        if (warehouseId == null) {
+            return NO_WAREHOUSE;
+        }
+        Integer index = warehouseIndex.get(warehouseId);
+        if (index != null) {
+            return index;
+        }
+        int next = warehouseIndex.size();
+        String[] table = warehouses;
+        if (next == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[next] = warehouseId;
+        warehouses = table;
+        warehouseIndex.put(warehouseId, next);
+        return next;
+    }
+
+    private static SensorMeasurement toMeasurement(SensorSnapshot snapshot) {
+        return new SensorMeasurement(snapshot.sensorId(), snapshot.sensorType(), snapshot.value(),
+                snapshot.timestamp(), snapshot.warehouseId());
+    }
+}
@@ -0,0 +1,279 @@
+package mk.dmt.wms.monitoring;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.HistoryBufferConfig;
+import mk.dmt.wms.event.MeasurementEventBus;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The last {@code history-buffer.capacity-per-sensor} measurements of every sensor, kept in a
+ * ring of primitive timestamp and value arrays per sensor and fed from the event bus, so that
+ * recent-history queries need not go to the database.
+ * <p>
+ * A query is answered only if the buffers are known to hold every matching measurement;
+ * otherwise it returns null and the caller falls back to the database. Rings are allocated up to
+ * {@code history-buffer.max-size}; sensors beyond that are not buffered, and from then on
+ * time-window queries are no longer answered from memory.
+ */
+@Component
+public class RecentMeasurementBuffer implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(RecentMeasurementBuffer.class);
+
+    // Timestamp and value per entry
+    private static final int ENTRY_BYTES = Long.BYTES + Double.BYTES;
+    private static final Comparator<SensorMeasurement> NEWEST_FIRST =
+            Comparator.comparing(SensorMeasurement::timestamp).reversed();
+    private static final Comparator<Entry> OLDEST_FIRST = Comparator.comparingLong(Entry::epochNanos);
+
+    /**
+     * Ring of one sensor; guarded by its own monitor.
+     */
+    private static final class Ring {
+        final String sensorId;
+        final long[] epochNanos;
+        final double[] values;
+        SensorType sensorType;
+        String warehouseId;
+        int next;
+        int count;
+
+        Ring(String sensorId, int capacity) {
+            this.sensorId = sensorId;
+            this.epochNanos = new long[capacity];
+            this.values = new double[capacity];
+        }
+
+        /**
+         * Returns the entries with a timestamp after {@code afterNanos}, at most {@code limit}, newest inserted first.
+         */
+        void copyTo(List<SensorMeasurement> out, long afterNanos, int limit) {
+            int capacity = values.length;
+            int copied = 0;
+            for (int i = 1; i <= count && copied < limit; i++) {
+                int index = (next - i + capacity) % capacity;
+                if (epochNanos[index] > afterNanos) {
+                    out.add(new SensorMeasurement(sensorId, sensorType, values[index],
+                            toInstant(epochNanos[index]), warehouseId));
+                    copied++;
+                }
+            }
+        }
+
+        /**
+         * Offers the entries with a timestamp after {@code afterNanos} to a heap holding the
+         * {@code limit} newest entries seen so far, oldest at its head.
+         */
+        void offerTo(PriorityQueue<Entry> newest, long afterNanos, int limit) {
+            int capacity = values.length;
+            for (int i = 1; i <= count; i++) {
+                int index = (next - i + capacity) % capacity;
+                long nanos = epochNanos[index];
+                if (nanos <= afterNanos) {
+                    continue;
+                }
+                if (newest.size() == limit) {
+                    if (nanos <= newest.peek().epochNanos()) {
+                        continue;
+                    }
+                    newest.poll();
+                }
+                newest.offer(new Entry(nanos, new SensorMeasurement(sensorId, sensorType, values[index],
+                        toInstant(nanos), warehouseId)));
+            }
+        }
+    }
+
+    private record Entry(long epochNanos, SensorMeasurement measurement) {
+    }
+
+    private final MeasurementEventBus eventBus;
+    private final int capacity;
+    private final int maxSensors;
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejectedSensors = new LongAdder();
+    // Every measurement with a later timestamp is still buffered
+    private volatile long completeAfterNanos;
+    private volatile boolean overflowed;
+    private Disposable subscription;
+
+    public RecentMeasurementBuffer(MeasurementEventBus eventBus, HistoryBufferConfig config) {
+        this.eventBus = eventBus;
+        this.capacity = Math.max(1, config.getCapacityPerSensor());
+        this.maxSensors = (int) Math.min(Integer.MAX_VALUE,
+                config.getMaxSize().toBytes() / ((long) capacity * ENTRY_BYTES));
+    }
+
+    @PostConstruct
+    public void start() {
+        // Nothing before this point passed through the buffers
+        completeAfterNanos = toEpochNanos(Instant.now());
+        subscription = eventBus.subscribe()
+                .subscribe(this::add, error -> log.error("Error in recent history stream: {}", error.getMessage()));
+        log.info("Buffering the last {} measurements of up to {} sensors", capacity, maxSensors);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null && !subscription.isDisposed()) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Returns the latest {@code limit} measurements of a sensor, newest first, or null if the
+     * buffer holds fewer than that.
+     */
+    public List<SensorMeasurement> history(String sensorId, int limit) {
+        Ring ring = rings.get(sensorId);
+        if (ring == null) {
+            misses.increment();
+            return null;
+        }
+        List<SensorMeasurement> result = new ArrayList<>(Math.min(limit, capacity));
+        synchronized (ring) {
+            if (ring.count < limit) {
+                misses.increment();
+                return null;
+            }
+            ring.copyTo(result, Long.MIN_VALUE, limit);
+        }
+        result.sort(NEWEST_FIRST);
+        hits.increment();
+        return result;
+    }
+
+    /**
+     * Returns the latest {@code limit} measurements of all sensors taken after {@code after},
+     * newest first, or null if some of them may no longer be buffered.
+     */
+    public List<SensorMeasurement> recent(Instant after, int limit) {
+        long afterNanos = toEpochNanos(after);
+        if (overflowed || afterNanos < completeAfterNanos) {
+            misses.increment();
+            return null;
+        }
+        if (limit <= 0) {
+            hits.increment();
+            return new ArrayList<>();
+        }
+        // Only the newest 'limit' entries are kept while scanning
+        PriorityQueue<Entry> newest = new PriorityQueue<>(Math.min(limit, 1024), OLDEST_FIRST);
+        for (Ring ring : rings.values()) {
+            synchronized (ring) {
+                ring.offerTo(newest, afterNanos, limit);
+            }
+        }
+        // Evictions during the scan may have removed entries of the window
+        if (afterNanos < completeAfterNanos) {
+            misses.increment();
+            return null;
+        }
+        SensorMeasurement[] result = new SensorMeasurement[newest.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = newest.poll().measurement();
+        }
+        hits.increment();
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    public int getSensorCount() {
+        return rings.size();
+    }
+
+    /**
+     * Returns the heap taken by the ring arrays.
+     */
+    public long getAllocatedBytes() {
+        return (long) rings.size() * capacity * ENTRY_BYTES;
+    }
+
+    // Called serially by the subscription only
+    void add(SensorMeasurement measurement) {
+        if (measurement.timestamp() == null) {
+            return;
+        }
+        Ring ring = rings.get(measurement.sensorId());
+        if (ring == null) {
+            if (rings.size() >= maxSensors) {
+                if (!overflowed) {
+                    log.warn("Recent history buffer is full ({} sensors); time-window queries go to the database",
+                            maxSensors);
+                    overflowed = true;
+                }
+                rejectedSensors.increment();
+                return;
+            }
+            ring = new Ring(measurement.sensorId(), capacity);
+            rings.put(measurement.sensorId(), ring);
+        }
+        long nanos = toEpochNanos(measurement.timestamp());
+        synchronized (ring) {
+            if (ring.count == capacity) {
+                long evicted = ring.epochNanos[ring.next];
+                if (evicted > completeAfterNanos) {
+                    completeAfterNanos = evicted;
+                }
+            } else {
+                ring.count++;
+            }
+            ring.epochNanos[ring.next] = nanos;
+            ring.values[ring.next] = measurement.value();
+            ring.sensorType = measurement.sensorType();
+            ring.warehouseId = measurement.warehouseId();
+            ring.next = (ring.next + 1) % capacity;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wms.history.buffer.bytes", this, RecentMeasurementBuffer::getAllocatedBytes)
+                .description("Heap taken by the recent-history ring buffers")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("wms.history.buffer.sensors", this, RecentMeasurementBuffer::getSensorCount)
+                .description("Sensors with a recent-history ring buffer")
+                .register(registry);
+        FunctionCounter.builder("wms.history.buffer.rejected", rejectedSensors, LongAdder::sum)
+                .description("Measurements of sensors not buffered because the buffer is full")
+                .register(registry);
+        FunctionCounter.builder("wms.history.buffer.queries", hits, LongAdder::sum)
+                .description("Recent-history queries by where they were answered")
+                .tag("source", "memory")
+                .register(registry);
+        FunctionCounter.builder("wms.history.buffer.queries", misses, LongAdder::sum)
+                .description("Recent-history queries by where they were answered")
+                .tag("source", "database")
+                .register(registry);
+    }
+
+    private static long toEpochNanos(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+}
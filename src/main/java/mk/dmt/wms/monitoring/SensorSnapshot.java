@@ -0,0 +1,26 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorType;
+
+import java.time.Instant;
+
+/**
+ * Current reading and alarm state of a sensor, as held by the {@link LatestMeasurementCache}.
+ *
+ * @param sensorId    The sensor
+ * @param sensorType  The sensor's type
+ * @param value       The latest measured value
+ * @param timestamp   When the latest value was measured
+ * @param warehouseId The warehouse of the latest measurement
+ * @param alarm       Severity of the alarm raised by the latest value, or null if it raised none
+ */
+public record SensorSnapshot(
+        String sensorId,
+        SensorType sensorType,
+        double value,
+        Instant timestamp,
+        String warehouseId,
+        AlarmEvent.Severity alarm
+) {
+}
@@ -0,0 +1,103 @@
+package mk.dmt.wms.monitoring;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates measurements against the current {@link ThresholdRules}, starting with
+ * {@code monitoring.rules}. Updates from the admin API or the rules file are compiled first and
+ * then swapped in as one reference, so an evaluation sees either the old or the new rule set and
+ * never waits for an update.
+ * <p>
+ * Per-type thresholds not set by an update fall back to {@link MonitoringConfig}, which is read
+ * on every evaluation.
+ */
+@Component
+public class ThresholdRuleEngine implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ThresholdRuleEngine.class);
+
+    private final MonitoringConfig config;
+    private final AtomicReference<ThresholdRules> rules;
+    private final LongAdder updates = new LongAdder();
+
+    public ThresholdRuleEngine(MonitoringConfig config) {
+        this.config = config;
+        this.rules = new AtomicReference<>(ThresholdRules.compile(config.getRules()));
+    }
+
+    /**
+     * Returns the bound the measurement lies outside of, or NaN if it is within bounds.
+     */
+    public double violatedBound(SensorMeasurement measurement) {
+        return violatedBound(measurement, measurement.value());
+    }
+
+    /**
+     * Returns the bound the given value would lie outside of for the measurement's sensor, or NaN
+     * if it is within bounds.
+     */
+    public double violatedBound(SensorMeasurement measurement, double value) {
+        ThresholdRules current = rules.get();
+        return current.violatedBound(measurement.sensorId(), measurement.sensorType(), measurement.warehouseId(),
+                value, defaultThreshold(current, measurement.sensorType()));
+    }
+
+    /**
+     * Compiles and swaps in new thresholds and rules.
+     *
+     * @throws IllegalArgumentException if they are invalid; the current rules stay in effect
+     */
+    public ThresholdRules update(ThresholdSettings settings, String source) {
+        ThresholdRules compiled = ThresholdRules.compile(settings);
+        rules.set(compiled);
+        updates.increment();
+        log.info("Applied {} threshold rules from {}", compiled.size(), source);
+        return compiled;
+    }
+
+    public ThresholdRules getRules() {
+        return rules.get();
+    }
+
+    /**
+     * Returns the thresholds and rules in effect, with per-type thresholds resolved.
+     */
+    public ThresholdSettings getSettings() {
+        ThresholdRules current = rules.get();
+        return new ThresholdSettings(defaultThreshold(current, SensorType.TEMPERATURE),
+                defaultThreshold(current, SensorType.HUMIDITY), current.getRules());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wms.thresholds.rules", rules, reference -> reference.get().size())
+                .description("Sensor and warehouse threshold rules in effect")
+                .register(registry);
+        FunctionCounter.builder("wms.thresholds.updates", updates, LongAdder::sum)
+                .description("Threshold rule sets applied at runtime")
+                .register(registry);
+    }
+
+    private double defaultThreshold(ThresholdRules current, SensorType sensorType) {
+        double threshold = current.defaultThreshold(sensorType);
+        if (!Double.isNaN(threshold)) {
+            return threshold;
+        }
+        return switch (sensorType) {
+            case TEMPERATURE -> config.getTemperatureThreshold();
+            case HUMIDITY -> config.getHumidityThreshold();
+        };
+    }
+}
@@ -0,0 +1,223 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.model.SensorType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Threshold rules compiled into open-addressing tables of primitive bounds: one keyed by sensor
+ * id and one per sensor type keyed by warehouse id. Immutable; a lookup hashes the id once and
+ * neither locks nor allocates.
+ * <p>
+ * An unset bound is stored as NaN and falls back to the next, less specific level. Per-type
+ * thresholds set through {@link ThresholdSettings} travel with the rules, so that a swapped-in
+ * instance replaces both at once.
+ */
+public final class ThresholdRules {
+
+    private final Table sensors;
+    private final Table[] warehouses;
+    private final List<MonitoringConfig.Rule> rules;
+    private final double temperatureThreshold;
+    private final double humidityThreshold;
+
+    private ThresholdRules(Table sensors, Table[] warehouses, List<MonitoringConfig.Rule> rules,
+                           double temperatureThreshold, double humidityThreshold) {
+        this.sensors = sensors;
+        this.warehouses = warehouses;
+        this.rules = rules;
+        this.temperatureThreshold = temperatureThreshold;
+        this.humidityThreshold = humidityThreshold;
+    }
+
+    /**
+     * Validates and compiles rules, without per-type thresholds of their own.
+     *
+     * @throws IllegalArgumentException if a rule is incomplete, contradictory or a duplicate
+     */
+    public static ThresholdRules compile(Collection<MonitoringConfig.Rule> rules) {
+        return compile(new ThresholdSettings(null, null, new ArrayList<>(rules)));
+    }
+
+    /**
+     * Validates and compiles thresholds and rules.
+     *
+     * @throws IllegalArgumentException if a threshold is not a number, or a rule is incomplete,
+     *                                  contradictory or a duplicate
+     */
+    public static ThresholdRules compile(ThresholdSettings settings) {
+        List<MonitoringConfig.Rule> rules = settings.rules() != null ? settings.rules() : List.of();
+        List<MonitoringConfig.Rule> sensorRules = new ArrayList<>();
+        List<List<MonitoringConfig.Rule>> warehouseRules = new ArrayList<>();
+        for (int i = 0; i < SensorType.values().length; i++) {
+            warehouseRules.add(new ArrayList<>());
+        }
+        for (MonitoringConfig.Rule rule : rules) {
+            if (rule == null) {
+                throw new IllegalArgumentException("Threshold rule must not be null");
+            }
+            validate(rule);
+            if (rule.getSensorId() != null) {
+                sensorRules.add(rule);
+            } else {
+                warehouseRules.get(rule.getSensorType().ordinal()).add(rule);
+            }
+        }
+
+        Table sensors = new Table(sensorRules.size());
+        for (MonitoringConfig.Rule rule : sensorRules) {
+            sensors.put(rule.getSensorId(), rule);
+        }
+        Table[] warehouses = new Table[warehouseRules.size()];
+        for (int i = 0; i < warehouses.length; i++) {
+            warehouses[i] = new Table(warehouseRules.get(i).size());
+            for (MonitoringConfig.Rule rule : warehouseRules.get(i)) {
+                warehouses[i].put(rule.getWarehouseId(), rule);
+            }
+        }
+        return new ThresholdRules(sensors, warehouses, List.copyOf(rules),
+                threshold(settings.temperatureThreshold()), threshold(settings.humidityThreshold()));
+    }
+
+    private static double threshold(Double value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        if (value.isNaN() || value.isInfinite()) {
+            throw new IllegalArgumentException("Threshold must be a finite number: " + value);
+        }
+        return value;
+    }
+
+    private static void validate(MonitoringConfig.Rule rule) {
+        if ((rule.getSensorId() == null) == (rule.getWarehouseId() == null)) {
+            throw new IllegalArgumentException("A threshold rule needs either a sensorId or a warehouseId");
+        }
+        if (rule.getWarehouseId() != null && rule.getSensorType() == null) {
+            throw new IllegalArgumentException("Warehouse rule " + rule.getWarehouseId() + " needs a sensorType");
+        }
+        if (rule.getMin() == null && rule.getMax() == null) {
+            throw new IllegalArgumentException("Threshold rule for " + key(rule) + " has neither min nor max");
+        }
+        if (rule.getMin() != null && rule.getMax() != null && rule.getMin() > rule.getMax()) {
+            throw new IllegalArgumentException("Threshold rule for " + key(rule) + " has min above max");
+        }
+    }
+
+    private static String key(MonitoringConfig.Rule rule) {
+        return rule.getSensorId() != null
+                ? "sensor " + rule.getSensorId()
+                : rule.getSensorType() + " in warehouse " + rule.getWarehouseId();
+    }
+
+    /**
+     * Returns the bound the value lies outside of, or NaN if it is within bounds. Bounds are
+     * inclusive; {@code defaultMax} applies where no rule sets a maximum.
+     */
+    public double violatedBound(String sensorId, SensorType sensorType, String warehouseId,
+                                double value, double defaultMax) {
+        double min = Double.NaN;
+        double max = Double.NaN;
+        int slot = sensorId != null ? sensors.find(sensorId) : -1;
+        if (slot >= 0) {
+            min = sensors.min[slot];
+            max = sensors.max[slot];
+        }
+        if ((Double.isNaN(min) || Double.isNaN(max)) && warehouseId != null && sensorType != null) {
+            Table table = warehouses[sensorType.ordinal()];
+            slot = table.find(warehouseId);
+            if (slot >= 0) {
+                if (Double.isNaN(min)) {
+                    min = table.min[slot];
+                }
+                if (Double.isNaN(max)) {
+                    max = table.max[slot];
+                }
+            }
+        }
+        if (Double.isNaN(max)) {
+            max = defaultMax;
+        }
+        if (value > max) {
+            return max;
+        }
+        if (value < min) {
+            return min;
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Returns the upper bound of a sensor type without a more specific rule, or NaN if these
+     * thresholds do not set one.
+     */
+    public double defaultThreshold(SensorType sensorType) {
+        return switch (sensorType) {
+            case TEMPERATURE -> temperatureThreshold;
+            case HUMIDITY -> humidityThreshold;
+        };
+    }
+
+    /**
+     * Returns the rules as they were compiled.
+     */
+    public List<MonitoringConfig.Rule> getRules() {
+        return rules;
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * Read-only open-addressing table from id to a slot holding min and max.
+     */
+    private static final class Table {
+        final String[] keys;
+        final double[] min;
+        final double[] max;
+
+        Table(int expected) {
+            // At most half full
+            int capacity = Integer.highestOneBit(Math.max(1, expected) * 4 - 1);
+            keys = new String[capacity];
+            min = new double[capacity];
+            max = new double[capacity];
+        }
+
+        void put(String key, MonitoringConfig.Rule rule) {
+            int mask = keys.length - 1;
+            int i = spread(key.hashCode()) & mask;
+            while (keys[i] != null) {
+                if (keys[i].equals(key)) {
+                    throw new IllegalArgumentException("Duplicate threshold rule for " + key(rule));
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            min[i] = rule.getMin() != null ? rule.getMin() : Double.NaN;
+            max[i] = rule.getMax() != null ? rule.getMax() : Double.NaN;
+        }
+
+        int find(String key) {
+            int mask = keys.length - 1;
+            for (int i = spread(key.hashCode()) & mask; ; i = (i + 1) & mask) {
+                String candidate = keys[i];
+                if (candidate == null) {
+                    return -1;
+                }
+                if (candidate.equals(key)) {
+                    return i;
+                }
+            }
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package mk.dmt.wms.monitoring;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.MonitoringConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Applies {@code monitoring.rules-file}, a JSON {@link ThresholdSettings} document, at startup and
+ * again whenever its modification time or size changes, checked every
+ * {@code monitoring.rules-file-poll-interval}. A file that cannot be read or holds invalid rules
+ * is logged and the rules in effect are kept.
+ */
+@Component
+public class ThresholdRulesFile {
+
+    private static final Logger log = LoggerFactory.getLogger(ThresholdRulesFile.class);
+
+    private final MonitoringConfig config;
+    private final ThresholdRuleEngine engine;
+    private final JsonMapper jsonMapper;
+    private FileTime lastModified;
+    private long lastSize = -1;
+    private Disposable pollTask;
+
+    public ThresholdRulesFile(MonitoringConfig config, ThresholdRuleEngine engine, JsonMapper jsonMapper) {
+        this.config = config;
+        this.engine = engine;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (config.getRulesFile() == null || config.getRulesFile().isBlank()) {
+            return;
+        }
+        reloadIfChanged();
+        pollTask = Flux.interval(config.getRulesFilePollInterval(), config.getRulesFilePollInterval())
+                .onBackpressureDrop()
+                .subscribe(tick -> reloadIfChanged());
+        log.info("Watching threshold rules in {}", config.getRulesFile());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pollTask != null && !pollTask.isDisposed()) {
+            pollTask.dispose();
+        }
+    }
+
+    /**
+     * Applies the file if it changed since the last check; returns whether new rules were applied.
+     */
+    synchronized boolean reloadIfChanged() {
+        Path file = Path.of(config.getRulesFile());
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            if (lastSize != -1) {
+                log.warn("Threshold rules file {} is gone; keeping the rules in effect", file);
+                lastModified = null;
+                lastSize = -1;
+            }
+            return false;
+        }
+        if (attributes.lastModifiedTime().equals(lastModified) && attributes.size() == lastSize) {
+            return false;
+        }
+        lastModified = attributes.lastModifiedTime();
+        lastSize = attributes.size();
+        try {
+            ThresholdSettings settings = jsonMapper.readValue(file.toFile(), ThresholdSettings.class);
+            if (settings == null) {
+                throw new IllegalArgumentException("file is empty");
+            }
+            engine.update(settings, file.toString());
+            return true;
+        } catch (JacksonException | IllegalArgumentException e) {
+            log.error("Ignoring threshold rules file {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+}
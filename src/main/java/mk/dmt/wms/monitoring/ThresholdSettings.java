@@ -0,0 +1,19 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.config.MonitoringConfig;
+
+import java.util.List;
+
+/**
+ * Thresholds and rules as exchanged with the admin API and the watched rules file.
+ *
+ * @param temperatureThreshold Upper temperature bound without a more specific rule; null keeps the configured one
+ * @param humidityThreshold    Upper humidity bound without a more specific rule; null keeps the configured one
+ * @param rules                Per-sensor and per-warehouse rules; null means none
+ */
+public record ThresholdSettings(
+        Double temperatureThreshold,
+        Double humidityThreshold,
+        List<MonitoringConfig.Rule> rules
+) {
+}
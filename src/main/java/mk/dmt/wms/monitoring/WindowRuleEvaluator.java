@@ -0,0 +1,357 @@
+package mk.dmt.wms.monitoring;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import mk.dmt.wms.config.AlarmConfig;
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Evaluates {@code monitoring.window-rules}: moving average, rate of change per minute and share of
+ * samples above a level, each over a sliding time window of a sensor's measurements.
+ * <p>
+ * Every sensor matched by a rule keeps its last {@code monitoring.window-capacity} values and
+ * timestamps in a primitive ring shared by its rules. Each rule keeps the start of its window in
+ * that ring with a running sum and count above its level, so a measurement is added once and every
+ * sample leaves each window once: O(1) amortized per measurement and rule, without re-scanning
+ * history. A window longer than the ring holds covers the last {@code window-capacity} samples.
+ * <p>
+ * Violations run through the same episode state machine as thresholds, one per rule and sensor, so
+ * a windowed rule raises one alarm episode named after it. A sensor is always evaluated on the same
+ * monitoring rail, so its window is never updated concurrently.
+ */
+@Component
+public class WindowRuleEvaluator implements MeterBinder {
+
+    private static final int AVERAGE = MonitoringConfig.WindowRule.Type.AVERAGE.ordinal();
+    private static final int RATE_OF_CHANGE = MonitoringConfig.WindowRule.Type.RATE_OF_CHANGE.ordinal();
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    private final AlarmConfig alarmConfig;
+    private final AlarmEpisodeTracker episodes;
+    private final MonitoringConfig.WindowRule[] rules;
+    private final int[] types;
+    private final long[] windowNanos;
+    private final double[] min;
+    private final double[] max;
+    private final double[] level;
+    private final double[] percent;
+    private final double[] hysteresis;
+    private final double[] severityScale;
+    private final DoubleUnaryOperator[] bounds;
+    private final int capacity;
+    private final Map<String, SensorWindow> windows = new ConcurrentHashMap<>();
+    // Shared by every sensor no rule matches
+    private final SensorWindow unmatched;
+
+    /**
+     * @throws IllegalArgumentException if a rule is incomplete or contradictory, or two share a name
+     */
+    public WindowRuleEvaluator(MonitoringConfig config, AlarmConfig alarmConfig, AlarmEpisodeTracker episodes) {
+        this.alarmConfig = alarmConfig;
+        this.episodes = episodes;
+        this.capacity = config.getWindowCapacity();
+        if (capacity < 2) {
+            throw new IllegalArgumentException("monitoring.window-capacity must be at least 2");
+        }
+
+        List<MonitoringConfig.WindowRule> configured = config.getWindowRules();
+        int count = configured.size();
+        rules = configured.toArray(new MonitoringConfig.WindowRule[0]);
+        types = new int[count];
+        windowNanos = new long[count];
+        min = new double[count];
+        max = new double[count];
+        level = new double[count];
+        percent = new double[count];
+        hysteresis = new double[count];
+        severityScale = new double[count];
+        bounds = new DoubleUnaryOperator[count];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            MonitoringConfig.WindowRule rule = rules[i];
+            validate(rule);
+            if (!names.add(rule.getName())) {
+                throw new IllegalArgumentException("Duplicate window rule " + rule.getName());
+            }
+            types[i] = rule.getType().ordinal();
+            windowNanos[i] = rule.getWindow().toNanos();
+            min[i] = rule.getMin() != null ? rule.getMin() : Double.NaN;
+            max[i] = rule.getMax() != null ? rule.getMax() : Double.NaN;
+            level[i] = rule.getLevel() != null ? rule.getLevel() : Double.NaN;
+            percent[i] = rule.getPercent() != null ? rule.getPercent() : Double.NaN;
+            hysteresis[i] = rule.getHysteresis() != null ? rule.getHysteresis() : Double.NaN;
+            severityScale[i] = rule.getSeverityScale() != null ? rule.getSeverityScale() : Double.NaN;
+            int index = i;
+            bounds[i] = windowed -> violatedBound(index, windowed);
+        }
+        unmatched = new SensorWindow(new int[0], 0);
+    }
+
+    private static void validate(MonitoringConfig.WindowRule rule) {
+        if (rule == null) {
+            throw new IllegalArgumentException("Window rule must not be null");
+        }
+        if (rule.getName() == null || rule.getName().isBlank() || rule.getName().length() > 64) {
+            throw new IllegalArgumentException("A window rule needs a name of at most 64 characters");
+        }
+        String name = rule.getName();
+        if (rule.getType() == null || rule.getSensorType() == null) {
+            throw new IllegalArgumentException("Window rule " + name + " needs a type and a sensorType");
+        }
+        if (rule.getWindow() == null || rule.getWindow().isNegative() || rule.getWindow().isZero()) {
+            throw new IllegalArgumentException("Window rule " + name + " needs a positive window");
+        }
+        if (rule.getType() == MonitoringConfig.WindowRule.Type.TIME_ABOVE) {
+            if (rule.getLevel() == null || rule.getPercent() == null) {
+                throw new IllegalArgumentException("Window rule " + name + " needs a level and a percent");
+            }
+            if (rule.getPercent() < 0 || rule.getPercent() >= 100) {
+                throw new IllegalArgumentException("Window rule " + name + " needs a percent from 0 to below 100");
+            }
+            return;
+        }
+        if (rule.getMin() == null && rule.getMax() == null) {
+            throw new IllegalArgumentException("Window rule " + name + " has neither min nor max");
+        }
+        if (rule.getMin() != null && rule.getMax() != null && rule.getMin() > rule.getMax()) {
+            throw new IllegalArgumentException("Window rule " + name + " has min above max");
+        }
+    }
+
+    /**
+     * Adds the measurement to its sensor's windows and returns the alarm transitions it caused,
+     * usually none.
+     */
+    public List<AlarmEvent> evaluate(SensorMeasurement measurement) {
+        if (rules.length == 0) {
+            return List.of();
+        }
+        SensorWindow window = windows.get(measurement.sensorId());
+        if (window == null) {
+            window = match(measurement);
+            windows.put(measurement.sensorId(), window);
+        }
+        if (window == unmatched) {
+            return List.of();
+        }
+        return window.add(measurement);
+    }
+
+    private SensorWindow match(SensorMeasurement measurement) {
+        int[] matched = new int[rules.length];
+        int count = 0;
+        for (int i = 0; i < rules.length; i++) {
+            MonitoringConfig.WindowRule rule = rules[i];
+            if (rule.getSensorType() == measurement.sensorType()
+                    && (rule.getWarehouseId() == null || rule.getWarehouseId().equals(measurement.warehouseId()))
+                    && (rule.getSensorId() == null || rule.getSensorId().equals(measurement.sensorId()))) {
+                matched[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return unmatched;
+        }
+        int[] indexes = new int[count];
+        System.arraycopy(matched, 0, indexes, 0, count);
+        return new SensorWindow(indexes, capacity);
+    }
+
+    /**
+     * Returns the number of sensors holding a window.
+     */
+    public int getSensorCount() {
+        int sensors = 0;
+        for (SensorWindow window : windows.values()) {
+            if (window != unmatched) {
+                sensors++;
+            }
+        }
+        return sensors;
+    }
+
+    /**
+     * Returns the number of open windowed alarm episodes.
+     */
+    public int getOpenEpisodeCount() {
+        int open = 0;
+        for (SensorWindow window : windows.values()) {
+            for (AlarmEpisodeTracker.Episode episode : window.ruleEpisodes) {
+                if (episode.isOpen()) {
+                    open++;
+                }
+            }
+        }
+        return open;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wms.window.sensors", this, WindowRuleEvaluator::getSensorCount)
+                .description("Sensors with a sliding window for window rules")
+                .register(registry);
+        Gauge.builder("wms.window.episodes.open", this, WindowRuleEvaluator::getOpenEpisodeCount)
+                .description("Open alarm episodes of window rules")
+                .register(registry);
+    }
+
+    /**
+     * Ring of a sensor's recent samples and the running state of each rule matching it. Samples
+     * are numbered in arrival order; sample {@code n} is in slot {@code n % capacity}.
+     */
+    private final class SensorWindow {
+        final int[] ruleIndexes;
+        final long[] nanos;
+        final double[] values;
+        // Number of the oldest sample in each rule's window
+        final long[] start;
+        final double[] sum;
+        final int[] above;
+        final AlarmEpisodeTracker.Episode[] ruleEpisodes;
+        long count;
+        long firstNanos;
+
+        SensorWindow(int[] ruleIndexes, int capacity) {
+            this.ruleIndexes = ruleIndexes;
+            this.nanos = new long[capacity];
+            this.values = new double[capacity];
+            this.start = new long[ruleIndexes.length];
+            this.sum = new double[ruleIndexes.length];
+            this.above = new int[ruleIndexes.length];
+            this.ruleEpisodes = new AlarmEpisodeTracker.Episode[ruleIndexes.length];
+            for (int r = 0; r < ruleIndexes.length; r++) {
+                ruleEpisodes[r] = new AlarmEpisodeTracker.Episode();
+            }
+        }
+
+        List<AlarmEvent> add(SensorMeasurement measurement) {
+            long now = epochNanos(measurement);
+            double value = measurement.value();
+            long sample = count;
+            if (sample == 0) {
+                firstNanos = now;
+            }
+            if (sample >= nanos.length) {
+                // The slot is reused: its sample leaves every window still holding it
+                long overwritten = sample - nanos.length;
+                for (int r = 0; r < ruleIndexes.length; r++) {
+                    if (start[r] == overwritten) {
+                        evict(r);
+                    }
+                }
+            }
+            int slot = (int) (sample % nanos.length);
+            nanos[slot] = now;
+            values[slot] = value;
+            count = sample + 1;
+
+            List<AlarmEvent> transitions = List.of();
+            for (int r = 0; r < ruleIndexes.length; r++) {
+                int rule = ruleIndexes[r];
+                sum[r] += value;
+                if (value > level[rule]) {
+                    above[r]++;
+                }
+                while (start[r] < sample && now - nanos[(int) (start[r] % nanos.length)] > windowNanos[rule]) {
+                    evict(r);
+                }
+
+                double windowed = windowedValue(r, rule, now, value, sample);
+                if (Double.isNaN(windowed)) {
+                    continue;
+                }
+                List<AlarmEvent> ruleTransitions = ruleEpisodes[r].advance(measurement, rules[rule].getName(),
+                        windowed, violatedBound(rule, windowed), bounds[rule], hysteresis(rule, measurement),
+                        severityScale(rule, measurement), alarmConfig);
+                if (!ruleTransitions.isEmpty()) {
+                    if (transitions.isEmpty()) {
+                        transitions = new ArrayList<>(ruleIndexes.length);
+                    }
+                    transitions.addAll(ruleTransitions);
+                }
+            }
+            return transitions;
+        }
+
+        private void evict(int r) {
+            int slot = (int) (start[r] % nanos.length);
+            sum[r] -= values[slot];
+            if (values[slot] > level[ruleIndexes[r]]) {
+                above[r]--;
+            }
+            start[r]++;
+        }
+
+        /**
+         * Returns the rule's value over its window, or NaN while the window cannot tell yet.
+         */
+        private double windowedValue(int r, int rule, long now, double value, long sample) {
+            long samples = sample - start[r] + 1;
+            if (types[rule] == AVERAGE) {
+                return sum[r] / samples;
+            }
+            if (types[rule] == RATE_OF_CHANGE) {
+                int oldest = (int) (start[r] % nanos.length);
+                long elapsed = now - nanos[oldest];
+                return elapsed > 0 ? (value - values[oldest]) * NANOS_PER_MINUTE / elapsed : Double.NaN;
+            }
+            // The share of a window is only meaningful once the sensor has reported for all of it
+            if (now - firstNanos < windowNanos[rule]) {
+                return Double.NaN;
+            }
+            return above[r] * 100.0 / samples;
+        }
+    }
+
+    private double violatedBound(int rule, double windowed) {
+        if (types[rule] != AVERAGE && types[rule] != RATE_OF_CHANGE) {
+            return windowed > percent[rule] ? percent[rule] : Double.NaN;
+        }
+        if (windowed > max[rule]) {
+            return max[rule];
+        }
+        if (windowed < min[rule]) {
+            return min[rule];
+        }
+        return Double.NaN;
+    }
+
+    private double hysteresis(int rule, SensorMeasurement measurement) {
+        if (!Double.isNaN(hysteresis[rule])) {
+            return hysteresis[rule];
+        }
+        // An average is in the unit of the measurement; rates and shares have no default band
+        return types[rule] == AVERAGE ? episodes.hysteresis(measurement.sensorType()) : 0.0;
+    }
+
+    private double severityScale(int rule, SensorMeasurement measurement) {
+        if (!Double.isNaN(severityScale[rule])) {
+            return severityScale[rule];
+        }
+        if (types[rule] == AVERAGE) {
+            return episodes.severityScale(measurement.sensorType());
+        }
+        // Rates are measured against the band they may move in, shares against the whole window
+        if (types[rule] == RATE_OF_CHANGE) {
+            return Double.isNaN(min[rule]) || Double.isNaN(max[rule]) ? 0.0 : max[rule] - min[rule];
+        }
+        return 100.0;
+    }
+
+    private static long epochNanos(SensorMeasurement measurement) {
+        Instant timestamp = measurement.timestamp() != null ? measurement.timestamp() : Instant.now();
+        return timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano();
+    }
+}
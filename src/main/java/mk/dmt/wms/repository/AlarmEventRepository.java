@@ -5,8 +5,10 @@ import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.time.LocalDateTime;
 
 /**
  * Reactive repository for alarm events.
@@ -34,4 +36,11 @@ public interface AlarmEventRepository extends ReactiveCrudRepository<AlarmEventE
      */
     @Query("SELECT * FROM alarm_events ORDER BY updated_at DESC LIMIT :limit")
     Flux<AlarmEventEntity> findLatestAlarms(int limit);
+
+    /**
+     * Finds the episode a rule raised for a sensor at {@code raisedAt}.
+     * Timestamps are bound as wall-clock time of the default zone, as entities are stored.
+     */
+    @Query("SELECT * FROM alarm_events WHERE sensor_id = :sensorId AND alarm_rule = :rule AND updated_at = :raisedAt")
+    Mono<AlarmEventEntity> findEpisode(String sensorId, String rule, LocalDateTime raisedAt);
 }
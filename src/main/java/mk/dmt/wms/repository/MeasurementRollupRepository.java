@@ -0,0 +1,344 @@
+package mk.dmt.wms.repository;
+
+import mk.dmt.wms.model.MeasurementAggregate;
+import mk.dmt.wms.model.MeasurementRollup;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Reads and writes the {@code measurement_rollup_1m} and {@code measurement_rollup_1h} tables.
+ * Writes merge into existing rows, so a bucket can be written again when late measurements
+ * arrive: PostgreSQL uses {@code INSERT ... ON CONFLICT}, other databases a standard {@code MERGE}.
+ * Each write carries a flush id that is stored with the rows it merged into; repeating the write,
+ * e.g. after a timeout that hid its commit, leaves those rows unchanged.
+ * Like {@code sensor_measurements}, timestamps are stored as wall-clock time in the application's zone.
+ */
+@Repository
+public class MeasurementRollupRepository {
+
+    /**
+     * Rollup granularities and their tables.
+     */
+    public enum Resolution {
+        MINUTE("measurement_rollup_1m", Duration.ofMinutes(1)),
+        HOUR("measurement_rollup_1h", Duration.ofHours(1));
+
+        private final String table;
+        private final Duration size;
+
+        Resolution(String table, Duration size) {
+            this.table = table;
+            this.size = size;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Duration getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the coarsest resolution that still divides buckets of the given size.
+         */
+        public static Resolution forBucket(Duration bucket) {
+            return bucket.toSeconds() % HOUR.size.toSeconds() == 0 ? HOUR : MINUTE;
+        }
+    }
+
+    /**
+     * A rollup not known to be stored yet, with the flush id of the write that will store it. A
+     * stored row last written with that flush id or a later one already contains it.
+     */
+    public record PendingRollup(MeasurementRollup rollup, long flushId) {
+    }
+
+    private static final String COLUMNS = "sensor_ref, bucket_start, sensor_type, warehouse_ref,"
+            + " min_value, max_value, sum_value, sample_count, last_value, last_at, flush_id";
+    private static final int COLUMN_COUNT = 10;
+
+    private static final String BUCKET = "CAST(FLOOR(EXTRACT(EPOCH FROM r.bucket_start) / :bucketSeconds) AS BIGINT)";
+
+    private final DatabaseClient databaseClient;
+    private final SensorDictionary dictionary;
+    private final boolean postgres;
+
+    public MeasurementRollupRepository(DatabaseClient databaseClient, SensorDictionary dictionary) {
+        this.databaseClient = databaseClient;
+        this.dictionary = dictionary;
+        this.postgres = "PostgreSQL".equals(databaseClient.getConnectionFactory().getMetadata().getName());
+    }
+
+    /**
+     * Merges the rollups into their rows: min/max/sum/count are combined and the most recent
+     * last value wins. A sensor may appear only once per bucket within one call. Rows that were
+     * last written with the same {@code flushId} are left as they are.
+     *
+     * @return Number of rows inserted or updated
+     */
+    public Mono<Long> merge(Resolution resolution, long flushId, List<MeasurementRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return Mono.just(0L);
+        }
+        Set<String> sensorIds = new LinkedHashSet<>();
+        Set<String> warehouseIds = new LinkedHashSet<>();
+        for (MeasurementRollup rollup : rollups) {
+            sensorIds.add(rollup.sensorId());
+            if (rollup.warehouseId() != null) {
+                warehouseIds.add(rollup.warehouseId());
+            }
+        }
+        return dictionary.resolveAll(sensorIds, warehouseIds)
+                .then(Mono.defer(() -> {
+                    DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(mergeSql(resolution.table, rollups.size()))
+                            .bind("flushId", flushId);
+                    int parameter = 0;
+                    for (MeasurementRollup rollup : rollups) {
+                        Integer warehouseRef = rollup.warehouseId() == null ? null : dictionary.cachedWarehouseRef(rollup.warehouseId());
+                        spec = spec.bind("p" + parameter++, dictionary.cachedSensorRef(rollup.sensorId()))
+                                .bind("p" + parameter++, toLocal(rollup.bucketStart()));
+                        spec = rollup.sensorType() == null
+                                ? spec.bindNull("p" + parameter++, Short.class)
+                                : spec.bind("p" + parameter++, (short) rollup.sensorType().getCode());
+                        spec = warehouseRef == null
+                                ? spec.bindNull("p" + parameter++, Integer.class)
+                                : spec.bind("p" + parameter++, warehouseRef);
+                        spec = spec.bind("p" + parameter++, rollup.min())
+                                .bind("p" + parameter++, rollup.max())
+                                .bind("p" + parameter++, rollup.sum())
+                                .bind("p" + parameter++, rollup.count())
+                                .bind("p" + parameter++, rollup.last())
+                                .bind("p" + parameter++, toLocal(rollup.lastAt()));
+                    }
+                    return spec.fetch().rowsUpdated();
+                }));
+    }
+
+    /**
+     * Aggregates the rollups of a sensor into buckets of the given size that start in [from, to).
+     * {@code pending} are rollups of the same resolution and filter that may not be stored yet;
+     * those the stored rows do not contain yet are combined with them.
+     */
+    public Flux<MeasurementAggregate> aggregateBySensorId(String sensorId, MeasurementAggregate.Bucket bucket,
+                                                         Instant from, Instant to, List<PendingRollup> pending) {
+        return aggregate("r.sensor_ref = (SELECT id FROM sensors WHERE sensor_key = :key)", sensorId, bucket,
+                from, to, pending);
+    }
+
+    /**
+     * Aggregates the rollups of a warehouse into buckets of the given size that start in [from, to),
+     * combined with {@code pending} as for {@link #aggregateBySensorId}.
+     */
+    public Flux<MeasurementAggregate> aggregateByWarehouseId(String warehouseId, MeasurementAggregate.Bucket bucket,
+                                                            Instant from, Instant to, List<PendingRollup> pending) {
+        return aggregate("r.warehouse_ref = (SELECT id FROM warehouses WHERE warehouse_key = :key)", warehouseId,
+                bucket, from, to, pending);
+    }
+
+    /**
+     * Aggregates the rollups of a sensor type code into buckets of the given size that start in [from, to),
+     * combined with {@code pending} as for {@link #aggregateBySensorId}.
+     */
+    public Flux<MeasurementAggregate> aggregateBySensorType(short sensorType, MeasurementAggregate.Bucket bucket,
+                                                           Instant from, Instant to, List<PendingRollup> pending) {
+        return aggregate("r.sensor_type = :key", sensorType, bucket, from, to, pending);
+    }
+
+    /**
+     * Deletes the rollups of buckets that started before the cutoff.
+     *
+     * @return Number of rows deleted
+     */
+    public Mono<Long> deleteBefore(Resolution resolution, Instant cutoff) {
+        return databaseClient.sql("delete from " + resolution.table + " where bucket_start < :cutoff")
+                .bind("cutoff", toLocal(cutoff))
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private Flux<MeasurementAggregate> aggregate(String filter, Object key, MeasurementAggregate.Bucket bucket,
+                                                 Instant from, Instant to, List<PendingRollup> pending) {
+        long bucketSeconds = bucket.getSize().toSeconds();
+        String table = Resolution.forBucket(bucket.getSize()).table;
+        // Start at the bucket containing 'from', so that the first bucket is complete
+        long fromSeconds = Math.floorDiv(toLocal(from).toEpochSecond(ZoneOffset.UTC), bucketSeconds) * bucketSeconds;
+        long toSeconds = toLocal(to).toEpochSecond(ZoneOffset.UTC);
+        List<PendingRollup> inRange = new ArrayList<>();
+        long minFlushId = Long.MAX_VALUE;
+        for (PendingRollup rollup : pending) {
+            long start = toLocal(rollup.rollup().bucketStart()).toEpochSecond(ZoneOffset.UTC);
+            if (start >= fromSeconds && start < toSeconds) {
+                inRange.add(rollup);
+                minFlushId = Math.min(minFlushId, rollup.flushId());
+            }
+        }
+
+        String rows = " FROM " + table + " r WHERE r.bucket_start >= :from AND r.bucket_start < :to AND " + filter;
+        String sql = "SELECT bucket, SUM(sample_count) AS samples, MIN(min_value) AS min_value,"
+                + " MAX(max_value) AS max_value, SUM(sum_value) AS sum_value, MAX(last_at) AS last_at,"
+                + " MAX(CASE WHEN rn = 1 THEN last_value END) AS last_value,"
+                + " NULL AS sensor_ref, NULL AS bucket_start, NULL AS flush_id"
+                + " FROM (SELECT " + BUCKET + " AS bucket, r.sample_count, r.min_value, r.max_value, r.sum_value,"
+                + " r.last_value, r.last_at, ROW_NUMBER() OVER (PARTITION BY " + BUCKET + " ORDER BY r.last_at DESC) AS rn"
+                + rows + ") b GROUP BY bucket";
+        if (!inRange.isEmpty()) {
+            // In the same statement, so from the same snapshot: the rows the pending writes may have reached
+            sql += " UNION ALL SELECT NULL, NULL, NULL, NULL, NULL, NULL, NULL,"
+                    + " r.sensor_ref, r.bucket_start, r.flush_id" + rows + " AND r.flush_id >= :minFlushId";
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql + " ORDER BY bucket")
+                .bind("bucketSeconds", bucketSeconds)
+                .bind("from", LocalDateTime.ofEpochSecond(fromSeconds, 0, ZoneOffset.UTC))
+                .bind("to", toLocal(to))
+                .bind("key", key);
+        if (!inRange.isEmpty()) {
+            spec = spec.bind("minFlushId", minFlushId);
+        }
+        Flux<Record> result = spec.<Record>map(row -> row.get("bucket") != null
+                        ? new Partial(
+                                row.get("bucket", Long.class),
+                                row.get("samples", Number.class).longValue(),
+                                row.get("min_value", Number.class).doubleValue(),
+                                row.get("max_value", Number.class).doubleValue(),
+                                row.get("sum_value", Number.class).doubleValue(),
+                                row.get("last_value", Number.class).doubleValue(),
+                                row.get("last_at", LocalDateTime.class))
+                        : new Written(new RowKey(row.get("sensor_ref", Number.class).intValue(),
+                                row.get("bucket_start", LocalDateTime.class)),
+                                row.get("flush_id", Number.class).longValue()))
+                .all();
+
+        if (inRange.isEmpty()) {
+            return result.cast(Partial.class).map(partial -> partial.toAggregate(bucketSeconds));
+        }
+        return result.collectList()
+                .flatMapIterable(results -> {
+                    TreeMap<Long, Partial> combined = new TreeMap<>();
+                    Map<RowKey, Long> written = new HashMap<>();
+                    for (Record row : results) {
+                        if (row instanceof Partial partial) {
+                            combined.put(partial.bucket(), partial);
+                        } else if (row instanceof Written write) {
+                            written.put(write.row(), write.flushId());
+                        }
+                    }
+                    for (PendingRollup pendingRollup : inRange) {
+                        MeasurementRollup rollup = pendingRollup.rollup();
+                        Integer sensorRef = dictionary.cachedSensorRef(rollup.sensorId());
+                        Long flushId = sensorRef == null ? null
+                                : written.get(new RowKey(sensorRef, toLocal(rollup.bucketStart())));
+                        // Already in the stored row
+                        if (flushId != null && flushId >= pendingRollup.flushId()) {
+                            continue;
+                        }
+                        Partial partial = Partial.of(rollup, bucketSeconds);
+                        combined.merge(partial.bucket(), partial, Partial::combine);
+                    }
+                    return combined.values();
+                })
+                .map(partial -> partial.toAggregate(bucketSeconds));
+    }
+
+    private String mergeSql(String table, int rows) {
+        StringBuilder values = new StringBuilder();
+        int parameter = 0;
+        for (int r = 0; r < rows; r++) {
+            values.append(r == 0 ? "(" : ", (");
+            for (int c = 0; c < COLUMN_COUNT; c++) {
+                values.append(c == 0 ? ":p" : ", :p").append(parameter++);
+            }
+            values.append(", :flushId)");
+        }
+        if (postgres) {
+            return "insert into " + table + " (" + COLUMNS + ") values " + values
+                    + " on conflict (sensor_ref, bucket_start) do update set"
+                    + " sensor_type = excluded.sensor_type,"
+                    + " warehouse_ref = excluded.warehouse_ref,"
+                    + " min_value = least(" + table + ".min_value, excluded.min_value),"
+                    + " max_value = greatest(" + table + ".max_value, excluded.max_value),"
+                    + " sum_value = " + table + ".sum_value + excluded.sum_value,"
+                    + " sample_count = " + table + ".sample_count + excluded.sample_count,"
+                    + " last_value = case when excluded.last_at >= " + table + ".last_at"
+                    + " then excluded.last_value else " + table + ".last_value end,"
+                    + " last_at = greatest(" + table + ".last_at, excluded.last_at),"
+                    + " flush_id = excluded.flush_id"
+                    + " where " + table + ".flush_id <> excluded.flush_id";
+        }
+        return "merge into " + table + " t using (values " + values + ") as s(" + COLUMNS + ")"
+                + " on t.sensor_ref = s.sensor_ref and t.bucket_start = s.bucket_start"
+                + " when matched and t.flush_id <> s.flush_id then update set"
+                + " sensor_type = s.sensor_type,"
+                + " warehouse_ref = s.warehouse_ref,"
+                + " min_value = least(t.min_value, s.min_value),"
+                + " max_value = greatest(t.max_value, s.max_value),"
+                + " sum_value = t.sum_value + s.sum_value,"
+                + " sample_count = t.sample_count + s.sample_count,"
+                + " last_value = case when s.last_at >= t.last_at then s.last_value else t.last_value end,"
+                + " last_at = greatest(t.last_at, s.last_at),"
+                + " flush_id = s.flush_id"
+                + " when not matched then insert (" + COLUMNS + ") values (s.sensor_ref, s.bucket_start,"
+                + " s.sensor_type, s.warehouse_ref, s.min_value, s.max_value, s.sum_value, s.sample_count,"
+                + " s.last_value, s.last_at, s.flush_id)";
+    }
+
+    /**
+     * Summary of one bucket before the average is taken, so that summaries can be combined.
+     * {@code lastAt} is wall-clock time, as stored.
+     */
+    private record Partial(long bucket, long count, double min, double max, double sum, double last,
+                           LocalDateTime lastAt) {
+
+        static Partial of(MeasurementRollup rollup, long bucketSeconds) {
+            long start = toLocal(rollup.bucketStart()).toEpochSecond(ZoneOffset.UTC);
+            return new Partial(Math.floorDiv(start, bucketSeconds), rollup.count(), rollup.min(), rollup.max(),
+                    rollup.sum(), rollup.last(), toLocal(rollup.lastAt()));
+        }
+
+        Partial combine(Partial other) {
+            boolean otherIsLater = other.lastAt.isAfter(lastAt);
+            return new Partial(bucket, count + other.count, Math.min(min, other.min), Math.max(max, other.max),
+                    sum + other.sum, otherIsLater ? other.last : last, otherIsLater ? other.lastAt : lastAt);
+        }
+
+        MeasurementAggregate toAggregate(long bucketSeconds) {
+            return new MeasurementAggregate(toInstant(bucket * bucketSeconds), count, min, max, sum / count, last);
+        }
+    }
+
+    /**
+     * Key of a stored rollup row; {@code bucketStart} is wall-clock time, as stored.
+     */
+    private record RowKey(int sensorRef, LocalDateTime bucketStart) {
+    }
+
+    /**
+     * The flush id of a stored row reached by a write with at least the smallest pending flush id.
+     */
+    private record Written(RowKey row, long flushId) {
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private static Instant toInstant(long wallClockEpochSecond) {
+        return LocalDateTime.ofEpochSecond(wallClockEpochSecond, 0, ZoneOffset.UTC)
+                .atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -0,0 +1,140 @@
+package mk.dmt.wms.repository;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Integer keys of the sensor and warehouse dictionary tables that measurement rows reference.
+ * Unknown ids are inserted on first use; resolved keys are cached for the lifetime of the
+ * application, since dictionary rows are never changed or deleted. The unknown ids of a batch are
+ * resolved together: one statement inserts those that are missing, skipping ids another writer
+ * added meanwhile, and one query reads all of their keys.
+ */
+@Repository
+public class SensorDictionary {
+
+    private final Dictionary sensors;
+    private final Dictionary warehouses;
+
+    public SensorDictionary(DatabaseClient databaseClient) {
+        boolean postgres = "PostgreSQL".equals(databaseClient.getConnectionFactory().getMetadata().getName());
+        this.sensors = new Dictionary(databaseClient, "sensors", "sensor_key", postgres);
+        this.warehouses = new Dictionary(databaseClient, "warehouses", "warehouse_key", postgres);
+    }
+
+    public Mono<Integer> sensorRef(String sensorId) {
+        return sensors.resolve(sensorId);
+    }
+
+    public Mono<Integer> warehouseRef(String warehouseId) {
+        return warehouses.resolve(warehouseId);
+    }
+
+    /**
+     * Resolves all given ids, so that the cached lookups below succeed afterwards.
+     */
+    public Mono<Void> resolveAll(Collection<String> sensorIds, Collection<String> warehouseIds) {
+        return sensors.resolveAll(sensorIds)
+                .then(warehouses.resolveAll(warehouseIds));
+    }
+
+    /**
+     * Returns the key of an already resolved sensor id, or null.
+     */
+    public Integer cachedSensorRef(String sensorId) {
+        return sensors.cache.get(sensorId);
+    }
+
+    /**
+     * Returns the key of an already resolved warehouse id, or null.
+     */
+    public Integer cachedWarehouseRef(String warehouseId) {
+        return warehouses.cache.get(warehouseId);
+    }
+
+    private static final class Dictionary {
+
+        // Keys per statement, well below the bind parameter limit
+        private static final int BATCH_SIZE = 1000;
+
+        private final DatabaseClient databaseClient;
+        private final String table;
+        private final String keyColumn;
+        private final boolean postgres;
+        private final String selectSql;
+        private final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+        Dictionary(DatabaseClient databaseClient, String table, String keyColumn, boolean postgres) {
+            this.databaseClient = databaseClient;
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.postgres = postgres;
+            this.selectSql = "select " + keyColumn + ", id from " + table + " where " + keyColumn + " in (:keys)";
+        }
+
+        Mono<Integer> resolve(String key) {
+            Integer cached = cache.get(key);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return resolveAll(List.of(key)).then(Mono.fromSupplier(() -> cache.get(key)));
+        }
+
+        Mono<Void> resolveAll(Collection<String> keys) {
+            Set<String> unknown = new LinkedHashSet<>();
+            for (String key : keys) {
+                if (!cache.containsKey(key)) {
+                    unknown.add(key);
+                }
+            }
+            if (unknown.isEmpty()) {
+                return Mono.empty();
+            }
+            return Flux.fromIterable(unknown)
+                    .buffer(BATCH_SIZE)
+                    .concatMap(batch -> insertMissing(batch).thenMany(select(batch)))
+                    .doOnNext(entry -> cache.put(entry.getKey(), entry.getValue()))
+                    .then();
+        }
+
+        // A concurrent insert of the same key is skipped, or loses on the unique constraint
+        private Mono<Void> insertMissing(List<String> keys) {
+            DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(insertSql(keys.size()));
+            for (int i = 0; i < keys.size(); i++) {
+                spec = spec.bind("k" + i, keys.get(i));
+            }
+            return spec.then()
+                    .onErrorResume(DataIntegrityViolationException.class, error -> Mono.empty());
+        }
+
+        private Flux<Map.Entry<String, Integer>> select(List<String> keys) {
+            return databaseClient.sql(selectSql).bind("keys", keys)
+                    .map(row -> Map.entry(row.get(0, String.class), row.get(1, Integer.class)))
+                    .all();
+        }
+
+        private String insertSql(int count) {
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < count; i++) {
+                values.append(i == 0 ? "(:k" : ", (:k").append(i).append(')');
+            }
+            if (postgres) {
+                return "insert into " + table + " (" + keyColumn + ") values " + values
+                        + " on conflict (" + keyColumn + ") do nothing";
+            }
+            return "merge into " + table + " t using (values " + values + ") as s(" + keyColumn + ")"
+                    + " on t." + keyColumn + " = s." + keyColumn
+                    + " when not matched then insert (" + keyColumn + ") values (s." + keyColumn + ")";
+        }
+    }
+}
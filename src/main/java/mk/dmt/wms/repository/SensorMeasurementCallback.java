@@ -0,0 +1,36 @@
+package mk.dmt.wms.repository;
+
+import mk.dmt.wms.model.SensorMeasurementEntity;
+import org.reactivestreams.Publisher;
+import org.springframework.data.r2dbc.mapping.event.BeforeConvertCallback;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Resolves the dictionary keys of a measurement from its sensor and warehouse ids before the
+ * entity is written, so that repository saves keep working with the string ids.
+ */
+@Component
+public class SensorMeasurementCallback implements BeforeConvertCallback<SensorMeasurementEntity> {
+
+    private final SensorDictionary dictionary;
+
+    public SensorMeasurementCallback(SensorDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public Publisher<SensorMeasurementEntity> onBeforeConvert(SensorMeasurementEntity entity, SqlIdentifier table) {
+        Mono<SensorMeasurementEntity> resolved = Mono.just(entity);
+        if (entity.getSensorRef() == null && entity.getSensorId() != null) {
+            resolved = resolved.flatMap(e -> dictionary.sensorRef(e.getSensorId())
+                    .doOnNext(e::setSensorRef).thenReturn(e));
+        }
+        if (entity.getWarehouseRef() == null && entity.getWarehouseId() != null) {
+            resolved = resolved.flatMap(e -> dictionary.warehouseRef(e.getWarehouseId())
+                    .doOnNext(e::setWarehouseRef).thenReturn(e));
+        }
+        return resolved;
+    }
+}
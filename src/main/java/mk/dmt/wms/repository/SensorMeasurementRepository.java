@@ -1,6 +1,7 @@
 package mk.dmt.wms.repository;
 
 import mk.dmt.wms.model.SensorMeasurementEntity;
+import mk.dmt.wms.model.SensorType;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
@@ -10,39 +11,76 @@ import java.time.Instant;
 
 /**
  * Reactive repository for sensor measurements.
+ * Queries join the sensor and warehouse dictionaries to fill in the string ids of the entity.
  */
 @Repository
 public interface SensorMeasurementRepository extends ReactiveCrudRepository<SensorMeasurementEntity, Long> {
 
+    String SELECT_MEASUREMENTS = "SELECT m.*, s.sensor_key AS sensor_id, w.warehouse_key AS warehouse_id"
+            + " FROM sensor_measurements m"
+            + " LEFT JOIN sensors s ON s.id = m.sensor_ref"
+            + " LEFT JOIN warehouses w ON w.id = m.warehouse_ref";
+
     /**
      * Find measurements by sensor ID, ordered by timestamp descending.
      */
+    @Query(SELECT_MEASUREMENTS + " WHERE s.sensor_key = :sensorId ORDER BY m.updated_at DESC")
     Flux<SensorMeasurementEntity> findBySensorIdOrderByTimestampDesc(String sensorId);
 
     /**
-     * Find measurements by sensor type, ordered by timestamp descending.
+     * Find measurements by sensor type code, ordered by timestamp descending.
      */
-    Flux<SensorMeasurementEntity> findBySensorTypeOrderByTimestampDesc(String sensorType);
+    @Query(SELECT_MEASUREMENTS + " WHERE m.sensor_type = :sensorType ORDER BY m.updated_at DESC")
+    Flux<SensorMeasurementEntity> findBySensorTypeCodeOrderByTimestampDesc(short sensorType);
 
     /**
      * Find recent measurements within a time range.
      */
+    @Query(SELECT_MEASUREMENTS + " WHERE m.updated_at > :after ORDER BY m.updated_at DESC")
     Flux<SensorMeasurementEntity> findByTimestampAfterOrderByTimestampDesc(Instant after);
 
     /**
      * Find recent measurements by sensor ID within a time range.
      */
+    @Query(SELECT_MEASUREMENTS + " WHERE s.sensor_key = :sensorId AND m.updated_at > :after ORDER BY m.updated_at DESC")
     Flux<SensorMeasurementEntity> findBySensorIdAndTimestampAfterOrderByTimestampDesc(String sensorId, Instant after);
 
+    /**
+     * Find the latest N measurements of a sensor.
+     * The sensor key is looked up first, so that the (sensor_ref, updated_at) index is read in order.
+     */
+    @Query(SELECT_MEASUREMENTS + " WHERE m.sensor_ref = (SELECT id FROM sensors WHERE sensor_key = :sensorId)"
+            + " ORDER BY m.updated_at DESC LIMIT :limit")
+    Flux<SensorMeasurementEntity> findLatestBySensorId(String sensorId, int limit);
+
+    /**
+     * Find the latest N measurements after the given time.
+     */
+    @Query(SELECT_MEASUREMENTS + " WHERE m.updated_at > :after ORDER BY m.updated_at DESC LIMIT :limit")
+    Flux<SensorMeasurementEntity> findLatestAfter(Instant after, int limit);
+
     /**
      * Find the latest N measurements.
      */
-    @Query("SELECT * FROM sensor_measurements ORDER BY updated_at DESC LIMIT :limit")
+    @Query(SELECT_MEASUREMENTS + " ORDER BY m.updated_at DESC LIMIT :limit")
     Flux<SensorMeasurementEntity> findLatestMeasurements(int limit);
 
     /**
-     * Find the latest N measurements for a specific sensor type.
+     * Find the latest N measurements for a specific sensor type code.
+     */
+    @Query(SELECT_MEASUREMENTS + " WHERE m.sensor_type = :sensorType ORDER BY m.updated_at DESC LIMIT :limit")
+    Flux<SensorMeasurementEntity> findLatestBySensorTypeCode(short sensorType, int limit);
+
+    /**
+     * Find the latest N measurements for a sensor type name; unknown names match nothing.
      */
-    @Query("SELECT * FROM sensor_measurements WHERE sensor_type = :sensorType ORDER BY updated_at DESC LIMIT :limit")
-    Flux<SensorMeasurementEntity> findLatestBySensorType(String sensorType, int limit);
+    default Flux<SensorMeasurementEntity> findLatestBySensorType(String sensorType, int limit) {
+        SensorType type;
+        try {
+            type = SensorType.valueOf(sensorType);
+        } catch (IllegalArgumentException e) {
+            return Flux.empty();
+        }
+        return findLatestBySensorTypeCode((short) type.getCode(), limit);
+    }
 }
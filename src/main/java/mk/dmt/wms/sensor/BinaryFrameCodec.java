@@ -0,0 +1,191 @@
+package mk.dmt.wms.sensor;
+
+import io.netty.buffer.ByteBuf;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Codec for the compact binary sensor frame emitted by sensor gateways.
+ * All fields are big-endian:
+ * <pre>
+ * offset  size  field
+ *      0     1  version (currently 1)
+ *      1     1  sensor type code (see {@link SensorType#getCode()})
+ *      2     1  flags: bit 0 = timestamp present, bit 1 = sequence number present
+ *      3     1  reserved, must be 0
+ *      4    16  sensor id, UTF-8, zero-padded
+ *     20     8  value, IEEE 754 double
+ *     28     8  timestamp in epoch milliseconds (only if flag bit 0 is set)
+ *   28/36    4  sequence number, unsigned (only if flag bit 1 is set)
+ * </pre>
+ * Frames without a timestamp are stamped with the receive time. The sequence number is
+ * validated as part of the frame but not propagated into the measurement. A datagram may
+ * carry several frames back to back. Malformed frames are logged at DEBUG only, since this
+ * is the ingest hot path; callers are expected to count them.
+ */
+@Component
+public class BinaryFrameCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryFrameCodec.class);
+
+    public static final int VERSION = 1;
+    public static final int FLAG_TIMESTAMP = 0x01;
+    public static final int FLAG_SEQUENCE = 0x02;
+    public static final int SENSOR_ID_LENGTH = 16;
+    public static final int HEADER_LENGTH = 4;
+    public static final int BASE_FRAME_LENGTH = HEADER_LENGTH + SENSOR_ID_LENGTH + Double.BYTES;
+
+    private static final int KNOWN_FLAGS = FLAG_TIMESTAMP | FLAG_SEQUENCE;
+    private static final String DEFAULT_WAREHOUSE = "warehouse-1";
+
+    /**
+     * Decodes a single frame from the readable bytes of the buffer.
+     * The buffer's reader index is left untouched.
+     *
+     * @param content The datagram payload
+     * @return Optional containing the decoded measurement, or empty if the frame is malformed
+     */
+    public Optional<SensorMeasurement> decode(ByteBuf content) {
+        return Optional.ofNullable(decodeFrame(content, content.readerIndex(), content.readableBytes()));
+    }
+
+    /**
+     * Decodes a datagram carrying one or more back-to-back frames. Decoding stops at the first
+     * malformed frame, since the length of the following frames can no longer be trusted.
+     * The buffer's reader index is left untouched.
+     *
+     * @param content The datagram payload
+     * @return The decoded measurements in datagram order, possibly empty
+     */
+    public List<SensorMeasurement> decodeBatch(ByteBuf content) {
+        List<SensorMeasurement> batch = new ArrayList<>(content.readableBytes() / BASE_FRAME_LENGTH);
+        decodeBatch(content, batch);
+        return batch;
+    }
+
+    /**
+     * Decodes a datagram carrying one or more back-to-back frames into {@code out}.
+     *
+     * @return 1 if decoding stopped at a malformed frame, 0 otherwise
+     */
+    public int decodeBatch(ByteBuf content, List<SensorMeasurement> out) {
+        int offset = content.readerIndex();
+        int end = content.writerIndex();
+        int decoded = 0;
+
+        while (offset < end) {
+            SensorMeasurement measurement = decodeFrame(content, offset, end - offset);
+            if (measurement == null) {
+                log.debug("Dropping remaining {} bytes of binary batch after malformed frame {}", end - offset, decoded);
+                return 1;
+            }
+            out.add(measurement);
+            decoded++;
+            offset += frameLength(content.getUnsignedByte(offset + 2));
+        }
+        return 0;
+    }
+
+    private SensorMeasurement decodeFrame(ByteBuf content, int offset, int available) {
+        if (available < BASE_FRAME_LENGTH) {
+            log.debug("Binary frame too short: {} bytes, expected at least {}", available, BASE_FRAME_LENGTH);
+            return null;
+        }
+
+        int version = content.getUnsignedByte(offset);
+        if (version != VERSION) {
+            log.debug("Unsupported binary frame version: {}", version);
+            return null;
+        }
+
+        SensorType sensorType = SensorType.fromCode(content.getUnsignedByte(offset + 1));
+        if (sensorType == null) {
+            log.debug("Unknown sensor type code in binary frame: {}", content.getUnsignedByte(offset + 1));
+            return null;
+        }
+
+        int flags = content.getUnsignedByte(offset + 2);
+        if ((flags & ~KNOWN_FLAGS) != 0 || content.getByte(offset + 3) != 0) {
+            log.debug("Invalid flags in binary frame: 0x{}", Integer.toHexString(flags));
+            return null;
+        }
+
+        int length = frameLength(flags);
+        if (available < length) {
+            log.debug("Binary frame truncated: {} bytes, expected {}", available, length);
+            return null;
+        }
+
+        int idOffset = offset + HEADER_LENGTH;
+        int idLength = 0;
+        while (idLength < SENSOR_ID_LENGTH && content.getByte(idOffset + idLength) != 0) {
+            idLength++;
+        }
+        if (idLength == 0) {
+            log.debug("Binary frame without sensor id");
+            return null;
+        }
+        String sensorId = content.toString(idOffset, idLength, StandardCharsets.UTF_8);
+
+        int cursor = idOffset + SENSOR_ID_LENGTH;
+        double value = content.getDouble(cursor);
+        cursor += Double.BYTES;
+
+        Instant timestamp = (flags & FLAG_TIMESTAMP) != 0
+                ? Instant.ofEpochMilli(content.getLong(cursor))
+                : Instant.now();
+
+        SensorMeasurement measurement = new SensorMeasurement(sensorId, sensorType, value, timestamp, DEFAULT_WAREHOUSE);
+        if (log.isDebugEnabled()) {
+            log.debug("Decoded binary frame: {}", measurement.toDisplayString());
+        }
+        return measurement;
+    }
+
+    /**
+     * Returns the total length of a frame carrying the given flags.
+     */
+    public static int frameLength(int flags) {
+        int length = BASE_FRAME_LENGTH;
+        if ((flags & FLAG_TIMESTAMP) != 0) {
+            length += Long.BYTES;
+        }
+        if ((flags & FLAG_SEQUENCE) != 0) {
+            length += Integer.BYTES;
+        }
+        return length;
+    }
+
+    /**
+     * Writes a frame for the measurement, including its timestamp and, if non-negative,
+     * the given sequence number. Used by tests, benchmarks and sensor simulators.
+     */
+    public static void encode(SensorMeasurement measurement, long sequence, ByteBuf out) {
+        byte[] sensorId = measurement.sensorId().getBytes(StandardCharsets.UTF_8);
+        if (sensorId.length == 0 || sensorId.length > SENSOR_ID_LENGTH) {
+            throw new IllegalArgumentException("Sensor id must be 1-" + SENSOR_ID_LENGTH + " bytes: " + measurement.sensorId());
+        }
+
+        int flags = FLAG_TIMESTAMP | (sequence >= 0 ? FLAG_SEQUENCE : 0);
+        out.writeByte(VERSION);
+        out.writeByte(measurement.sensorType().getCode());
+        out.writeByte(flags);
+        out.writeByte(0);
+        out.writeBytes(sensorId);
+        out.writeZero(SENSOR_ID_LENGTH - sensorId.length);
+        out.writeDouble(measurement.value());
+        out.writeLong(measurement.timestamp().toEpochMilli());
+        if (sequence >= 0) {
+            out.writeInt((int) sequence);
+        }
+    }
+}
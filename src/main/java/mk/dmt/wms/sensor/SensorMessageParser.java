@@ -1,11 +1,15 @@
 package mk.dmt.wms.sensor;
 
+import io.netty.buffer.ByteBuf;
 import mk.dmt.wms.model.SensorMeasurement;
 import mk.dmt.wms.model.SensorType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -23,6 +27,20 @@ public class SensorMessageParser {
     private static final Pattern MESSAGE_PATTERN =
             Pattern.compile("sensor_id\\s*=\\s*([^;]+);\\s*value\\s*=\\s*([\\d.]+)", Pattern.CASE_INSENSITIVE);
 
+    // Lower-case keywords matched by the ByteBuf scanner
+    private static final byte[] SENSOR_ID_KEY = "sensor_id".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_KEY = "value".getBytes(StandardCharsets.US_ASCII);
+
+    // Mantissas of up to 15 digits and powers of ten up to 10^22 are exact doubles,
+    // so a single division gives the same correctly rounded result as Double.parseDouble
+    private static final int MAX_FAST_PATH_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int NO_MATCH = -1;
+
     /**
      * Parses a raw UDP message into a SensorMeasurement.
      *
@@ -58,6 +76,236 @@ public class SensorMessageParser {
         }
     }
 
+    /**
+     * Parses a raw UDP datagram payload in place, without decoding it into a String first.
+     * Accepts exactly the messages {@link #parse(String, SensorType)} accepts. The buffer's
+     * reader index is left untouched. Rejections are logged at DEBUG only, since this is the
+     * ingest hot path; callers are expected to count them.
+     *
+     * @param content    The datagram payload
+     * @param sensorType The type of sensor (determined by the UDP port)
+     * @return Optional containing the parsed measurement, or empty if parsing fails
+     */
+    public Optional<SensorMeasurement> parse(ByteBuf content, SensorType sensorType) {
+        if (content == null) {
+            log.warn("Received empty or null message");
+            return Optional.empty();
+        }
+        return parse(content, content.readerIndex(), content.writerIndex(), sensorType);
+    }
+
+    /**
+     * Parses a datagram that may carry several newline-separated messages, as sent by
+     * sensor gateways that batch readings. Blank lines are ignored and malformed lines are
+     * skipped, so a single bad reading does not discard the rest of the batch.
+     *
+     * @param content    The datagram payload
+     * @param sensorType The type of sensor (determined by the UDP port)
+     * @return The parsed measurements in datagram order, possibly empty
+     */
+    public List<SensorMeasurement> parseBatch(ByteBuf content, SensorType sensorType) {
+        List<SensorMeasurement> batch = new ArrayList<>();
+        parseBatch(content, sensorType, batch);
+        return batch;
+    }
+
+    /**
+     * Parses a datagram that may carry several newline-separated messages into {@code out}.
+     *
+     * @return The number of non-blank lines that could not be parsed
+     */
+    public int parseBatch(ByteBuf content, SensorType sensorType, List<SensorMeasurement> out) {
+        int from = content.readerIndex();
+        int to = content.writerIndex();
+        int rejected = 0;
+
+        while (from < to) {
+            int lineEnd = content.indexOf(from, to, (byte) '\n');
+            if (lineEnd < 0) {
+                lineEnd = to;
+            }
+            if (trimStart(content, from, lineEnd) < lineEnd) {
+                Optional<SensorMeasurement> measurement = parse(content, from, lineEnd, sensorType);
+                if (measurement.isPresent()) {
+                    out.add(measurement.get());
+                } else {
+                    rejected++;
+                }
+            }
+            from = lineEnd + 1;
+        }
+        return rejected;
+    }
+
+    /**
+     * Parses the message held in {@code content[from, to)}.
+     */
+    Optional<SensorMeasurement> parse(ByteBuf content, int from, int to, SensorType sensorType) {
+        int start = trimStart(content, from, to);
+        int end = trimEnd(content, start, to);
+        if (start == end) {
+            log.debug("Received empty message");
+            return Optional.empty();
+        }
+
+        // Leftmost "sensor_id" occurrence that completes the pattern wins, as with Matcher.find()
+        for (int keyStart = start; keyStart + SENSOR_ID_KEY.length <= end; keyStart++) {
+            if (!regionMatchesIgnoreCase(content, keyStart, end, SENSOR_ID_KEY)) {
+                continue;
+            }
+            int idStart = expect(content, skipWhitespace(content, keyStart + SENSOR_ID_KEY.length, end), end, '=');
+            if (idStart == NO_MATCH) {
+                continue;
+            }
+            int separator = content.indexOf(idStart, end, (byte) ';');
+            if (separator <= idStart) {
+                continue;
+            }
+            int valueKey = skipWhitespace(content, separator + 1, end);
+            if (!regionMatchesIgnoreCase(content, valueKey, end, VALUE_KEY)) {
+                continue;
+            }
+            int valueStart = expect(content, skipWhitespace(content, valueKey + VALUE_KEY.length, end), end, '=');
+            if (valueStart == NO_MATCH) {
+                continue;
+            }
+            valueStart = skipWhitespace(content, valueStart, end);
+            int valueEnd = valueStart;
+            while (valueEnd < end && isDigitOrDot(content.getByte(valueEnd))) {
+                valueEnd++;
+            }
+            if (valueEnd == valueStart) {
+                continue;
+            }
+            return toMeasurement(content, idStart, separator, valueStart, valueEnd, sensorType, start, end);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Failed to parse message: '{}'. Expected format: sensor_id=xxx; value=yyy",
+                    content.toString(start, end - start, StandardCharsets.UTF_8));
+        }
+        return Optional.empty();
+    }
+
+    private Optional<SensorMeasurement> toMeasurement(ByteBuf content, int idStart, int idEnd,
+                                                      int valueStart, int valueEnd, SensorType sensorType,
+                                                      int messageStart, int messageEnd) {
+        double value = parseValue(content, valueStart, valueEnd);
+        if (Double.isNaN(value)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to parse value from message: '{}'. Error: malformed number '{}'",
+                        content.toString(messageStart, messageEnd - messageStart, StandardCharsets.UTF_8),
+                        content.toString(valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII));
+            }
+            return Optional.empty();
+        }
+
+        int trimmedIdStart = trimStart(content, idStart, idEnd);
+        int trimmedIdEnd = trimEnd(content, trimmedIdStart, idEnd);
+        String sensorId = content.toString(trimmedIdStart, trimmedIdEnd - trimmedIdStart, StandardCharsets.UTF_8);
+
+        SensorMeasurement measurement = SensorMeasurement.of(sensorId, sensorType, value);
+        if (log.isDebugEnabled()) {
+            log.debug("Parsed measurement: {}", measurement.toDisplayString());
+        }
+        return Optional.of(measurement);
+    }
+
+    /**
+     * Parses a run of digits and dots. Returns NaN when the run is not a valid decimal number
+     * (no digits or more than one dot), which is where Double.parseDouble would throw.
+     */
+    private static double parseValue(ByteBuf content, int from, int to) {
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+
+        for (int i = from; i < to; i++) {
+            byte b = content.getByte(i);
+            if (b == '.') {
+                if (seenDot) {
+                    return Double.NaN;
+                }
+                seenDot = true;
+                continue;
+            }
+            if (digits < MAX_FAST_PATH_DIGITS) {
+                mantissa = mantissa * 10 + (b - '0');
+            }
+            digits++;
+            if (seenDot) {
+                fractionDigits++;
+            }
+        }
+
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (digits <= MAX_FAST_PATH_DIGITS && fractionDigits < POWERS_OF_TEN.length) {
+            return mantissa / POWERS_OF_TEN[fractionDigits];
+        }
+        return Double.parseDouble(content.toString(from, to - from, StandardCharsets.US_ASCII));
+    }
+
+    private static int expect(ByteBuf content, int index, int end, char expected) {
+        return index < end && content.getByte(index) == expected ? index + 1 : NO_MATCH;
+    }
+
+    private static boolean regionMatchesIgnoreCase(ByteBuf content, int index, int end, byte[] lowerCaseKey) {
+        if (index + lowerCaseKey.length > end) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseKey.length; i++) {
+            byte b = content.getByte(index + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCaseKey[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips the characters matched by the regex class {@code \s}.
+     */
+    private static int skipWhitespace(ByteBuf content, int index, int end) {
+        while (index < end) {
+            byte b = content.getByte(index);
+            if (b != ' ' && b != '\t' && b != '\n' && b != 0x0B && b != '\f' && b != '\r') {
+                break;
+            }
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Skips the characters removed by {@link String#trim()} from the start of the range.
+     */
+    private static int trimStart(ByteBuf content, int from, int to) {
+        while (from < to && (content.getByte(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Skips the characters removed by {@link String#trim()} from the end of the range.
+     */
+    private static int trimEnd(ByteBuf content, int from, int to) {
+        while (to > from && (content.getByte(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean isDigitOrDot(byte b) {
+        return (b >= '0' && b <= '9') || b == '.';
+    }
+
     /**
      * Parses a temperature sensor message.
      */
@@ -0,0 +1,136 @@
+package mk.dmt.wms.sensor;
+
+import io.netty.channel.Channel;
+import io.netty.channel.unix.UnixChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receive statistics for a single bound UDP socket.
+ * Datagram counts are tracked in the event loop; kernel drops and the receive queue depth
+ * are read from /proc/net/udp[6] using the socket inode, which is only available for
+ * native (epoll) channels on Linux.
+ */
+public class UdpSocketStats {
+
+    private static final Logger log = LoggerFactory.getLogger(UdpSocketStats.class);
+
+    private static final Path[] PROC_UDP_TABLES = {Path.of("/proc/net/udp"), Path.of("/proc/net/udp6")};
+    private static final String SOCKET_LINK_PREFIX = "socket:[";
+
+    // Column positions in /proc/net/udp
+    private static final int QUEUES_COLUMN = 4;
+    private static final int INODE_COLUMN = 9;
+    private static final int DROPS_COLUMN = 12;
+
+    private final String name;
+    private final int port;
+    private final int socketIndex;
+    private final LongAdder datagrams = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private volatile String inode;
+
+    public UdpSocketStats(String name, int port, int socketIndex) {
+        this.name = name;
+        this.port = port;
+        this.socketIndex = socketIndex;
+    }
+
+    /**
+     * Records a datagram received on this socket.
+     */
+    public void recordReceived(int length) {
+        datagrams.increment();
+        bytes.add(length);
+    }
+
+    /**
+     * Resolves the kernel socket inode of a freshly bound channel so drop counters can be looked up.
+     */
+    public void attach(Channel channel) {
+        if (!(channel instanceof UnixChannel unixChannel)) {
+            log.debug("UDP socket {}#{} is not a native channel, kernel drop counters unavailable", port, socketIndex);
+            return;
+        }
+        try {
+            String link = Files.readSymbolicLink(Path.of("/proc/self/fd", Integer.toString(unixChannel.fd().intValue())))
+                    .toString();
+            if (link.startsWith(SOCKET_LINK_PREFIX)) {
+                inode = link.substring(SOCKET_LINK_PREFIX.length(), link.length() - 1);
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not resolve inode for UDP socket {}#{}: {}", port, socketIndex, e.getMessage());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getSocketIndex() {
+        return socketIndex;
+    }
+
+    public long getDatagramsReceived() {
+        return datagrams.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytes.sum();
+    }
+
+    /**
+     * Returns the number of datagrams the kernel dropped for this socket, or NaN when unknown.
+     */
+    public double getKernelDrops() {
+        String[] columns = procColumns();
+        return columns != null ? Long.parseLong(columns[DROPS_COLUMN]) : Double.NaN;
+    }
+
+    /**
+     * Returns the bytes currently waiting in the socket receive queue, or NaN when unknown.
+     */
+    public double getReceiveQueueBytes() {
+        String[] columns = procColumns();
+        if (columns == null) {
+            return Double.NaN;
+        }
+        String queues = columns[QUEUES_COLUMN];
+        return Long.parseLong(queues.substring(queues.indexOf(':') + 1), 16);
+    }
+
+    private String[] procColumns() {
+        String socketInode = inode;
+        if (socketInode == null) {
+            return null;
+        }
+        for (Path table : PROC_UDP_TABLES) {
+            if (!Files.isReadable(table)) {
+                continue;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(table)) {
+                reader.readLine(); // header
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] columns = line.trim().split("\\s+");
+                    if (columns.length > DROPS_COLUMN && socketInode.equals(columns[INODE_COLUMN])) {
+                        return columns;
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Failed to read {}: {}", table, e.getMessage());
+            }
+        }
+        return null;
+    }
+}
@@ -1,98 +1,233 @@
 package mk.dmt.wms.sensor;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.socket.DatagramPacket;
+import io.netty.channel.unix.UnixChannelOption;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import mk.dmt.wms.config.SensorConfig;
 import mk.dmt.wms.event.MeasurementEventBus;
 import mk.dmt.wms.model.SensorMeasurement;
 import mk.dmt.wms.model.SensorType;
+import mk.dmt.wms.monitoring.IngestStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import reactor.core.Disposable;
+import reactor.netty.resources.LoopResources;
 import reactor.netty.udp.UdpServer;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Warehouse Service that collects data from various UDP sensors
  * and forwards measurements to the Central Monitoring Service via the event bus.
+ * Each port can be served by several sockets bound with SO_REUSEPORT on the native
+ * transport, so the kernel spreads datagrams across that many event loops.
  */
 @Service
-public class WarehouseService {
+public class WarehouseService implements MeterBinder {
 
     private static final Logger log = LoggerFactory.getLogger(WarehouseService.class);
 
     private final SensorConfig sensorConfig;
     private final SensorMessageParser messageParser;
+    private final BinaryFrameCodec binaryFrameCodec;
     private final MeasurementEventBus eventBus;
+    private final IngestStatistics ingestStatistics;
     private final List<Disposable> disposables = new ArrayList<>();
+    private final List<UdpSocketStats> socketStats = new ArrayList<>();
+    private LoopResources loopResources;
+    private boolean reusePort;
 
     public WarehouseService(SensorConfig sensorConfig,
                            SensorMessageParser messageParser,
-                           MeasurementEventBus eventBus) {
+                           BinaryFrameCodec binaryFrameCodec,
+                           MeasurementEventBus eventBus,
+                           IngestStatistics ingestStatistics) {
         this.sensorConfig = sensorConfig;
         this.messageParser = messageParser;
+        this.binaryFrameCodec = binaryFrameCodec;
         this.eventBus = eventBus;
+        this.ingestStatistics = ingestStatistics;
     }
 
     @PostConstruct
     public void startListeners() {
         log.info("Starting Warehouse Service UDP listeners...");
 
+        int socketsPerPort = Math.max(1, sensorConfig.getSocketsPerPort());
+        boolean nativeTransport = sensorConfig.isNativeTransport() && LoopResources.hasNativeSupport();
+        if (socketsPerPort > 1 && !nativeTransport) {
+            log.warn("SO_REUSEPORT requires the native transport, which is not available. " +
+                    "Falling back to a single socket per port.");
+            socketsPerPort = 1;
+        }
+        reusePort = socketsPerPort > 1;
+        boolean binaryEnabled = sensorConfig.getBinaryPort() > 0;
+        int listeners = binaryEnabled ? 3 : 2;
+        // One event loop per socket
+        loopResources = LoopResources.create("wms-udp", socketsPerPort * listeners, true);
+
         // Start temperature sensor listener
-        startUdpListener(sensorConfig.getTemperaturePort(), SensorType.TEMPERATURE);
+        startUdpListener(sensorConfig.getTemperaturePort(), SensorType.TEMPERATURE.getDisplayName(),
+                packet -> processPacket(packet, SensorType.TEMPERATURE), socketsPerPort, nativeTransport);
 
         // Start humidity sensor listener
-        startUdpListener(sensorConfig.getHumidityPort(), SensorType.HUMIDITY);
+        startUdpListener(sensorConfig.getHumidityPort(), SensorType.HUMIDITY.getDisplayName(),
+                packet -> processPacket(packet, SensorType.HUMIDITY), socketsPerPort, nativeTransport);
+
+        // Start binary frame listener (sensor type is carried in each frame)
+        if (binaryEnabled) {
+            startUdpListener(sensorConfig.getBinaryPort(), "binary",
+                    this::processBinaryPacket, socketsPerPort, nativeTransport);
+        }
 
-        log.info("Warehouse Service started. Listening for sensors:");
+        log.info("Warehouse Service started ({} socket(s) per port, {} transport). Listening for sensors:",
+                socketsPerPort, nativeTransport ? "native" : "NIO");
         log.info("  - Temperature sensors on UDP port {}", sensorConfig.getTemperaturePort());
         log.info("  - Humidity sensors on UDP port {}", sensorConfig.getHumidityPort());
+        if (binaryEnabled) {
+            log.info("  - Binary sensor frames on UDP port {}", sensorConfig.getBinaryPort());
+        }
     }
 
-    private void startUdpListener(int port, SensorType sensorType) {
-        Disposable disposable = UdpServer.create()
-                .host(sensorConfig.getHost())
-                .port(port)
-                .handle((in, out) -> in.receiveObject()
-                        .cast(DatagramPacket.class)
-                        .doOnNext(packet -> processPacket(packet, sensorType))
-                        .then())
-                .bind()
-                .doOnSuccess(connection -> log.info("UDP listener for {} bound to port {}",
-                        sensorType.getDisplayName(), port))
-                .doOnError(error -> log.error("Failed to bind UDP listener for {} on port {}: {}",
-                        sensorType.getDisplayName(), port, error.getMessage()))
-                .subscribe();
-
-        disposables.add(disposable);
+    private void startUdpListener(int port, String name, Consumer<DatagramPacket> handler,
+                                  int sockets, boolean nativeTransport) {
+        for (int i = 0; i < sockets; i++) {
+            UdpSocketStats stats = new UdpSocketStats(name, port, i);
+            socketStats.add(stats);
+
+            UdpServer server = UdpServer.create()
+                    .host(sensorConfig.getHost())
+                    .port(port)
+                    .runOn(loopResources, nativeTransport);
+            if (reusePort) {
+                server = server.option(UnixChannelOption.SO_REUSEPORT, true);
+            }
+            if (sensorConfig.getReceiveBufferSize() > 0) {
+                server = server.option(ChannelOption.SO_RCVBUF, sensorConfig.getReceiveBufferSize());
+            }
+
+            Disposable disposable = server
+                    .handle((in, out) -> in.receiveObject()
+                            .cast(DatagramPacket.class)
+                            .doOnNext(packet -> {
+                                stats.recordReceived(packet.content().readableBytes());
+                                handler.accept(packet);
+                            })
+                            .then())
+                    .bind()
+                    .doOnSuccess(connection -> {
+                        stats.attach(connection.channel());
+                        log.info("UDP listener for {} bound to port {} (socket {})",
+                                name, port, stats.getSocketIndex());
+                    })
+                    .doOnError(error -> log.error("Failed to bind UDP listener for {} on port {}: {}",
+                            name, port, error.getMessage()))
+                    .subscribe();
+
+            disposables.add(disposable);
+        }
     }
 
     private void processPacket(DatagramPacket packet, SensorType sensorType) {
-        String message = packet.content().toString(StandardCharsets.UTF_8);
-        log.debug("Received {} sensor data: {}", sensorType.getDisplayName(), message);
-
-        Optional<SensorMeasurement> measurement = messageParser.parse(message, sensorType);
-
-        measurement.ifPresentOrElse(
-                m -> {
-                    log.info("Processed measurement: {}", m.toDisplayString());
-                    eventBus.publish(m);
-                },
-                () -> log.warn("Failed to parse {} sensor message: {}", sensorType.getDisplayName(), message)
-        );
+        ByteBuf content = packet.content();
+        boolean sampled = log.isDebugEnabled() && ingestStatistics.sample();
+        if (sampled) {
+            log.debug("Received {} sensor data: {}", sensorType.getDisplayName(), content.toString(StandardCharsets.UTF_8));
+        }
+
+        // Parse straight from the datagram buffer; the payload is only decoded to a String for logging
+        List<SensorMeasurement> batch = new ArrayList<>();
+        int rejected = messageParser.parseBatch(content, sensorType, batch);
+        ingestStatistics.recordRejected(sensorType, rejected);
+        if (rejected > 0 && sampled) {
+            log.debug("Failed to parse {} of {} sensor record(s) from: {}", rejected, sensorType.getDisplayName(),
+                    content.toString(StandardCharsets.UTF_8));
+        }
+        publish(batch, sampled);
+    }
+
+    private void processBinaryPacket(DatagramPacket packet) {
+        boolean sampled = log.isDebugEnabled() && ingestStatistics.sample();
+
+        List<SensorMeasurement> batch = new ArrayList<>();
+        int rejected = binaryFrameCodec.decodeBatch(packet.content(), batch);
+        ingestStatistics.recordRejectedBinary(rejected);
+        if (rejected > 0 && sampled) {
+            log.debug("Failed to decode binary sensor frame in {} bytes from {}",
+                    packet.content().readableBytes(), packet.sender());
+        }
+        publish(batch, sampled);
+    }
+
+    private void publish(List<SensorMeasurement> batch, boolean sampled) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ingestStatistics.recordMeasurements(batch);
+        if (sampled) {
+            for (SensorMeasurement m : batch) {
+                log.debug("Processed measurement: {}", m.toDisplayString());
+            }
+        }
+        eventBus.publishAll(batch);
     }
 
     @PreDestroy
     public void stopListeners() {
         log.info("Stopping Warehouse Service UDP listeners...");
         disposables.forEach(Disposable::dispose);
+        if (loopResources != null) {
+            loopResources.dispose();
+        }
         eventBus.complete();
         log.info("Warehouse Service stopped.");
     }
+
+    /**
+     * Returns receive statistics for every configured UDP socket.
+     */
+    public List<UdpSocketStats> getSocketStats() {
+        return List.copyOf(socketStats);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (UdpSocketStats stats : socketStats) {
+            Tags tags = Tags.of(
+                    "sensor", stats.getName(),
+                    "port", Integer.toString(stats.getPort()),
+                    "socket", Integer.toString(stats.getSocketIndex()));
+
+            FunctionCounter.builder("wms.udp.datagrams.received", stats, UdpSocketStats::getDatagramsReceived)
+                    .description("Datagrams received by the socket")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("wms.udp.bytes.received", stats, UdpSocketStats::getBytesReceived)
+                    .description("Payload bytes received by the socket")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+            FunctionCounter.builder("wms.udp.datagrams.kernel.dropped", stats, UdpSocketStats::getKernelDrops)
+                    .description("Datagrams dropped by the kernel before the socket could read them")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("wms.udp.receive.queue", stats, UdpSocketStats::getReceiveQueueBytes)
+                    .description("Bytes waiting in the socket receive buffer")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(registry);
+        }
+    }
 }
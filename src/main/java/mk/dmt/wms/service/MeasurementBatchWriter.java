@@ -0,0 +1,137 @@
+package mk.dmt.wms.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.event.MeasurementEventBus;
+import mk.dmt.wms.model.SensorMeasurement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists every measurement on the event bus in micro-batches.
+ * Measurements are collected until {@code persistence.batch-size} rows or
+ * {@code persistence.batch-linger} has passed, whichever comes first, and each batch is written
+ * with one multi-row INSERT. At most {@code persistence.max-in-flight-batches} writes run at
+ * the same time; beyond that the pipeline stops requesting from the bus. Transient failures are
+ * retried with backoff; a batch that still fails is handed to the {@link PersistenceSpill}.
+ */
+@Component
+public class MeasurementBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementBatchWriter.class);
+
+    private final MeasurementEventBus eventBus;
+    private final MeasurementPersistenceService persistenceService;
+    private final PersistenceSpill spill;
+    private final PersistenceConfig config;
+    private final DistributionSummary batchSize;
+    private final Timer flushTimer;
+    private final Counter failedRows;
+    private final Counter retries;
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private Disposable subscription;
+
+    public MeasurementBatchWriter(MeasurementEventBus eventBus,
+                                  MeasurementPersistenceService persistenceService,
+                                  PersistenceSpill spill,
+                                  PersistenceConfig config,
+                                  MeterRegistry registry) {
+        this.eventBus = eventBus;
+        this.persistenceService = persistenceService;
+        this.spill = spill;
+        this.config = config;
+        this.batchSize = DistributionSummary.builder("wms.persistence.batch.size")
+                .description("Measurements written per batch")
+                .baseUnit("rows")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.flushTimer = Timer.builder("wms.persistence.batch.flush")
+                .description("Time to write one measurement batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.failedRows = Counter.builder("wms.persistence.failed")
+                .description("Records that could not be written")
+                .tag("stream", "measurements")
+                .register(registry);
+        this.retries = Counter.builder("wms.persistence.retries")
+                .description("Writes retried after a transient failure")
+                .tag("stream", "measurements")
+                .register(registry);
+        Gauge.builder("wms.persistence.queued", queued, AtomicLong::get)
+                .description("Rows accepted by the write pipeline and waiting for a write slot")
+                .tag("stream", "measurements")
+                .register(registry);
+        Gauge.builder("wms.persistence.inflight", inFlight, AtomicInteger::get)
+                .description("Writes currently executing")
+                .tag("stream", "measurements")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        log.info("Batching measurement writes: up to {} rows or {} ms, {} batches in flight",
+                config.getBatchSize(), config.getBatchLinger().toMillis(), config.getMaxInFlightBatches());
+        subscription = batches(eventBus.subscribe())
+                .subscribe(
+                        rows -> {},
+                        error -> log.error("Error in measurement write pipeline: {}", error.getMessage()),
+                        () -> log.info("Measurement write pipeline completed")
+                );
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null && !subscription.isDisposed()) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Writes the measurements in batches and emits the number of rows written per batch.
+     */
+    Flux<Long> batches(Flux<SensorMeasurement> measurements) {
+        return measurements
+                .doOnNext(measurement -> queued.incrementAndGet())
+                .bufferTimeout(config.getBatchSize(), config.getBatchLinger(), true)
+                .flatMap(this::write, config.getMaxInFlightBatches());
+    }
+
+    private Mono<Long> write(List<SensorMeasurement> batch) {
+        queued.addAndGet(-batch.size());
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        return persistenceService.saveMeasurements(batch)
+                .retryWhen(PersistenceRetry.transientErrors(config)
+                        .doBeforeRetry(signal -> retries.increment()))
+                .doOnSuccess(rows -> {
+                    flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    batchSize.record(batch.size());
+                })
+                .onErrorResume(error -> {
+                    if (PersistenceRetry.isTransient(error) && spill.spillMeasurements(batch)) {
+                        log.debug("Spilled batch of {} measurements: {}", batch.size(), error.getMessage());
+                    } else {
+                        log.warn("Giving up on batch of {} measurements: {}", batch.size(), error.getMessage());
+                        failedRows.increment(batch.size());
+                    }
+                    return Mono.just(0L);
+                })
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+}
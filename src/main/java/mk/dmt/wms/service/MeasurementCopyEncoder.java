@@ -0,0 +1,68 @@
+package mk.dmt.wms.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import mk.dmt.wms.model.SensorMeasurement;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Encodes measurements in the text format of the Postgres COPY protocol: one line per row,
+ * tab-separated columns in {@link #COLUMNS} order, {@code \N} for null.
+ * Sensors and warehouses are written as their dictionary keys, so rows never contain text that
+ * needs escaping. Timestamps are written as wall-clock date-times of the JVM's default zone, as
+ * the INSERT path and every other writer of the {@code timestamp} columns store them.
+ */
+final class MeasurementCopyEncoder {
+
+    static final String COLUMNS = "sensor_ref, warehouse_ref, sensor_type, measurement_value, updated_at";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    // Rough upper bound of an encoded row, used to size the buffer up front
+    private static final int ROW_ESTIMATE = 64;
+
+    private MeasurementCopyEncoder() {
+    }
+
+    static ByteBuf encode(List<SensorMeasurement> measurements, Function<String, Integer> sensorRefs,
+                          Function<String, Integer> warehouseRefs, ByteBufAllocator allocator) {
+        ZoneId zone = ZoneId.systemDefault();
+        ByteBuf out = allocator.buffer(measurements.size() * ROW_ESTIMATE);
+        for (int i = 0; i < measurements.size(); i++) {
+            SensorMeasurement measurement = measurements.get(i);
+            writeNumber(out, measurement.sensorId() == null ? null : sensorRefs.apply(measurement.sensorId()));
+            out.writeByte('\t');
+            writeNumber(out, measurement.warehouseId() == null ? null : warehouseRefs.apply(measurement.warehouseId()));
+            out.writeByte('\t');
+            writeNumber(out, measurement.sensorType() == null ? null : measurement.sensorType().getCode());
+            out.writeByte('\t');
+            out.writeCharSequence(Double.toString(measurement.value()), StandardCharsets.US_ASCII);
+            out.writeByte('\t');
+            if (measurement.timestamp() == null) {
+                out.writeByte('\\').writeByte('N');
+            } else {
+                out.writeCharSequence(format(measurement.timestamp(), zone), StandardCharsets.US_ASCII);
+            }
+            out.writeByte('\n');
+        }
+        return out;
+    }
+
+    private static String format(Instant instant, ZoneId zone) {
+        return TIMESTAMP.format(LocalDateTime.ofInstant(instant, zone));
+    }
+
+    private static void writeNumber(ByteBuf out, Integer value) {
+        if (value == null) {
+            out.writeByte('\\').writeByte('N');
+        } else {
+            out.writeCharSequence(Integer.toString(value), StandardCharsets.US_ASCII);
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package mk.dmt.wms.service;
 
+import io.netty.buffer.ByteBufAllocator;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import mk.dmt.wms.config.PersistenceConfig;
 import mk.dmt.wms.event.AlarmEvent;
 import mk.dmt.wms.model.AlarmEventEntity;
 import mk.dmt.wms.model.SensorMeasurement;
 import mk.dmt.wms.model.SensorMeasurementEntity;
 import mk.dmt.wms.repository.AlarmEventRepository;
+import mk.dmt.wms.repository.SensorDictionary;
 import mk.dmt.wms.repository.SensorMeasurementRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Service for persisting measurements and alarms to the database.
@@ -23,13 +42,57 @@ public class MeasurementPersistenceService {
 
     private static final Logger log = LoggerFactory.getLogger(MeasurementPersistenceService.class);
 
+    // PostgreSQL's wire protocol counts bind parameters in an unsigned 16-bit field
+    static final int MAX_BIND_PARAMETERS = 65_535;
+
+    private static final String COPY_SQL =
+            "copy sensor_measurements (" + MeasurementCopyEncoder.COLUMNS + ") from stdin";
+
+    private static final String ALARM_COLUMNS = "sensor_id, sensor_type, measurement_value, threshold, severity,"
+            + " updated_at, warehouse_id, created_at, peak_value, cleared_at, alarm_rule";
+    private static final String ALARM_VALUES = "(:sensorId, :sensorType, :value, :threshold, :severity,"
+            + " :raisedAt, :warehouseId, :createdAt, :peakValue, :clearedAt, :rule)";
+
+    // A cleared episode is not reopened by an older transition, e.g. one replayed from the spill
+    private static final String UPSERT_ALARM_SQL = "insert into alarm_events (" + ALARM_COLUMNS + ")"
+            + " values " + ALARM_VALUES
+            + " on conflict (sensor_id, alarm_rule, updated_at) do update set"
+            + " severity = excluded.severity,"
+            + " peak_value = excluded.peak_value,"
+            + " cleared_at = excluded.cleared_at"
+            + " where alarm_events.cleared_at is null or excluded.cleared_at is not null";
+    private static final String MERGE_ALARM_SQL = "merge into alarm_events t"
+            + " using (values " + ALARM_VALUES + ") as s(" + ALARM_COLUMNS + ")"
+            + " on t.sensor_id = s.sensor_id and t.alarm_rule = s.alarm_rule and t.updated_at = s.updated_at"
+            + " when matched and (t.cleared_at is null or s.cleared_at is not null) then update set"
+            + " severity = s.severity,"
+            + " peak_value = s.peak_value,"
+            + " cleared_at = s.cleared_at"
+            + " when not matched then insert (" + ALARM_COLUMNS + ") values (s.sensor_id, s.sensor_type,"
+            + " s.measurement_value, s.threshold, s.severity, s.updated_at, s.warehouse_id, s.created_at,"
+            + " s.peak_value, s.cleared_at, s.alarm_rule)";
+
     private final SensorMeasurementRepository measurementRepository;
     private final AlarmEventRepository alarmRepository;
+    private final R2dbcEntityTemplate template;
+    private final SensorDictionary dictionary;
+    private final TransactionalOperator transactions;
+    private final boolean copy;
+    private final boolean postgres;
 
     public MeasurementPersistenceService(SensorMeasurementRepository measurementRepository,
-                                        AlarmEventRepository alarmRepository) {
+                                        AlarmEventRepository alarmRepository,
+                                        R2dbcEntityTemplate template,
+                                        SensorDictionary dictionary,
+                                        PersistenceConfig config) {
         this.measurementRepository = measurementRepository;
         this.alarmRepository = alarmRepository;
+        this.template = template;
+        this.dictionary = dictionary;
+        this.transactions = TransactionalOperator.create(
+                new R2dbcTransactionManager(template.getDatabaseClient().getConnectionFactory()));
+        this.copy = config.getWriteMode() == PersistenceConfig.WriteMode.COPY && supportsCopy(template);
+        this.postgres = "PostgreSQL".equals(template.getDatabaseClient().getConnectionFactory().getMetadata().getName());
     }
 
     /**
@@ -43,21 +106,166 @@ public class MeasurementPersistenceService {
     }
 
     /**
-     * Save an alarm event to the database.
+     * Save a batch of sensor measurements with a single multi-row INSERT, or a single COPY when
+     * {@code persistence.write-mode=COPY} and the database is Postgres.
+     * Sensor and warehouse keys are resolved up front; generated ids and created_at are not written.
+     *
+     * @return Number of rows inserted
+     */
+    public Mono<Long> saveMeasurements(List<SensorMeasurement> measurements) {
+        if (measurements.isEmpty()) {
+            return Mono.just(0L);
+        }
+        Set<String> sensorIds = new LinkedHashSet<>();
+        Set<String> warehouseIds = new LinkedHashSet<>();
+        for (SensorMeasurement measurement : measurements) {
+            sensorIds.add(measurement.sensorId());
+            if (measurement.warehouseId() != null) {
+                warehouseIds.add(measurement.warehouseId());
+            }
+        }
+        return dictionary.resolveAll(sensorIds, warehouseIds)
+                .then(Mono.defer(() -> copy ? copyMeasurements(measurements) : insertMeasurements(measurements)));
+    }
+
+    private Mono<Long> copyMeasurements(List<SensorMeasurement> measurements) {
+        return template.getDatabaseClient()
+                .inConnection(connection -> unwrap(connection).copyIn(COPY_SQL, Mono.fromSupplier(() ->
+                        MeasurementCopyEncoder.encode(measurements, dictionary::cachedSensorRef,
+                                dictionary::cachedWarehouseRef, ByteBufAllocator.DEFAULT))))
+                .doOnSuccess(count -> log.debug("Copied {} measurements to database", count))
+                .doOnError(error -> log.error("Failed to copy {} measurements: {}", measurements.size(), error.getMessage()));
+    }
+
+    private Mono<Long> insertMeasurements(List<SensorMeasurement> measurements) {
+        SqlIdentifier idColumn = template.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(SensorMeasurementEntity.class).getRequiredIdProperty().getColumnName();
+        List<OutboundRow> rows = new ArrayList<>(measurements.size());
+        for (SensorMeasurement measurement : measurements) {
+            SensorMeasurementEntity entity = SensorMeasurementEntity.fromMeasurement(measurement);
+            entity.setSensorRef(dictionary.cachedSensorRef(measurement.sensorId()));
+            entity.setWarehouseRef(measurement.warehouseId() == null ? null : dictionary.cachedWarehouseRef(measurement.warehouseId()));
+            entity.setCreatedAt(null);
+            OutboundRow row = new OutboundRow();
+            template.getConverter().write(entity, row);
+            row.remove(idColumn);
+            rows.add(row);
+        }
+        List<SqlIdentifier> columns = List.copyOf(rows.get(0).keySet());
+
+        int chunk = rowsPerStatement(columns.size());
+        Mono<Long> inserted;
+        if (rows.size() <= chunk) {
+            inserted = insertRows(rows, columns);
+        } else {
+            // Larger batches take several statements, written in one transaction so a retry repeats none of them
+            inserted = transactions.transactional(Flux.range(0, (rows.size() + chunk - 1) / chunk)
+                    .concatMap(i -> insertRows(rows.subList(i * chunk, Math.min(rows.size(), (i + 1) * chunk)), columns))
+                    .reduce(0L, Long::sum));
+        }
+        return inserted
+                .doOnSuccess(count -> log.debug("Saved {} measurements to database", count))
+                .doOnError(error -> log.error("Failed to save {} measurements: {}", measurements.size(), error.getMessage()));
+    }
+
+    private Mono<Long> insertRows(List<OutboundRow> rows, List<SqlIdentifier> columns) {
+        StringBuilder sql = new StringBuilder("insert into sensor_measurements (");
+        for (int c = 0; c < columns.size(); c++) {
+            sql.append(c == 0 ? "" : ", ").append(columns.get(c).getReference());
+        }
+        sql.append(") values ");
+        int parameter = 0;
+        for (int r = 0; r < rows.size(); r++) {
+            sql.append(r == 0 ? "(" : ", (");
+            for (int c = 0; c < columns.size(); c++) {
+                sql.append(c == 0 ? ":p" : ", :p").append(parameter++);
+            }
+            sql.append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql.toString());
+        parameter = 0;
+        for (OutboundRow row : rows) {
+            for (SqlIdentifier column : columns) {
+                spec = spec.bind("p" + parameter++, row.get(column));
+            }
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Returns how many rows of the given width fit into one statement without exceeding
+     * PostgreSQL's limit on bind parameters.
+     */
+    static int rowsPerStatement(int columns) {
+        return MAX_BIND_PARAMETERS / columns;
+    }
+
+    private static boolean supportsCopy(R2dbcEntityTemplate template) {
+        String database = template.getDatabaseClient().getConnectionFactory().getMetadata().getName();
+        if (!"PostgreSQL".equals(database)) {
+            log.warn("COPY write mode requires PostgreSQL, using batched INSERT on {}", database);
+            return false;
+        }
+        log.info("Writing measurement batches with COPY");
+        return true;
+    }
+
+    private static PostgresqlConnection unwrap(Connection connection) {
+        Object target = connection;
+        while (!(target instanceof PostgresqlConnection) && target instanceof Wrapped<?> wrapped) {
+            target = wrapped.unwrap();
+        }
+        if (target instanceof PostgresqlConnection postgres) {
+            return postgres;
+        }
+        throw new IllegalStateException("Not a PostgreSQL connection: " + connection.getClass().getName());
+    }
+
+    /**
+     * Save an alarm event to the database. Every transition of an episode merges into the same
+     * row, keyed by sensor, rule and raise time: the first one to arrive inserts it, later ones
+     * update severity, peak and end. PostgreSQL uses {@code INSERT ... ON CONFLICT}, other
+     * databases a standard {@code MERGE}, so writes of one episode may race or be replayed.
+     *
+     * @return the episode's row after the write
      */
     public Mono<AlarmEventEntity> saveAlarm(AlarmEvent alarm) {
         AlarmEventEntity entity = AlarmEventEntity.fromAlarm(alarm);
-        return alarmRepository.save(entity)
+        // Truncated as the database stores it, so that the episode can be read back by its key
+        LocalDateTime raisedAt = toLocal(alarm.raisedAt()).truncatedTo(ChronoUnit.MICROS);
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient()
+                .sql(postgres ? UPSERT_ALARM_SQL : MERGE_ALARM_SQL)
+                .bind("sensorId", entity.getSensorId())
+                .bind("sensorType", entity.getSensorType())
+                .bind("value", entity.getValue())
+                .bind("threshold", entity.getThreshold())
+                .bind("severity", entity.getSeverity())
+                .bind("raisedAt", raisedAt)
+                .bind("createdAt", toLocal(entity.getCreatedAt()))
+                .bind("peakValue", entity.getPeakValue())
+                .bind("rule", entity.getRule());
+        spec = entity.getWarehouseId() == null
+                ? spec.bindNull("warehouseId", String.class)
+                : spec.bind("warehouseId", entity.getWarehouseId());
+        spec = entity.getClearedAt() == null
+                ? spec.bindNull("clearedAt", LocalDateTime.class)
+                : spec.bind("clearedAt", toLocal(entity.getClearedAt()));
+        return spec.fetch().rowsUpdated()
+                .then(alarmRepository.findEpisode(entity.getSensorId(), entity.getRule(), raisedAt))
                 .doOnSuccess(saved -> log.debug("Saved alarm to database: id={}", saved.getId()))
                 .doOnError(error -> log.error("Failed to save alarm: {}", error.getMessage()));
     }
 
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
     /**
      * Get measurement history for a specific sensor.
      */
     public Flux<SensorMeasurement> getMeasurementHistory(String sensorId, int limit) {
-        return measurementRepository.findBySensorIdOrderByTimestampDesc(sensorId)
-                .take(limit)
+        return measurementRepository.findLatestBySensorId(sensorId, limit)
                 .map(SensorMeasurementEntity::toMeasurement);
     }
 
@@ -66,8 +274,7 @@ public class MeasurementPersistenceService {
      */
     public Flux<SensorMeasurement> getRecentMeasurements(int minutes, int limit) {
         Instant after = Instant.now().minus(Duration.ofMinutes(minutes));
-        return measurementRepository.findByTimestampAfterOrderByTimestampDesc(after)
-                .take(limit)
+        return measurementRepository.findLatestAfter(after, limit)
                 .map(SensorMeasurementEntity::toMeasurement);
     }
 
@@ -0,0 +1,360 @@
+package mk.dmt.wms.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.config.RollupConfig;
+import mk.dmt.wms.event.MeasurementEventBus;
+import mk.dmt.wms.model.MeasurementAggregate;
+import mk.dmt.wms.model.MeasurementRollup;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import mk.dmt.wms.repository.MeasurementRollupRepository;
+import mk.dmt.wms.repository.MeasurementRollupRepository.PendingRollup;
+import mk.dmt.wms.repository.MeasurementRollupRepository.Resolution;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Maintains per-sensor 1-minute and 1-hour rollups (min, max, sum, count, last) from the event
+ * bus. Buckets are accumulated in memory and merged into the rollup tables once they have been
+ * closed for {@code rollup.allowed-lateness}; measurements that arrive later open the bucket again
+ * and are merged into the stored row on the next flush. A write whose outcome is unknown is kept
+ * as it is and repeated with the same flush id before anything else is written, so a write that
+ * did commit is not merged twice. Time-bucket aggregates are served from the rollups combined
+ * with the buckets still in memory: open, being written or waiting to be repeated. Each of these
+ * carries the flush id of the write that stores it, and is left out where the stored row already
+ * has that flush id or a later one, so a bucket is counted once while a write commits under a
+ * running query. Raw measurements therefore only need to be kept for
+ * {@code persistence.retention}; rollups are purged after {@code rollup.minute-retention} and
+ * {@code rollup.hour-retention}.
+ * <p>
+ * Buckets are aligned to wall-clock time in the application's zone, like the stored timestamps.
+ */
+@Component
+public class MeasurementRollups implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(MeasurementRollups.class);
+
+    // Rows per merge statement
+    private static final int MERGE_BATCH = 500;
+    private static final Duration SHUTDOWN_FLUSH_TIMEOUT = Duration.ofSeconds(10);
+    private static final Resolution[] RESOLUTIONS = Resolution.values();
+
+    private final MeasurementEventBus eventBus;
+    private final MeasurementRollupRepository repository;
+    private final RollupConfig config;
+    private final PersistenceConfig persistenceConfig;
+    private final Map<Resolution, Map<Key, Accumulator>> open = new ConcurrentHashMap<>();
+    // Writes not known to have committed, by flush id; guards moving buckets out of the open maps
+    private final Map<Long, Write> pending = new ConcurrentHashMap<>();
+    // Writes that failed, oldest first; only touched by the sequential flushes
+    private final Queue<Write> unwritten = new ConcurrentLinkedQueue<>();
+    // Unique across restarts as long as fewer than a million writes are made per millisecond
+    private final AtomicLong flushIds = new AtomicLong(System.currentTimeMillis() * 1_000_000);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private Disposable subscription;
+    private Disposable flushTask;
+    private Disposable purgeTask;
+
+    public MeasurementRollups(MeasurementEventBus eventBus,
+                              MeasurementRollupRepository repository,
+                              RollupConfig config,
+                              PersistenceConfig persistenceConfig) {
+        this.eventBus = eventBus;
+        this.repository = repository;
+        this.config = config;
+        this.persistenceConfig = persistenceConfig;
+        for (Resolution resolution : Resolution.values()) {
+            open.put(resolution, new ConcurrentHashMap<>());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        subscription = eventBus.subscribeBatches()
+                .subscribe(this::accumulate,
+                        error -> log.error("Error in rollup stream: {}", error.getMessage()));
+        flushTask = Flux.interval(config.getFlushInterval(), config.getFlushInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> flush(Instant.now()))
+                .subscribe();
+        purgeTask = Flux.interval(config.getPurgeInterval(), config.getPurgeInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> purge(Instant.now()))
+                .subscribe();
+        log.info("Maintaining 1m/1h rollups, flushed every {} ms with {} ms allowed lateness",
+                config.getFlushInterval().toMillis(), config.getAllowedLateness().toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (Disposable task : new Disposable[] {subscription, flushTask, purgeTask}) {
+            if (task != null && !task.isDisposed()) {
+                task.dispose();
+            }
+        }
+        // Write the open buckets; they are merged with the rest of their data after a restart
+        flush(Instant.MAX).block(SHUTDOWN_FLUSH_TIMEOUT);
+    }
+
+    /**
+     * Adds the measurements to their open buckets.
+     */
+    void accumulate(List<SensorMeasurement> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            SensorMeasurement measurement = batch.get(i);
+            if (measurement.timestamp() == null) {
+                continue;
+            }
+            long wallClock = wallClockSeconds(measurement.timestamp());
+            for (Resolution resolution : RESOLUTIONS) {
+                long size = resolution.getSize().toSeconds();
+                Key key = new Key(measurement.sensorId(), Math.floorDiv(wallClock, size) * size);
+                open.get(resolution).compute(key, (k, accumulator) -> {
+                    Accumulator target = accumulator != null ? accumulator : new Accumulator();
+                    target.add(measurement);
+                    return target;
+                });
+            }
+        }
+    }
+
+    /**
+     * Writes every bucket that ended at least the allowed lateness before {@code now}, after
+     * repeating the writes that failed before. While one of those still fails, the buckets stay
+     * open in memory.
+     */
+    Mono<Void> flush(Instant now) {
+        long cutoff = now == Instant.MAX ? Long.MAX_VALUE
+                : wallClockSeconds(now.minus(config.getAllowedLateness()));
+        return Flux.fromIterable(new ArrayList<>(unwritten))
+                .concatMap(write -> write(write)
+                        .doOnSuccess(rows -> unwritten.remove(write)))
+                .then(Mono.fromCallable(unwritten::isEmpty))
+                .onErrorResume(error -> {
+                    log.warn("Could not repeat {} rollup write(s), keeping buckets open: {}",
+                            unwritten.size(), error.getMessage());
+                    return Mono.just(false);
+                })
+                .filter(Boolean::booleanValue)
+                .flatMapMany(ok -> Flux.fromArray(RESOLUTIONS))
+                .concatMap(resolution -> flush(resolution, cutoff))
+                .then();
+    }
+
+    private Flux<Long> flush(Resolution resolution, long cutoff) {
+        Map<Key, Accumulator> buckets = open.get(resolution);
+        long size = resolution.getSize().toSeconds();
+        List<Write> writes = new ArrayList<>();
+        // A query sees each closed bucket either open or pending, never in neither or both
+        synchronized (pending) {
+            List<MeasurementRollup> closed = new ArrayList<>();
+            Iterator<Key> keys = buckets.keySet().iterator();
+            while (keys.hasNext()) {
+                Key key = keys.next();
+                if (key.bucketStart() + size <= cutoff) {
+                    Accumulator accumulator = buckets.remove(key);
+                    if (accumulator != null) {
+                        closed.add(accumulator.toRollup(key));
+                    }
+                }
+            }
+            for (int i = 0; i < closed.size(); i += MERGE_BATCH) {
+                Write write = new Write(resolution, flushIds.incrementAndGet(),
+                        List.copyOf(closed.subList(i, Math.min(i + MERGE_BATCH, closed.size()))));
+                pending.put(write.flushId(), write);
+                writes.add(write);
+            }
+        }
+        return Flux.fromIterable(writes)
+                .concatMap(write -> write(write)
+                        .onErrorResume(error -> {
+                            log.warn("Could not write {} {} rollup(s), keeping them for the next flush: {}",
+                                    write.rollups().size(), resolution, error.getMessage());
+                            failed.addAndGet(write.rollups().size());
+                            unwritten.add(write);
+                            return Mono.empty();
+                        }));
+    }
+
+    private Mono<Long> write(Write write) {
+        return repository.merge(write.resolution(), write.flushId(), write.rollups())
+                .retryWhen(PersistenceRetry.transientErrors(persistenceConfig))
+                .doOnSuccess(rows -> {
+                    written.addAndGet(write.rollups().size());
+                    pending.remove(write.flushId());
+                });
+    }
+
+    private Mono<Void> purge(Instant now) {
+        return repository.deleteBefore(Resolution.MINUTE, now.minus(config.getMinuteRetention()))
+                .then(repository.deleteBefore(Resolution.HOUR, now.minus(config.getHourRetention())))
+                .onErrorResume(error -> {
+                    log.error("Rollup purge failed: {}", error.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Get min, max, avg, count and last value of a sensor per time bucket in [from, to).
+     */
+    public Flux<MeasurementAggregate> getSensorAggregates(String sensorId, MeasurementAggregate.Bucket bucket,
+                                                          Instant from, Instant to) {
+        return Flux.defer(() -> repository.aggregateBySensorId(sensorId, bucket, from, to,
+                pendingRollups(bucket, rollup -> rollup.sensorId().equals(sensorId))));
+    }
+
+    /**
+     * Get min, max, avg, count and last value of a sensor type per time bucket in [from, to).
+     * Unknown type names match nothing.
+     */
+    public Flux<MeasurementAggregate> getSensorTypeAggregates(String sensorType, MeasurementAggregate.Bucket bucket,
+                                                              Instant from, Instant to) {
+        SensorType type;
+        try {
+            type = SensorType.valueOf(sensorType);
+        } catch (IllegalArgumentException e) {
+            return Flux.empty();
+        }
+        return Flux.defer(() -> repository.aggregateBySensorType((short) type.getCode(), bucket, from, to,
+                pendingRollups(bucket, rollup -> rollup.sensorType() == type)));
+    }
+
+    /**
+     * Get min, max, avg, count and last value of a warehouse per time bucket in [from, to).
+     */
+    public Flux<MeasurementAggregate> getWarehouseAggregates(String warehouseId, MeasurementAggregate.Bucket bucket,
+                                                             Instant from, Instant to) {
+        return Flux.defer(() -> repository.aggregateByWarehouseId(warehouseId, bucket, from, to,
+                pendingRollups(bucket, rollup -> warehouseId.equals(rollup.warehouseId()))));
+    }
+
+    /**
+     * Returns a snapshot of the rollups of the given bucket size that may not be stored yet: those
+     * of pending writes, and the open buckets, which only writes created later store.
+     */
+    private List<PendingRollup> pendingRollups(MeasurementAggregate.Bucket bucket,
+                                               Predicate<MeasurementRollup> filter) {
+        Resolution resolution = Resolution.forBucket(bucket.getSize());
+        List<PendingRollup> rollups = new ArrayList<>();
+        synchronized (pending) {
+            for (Write write : pending.values()) {
+                if (write.resolution() != resolution) {
+                    continue;
+                }
+                for (MeasurementRollup rollup : write.rollups()) {
+                    if (filter.test(rollup)) {
+                        rollups.add(new PendingRollup(rollup, write.flushId()));
+                    }
+                }
+            }
+            long nextFlushId = flushIds.get() + 1;
+            Map<Key, Accumulator> buckets = open.get(resolution);
+            for (Key key : buckets.keySet()) {
+                buckets.computeIfPresent(key, (k, accumulator) -> {
+                    MeasurementRollup rollup = accumulator.toRollup(k);
+                    if (filter.test(rollup)) {
+                        rollups.add(new PendingRollup(rollup, nextFlushId));
+                    }
+                    return accumulator;
+                });
+            }
+        }
+        return rollups;
+    }
+
+    public int getOpenBucketCount() {
+        int count = 0;
+        for (Map<Key, Accumulator> buckets : open.values()) {
+            count += buckets.size();
+        }
+        return count;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("wms.rollup.open", this, MeasurementRollups::getOpenBucketCount)
+                .description("Rollup buckets accumulating in memory")
+                .register(registry);
+        FunctionCounter.builder("wms.rollup.written", written, AtomicLong::get)
+                .description("Rollup buckets merged into the rollup tables")
+                .register(registry);
+        FunctionCounter.builder("wms.rollup.failed", failed, AtomicLong::get)
+                .description("Rollup bucket writes that failed and were kept for the next flush")
+                .register(registry);
+    }
+
+    private static long wallClockSeconds(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault()).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static Instant fromWallClockSeconds(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private record Key(String sensorId, long bucketStart) {
+    }
+
+    private record Write(Resolution resolution, long flushId, List<MeasurementRollup> rollups) {
+    }
+
+    /**
+     * Running summary of one open bucket; only mutated inside {@code compute} on its map.
+     */
+    private static final class Accumulator {
+
+        private SensorType sensorType;
+        private String warehouseId;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+        private long count;
+        private double last;
+        private Instant lastAt;
+
+        void add(SensorMeasurement measurement) {
+            double value = measurement.value();
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+            count++;
+            if (lastAt == null || !measurement.timestamp().isBefore(lastAt)) {
+                last = value;
+                lastAt = measurement.timestamp();
+                sensorType = measurement.sensorType();
+                warehouseId = measurement.warehouseId();
+            }
+        }
+
+        MeasurementRollup toRollup(Key key) {
+            return new MeasurementRollup(key.sensorId(), sensorType, warehouseId,
+                    fromWallClockSeconds(key.bucketStart()), min, max, sum, count, last, lastAt);
+        }
+    }
+}
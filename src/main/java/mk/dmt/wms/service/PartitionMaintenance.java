@@ -0,0 +1,161 @@
+package mk.dmt.wms.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.PersistenceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Keeps the daily partitions of {@code sensor_measurements} and {@code alarm_events} in shape on
+ * PostgreSQL (see {@code db/vendor/postgresql/V2__partition_by_day.sql}): every
+ * {@code persistence.partition-maintenance-interval} it creates the partitions for today and the
+ * next {@code persistence.partitions-ahead} days, drops partitions entirely older than
+ * {@code persistence.retention} and deletes expired rows from the default partition.
+ * Days and the cutoff are wall-clock time of the JVM's default zone, in which {@code updated_at} is
+ * stored. On other databases the tables are not partitioned and this component is idle.
+ */
+@Component
+public class PartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+
+    static final List<String> TABLES = List.of("sensor_measurements", "alarm_events");
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final DatabaseClient databaseClient;
+    private final PersistenceConfig config;
+    private final Clock clock;
+    private Disposable task;
+
+    @Autowired
+    public PartitionMaintenance(DatabaseClient databaseClient, PersistenceConfig config) {
+        this(databaseClient, config, Clock.systemDefaultZone());
+    }
+
+    PartitionMaintenance(DatabaseClient databaseClient, PersistenceConfig config, Clock clock) {
+        this.databaseClient = databaseClient;
+        this.config = config;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        String database = databaseClient.getConnectionFactory().getMetadata().getName();
+        if (!"PostgreSQL".equals(database)) {
+            log.info("Tables are not partitioned on {}, partition maintenance disabled", database);
+            return;
+        }
+        log.info("Maintaining daily partitions: {} day(s) ahead, retention {}",
+                config.getPartitionsAhead(), config.getRetention());
+        task = Flux.interval(Duration.ZERO, config.getPartitionMaintenanceInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> maintain(wallClockNow())
+                        .onErrorResume(error -> {
+                            log.error("Partition maintenance failed: {}", error.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (task != null && !task.isDisposed()) {
+            task.dispose();
+        }
+    }
+
+    /**
+     * Returns the current time as it is stored in {@code updated_at}.
+     */
+    LocalDateTime wallClockNow() {
+        return LocalDateTime.now(clock);
+    }
+
+    Mono<Void> maintain(LocalDateTime now) {
+        LocalDateTime cutoff = now.minus(config.getRetention());
+        return Flux.fromIterable(TABLES)
+                .concatMap(table -> createPartitions(table, now.toLocalDate())
+                        .then(dropExpiredPartitions(table, cutoff))
+                        .then(purgeDefaultPartition(table, cutoff)))
+                .then();
+    }
+
+    private Mono<Void> createPartitions(String table, LocalDate today) {
+        return Flux.range(0, config.getPartitionsAhead() + 1)
+                .map(today::plusDays)
+                .concatMap(day -> databaseClient.sql(String.format(
+                                "create table if not exists %s partition of %s for values from ('%s') to ('%s')",
+                                partitionName(table, day), table, day, day.plusDays(1)))
+                        .then()
+                        // Fails if the default partition already holds rows of that day; try the other days
+                        .onErrorResume(error -> {
+                            log.warn("Could not create partition {}: {}", partitionName(table, day), error.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    private Mono<Void> dropExpiredPartitions(String table, LocalDateTime cutoff) {
+        return databaseClient.sql("""
+                        select c.relname from pg_inherits i
+                        join pg_class c on c.oid = i.inhrelid
+                        join pg_class p on p.oid = i.inhparent
+                        where p.relname = :parent""")
+                .bind("parent", table)
+                .map(row -> row.get(0, String.class))
+                .all()
+                .filter(partition -> isExpired(table, partition, cutoff))
+                .concatMap(partition -> databaseClient.sql("drop table " + partition).then()
+                        .doOnSuccess(done -> log.info("Dropped expired partition {}", partition)))
+                .then();
+    }
+
+    private Mono<Void> purgeDefaultPartition(String table, LocalDateTime cutoff) {
+        return databaseClient.sql("delete from " + table + "_default where updated_at < :cutoff")
+                .bind("cutoff", cutoff)
+                .fetch()
+                .rowsUpdated()
+                .doOnNext(rows -> {
+                    if (rows > 0) {
+                        log.info("Deleted {} expired row(s) from {}_default", rows, table);
+                    }
+                })
+                .then();
+    }
+
+    static String partitionName(String table, LocalDate day) {
+        return table + "_p" + SUFFIX.format(day);
+    }
+
+    /**
+     * Returns whether the partition is a daily partition of the table that ends at or before the cutoff.
+     */
+    static boolean isExpired(String table, String partition, LocalDateTime cutoff) {
+        String prefix = table + "_p";
+        if (!partition.startsWith(prefix) || partition.length() != prefix.length() + 8) {
+            return false;
+        }
+        try {
+            LocalDate day = LocalDate.parse(partition.substring(prefix.length()), SUFFIX);
+            return !day.plusDays(1).atStartOfDay().isAfter(cutoff);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package mk.dmt.wms.service;
+
+import io.r2dbc.spi.R2dbcTransientException;
+import mk.dmt.wms.config.PersistenceConfig;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retry policy shared by the persistence stages: exponential backoff with jitter, and only for
+ * failures that may go away on their own (lost connections, pool or statement timeouts,
+ * serialization failures). Constraint violations and bad SQL fail immediately.
+ */
+public final class PersistenceRetry {
+
+    private PersistenceRetry() {
+    }
+
+    public static RetryBackoffSpec transientErrors(PersistenceConfig config) {
+        return Retry.backoff(config.getRetryMaxAttempts(), config.getRetryMinBackoff())
+                .maxBackoff(config.getRetryMaxBackoff())
+                .filter(PersistenceRetry::isTransient)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof R2dbcTransientException
+                    || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,200 @@
+package mk.dmt.wms.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.spill.AlarmEventCodec;
+import mk.dmt.wms.spill.MeasurementBatchCodec;
+import mk.dmt.wms.spill.SpillLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Write-ahead spill for records the database could not accept after retries.
+ * Measurement batches and alarms go to separate {@link SpillLog} files in
+ * {@code persistence.spill-directory}, together capped at {@code persistence.spill-max-size}.
+ * Every {@code persistence.replay-interval} the spilled records are written back, oldest first,
+ * until the spill is empty or the database fails again. Spilled records survive a restart;
+ * the logs are synced on every write, so neither a spilled record nor the fact that it has been
+ * written back is lost in a crash.
+ */
+@Component
+public class PersistenceSpill implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistenceSpill.class);
+
+    private final MeasurementPersistenceService persistenceService;
+    private final PersistenceConfig config;
+    private final long maxBytes;
+    private final SpillLog<List<SensorMeasurement>> measurementLog;
+    private final SpillLog<AlarmEvent> alarmLog;
+    private final LongAdder spilledMeasurements = new LongAdder();
+    private final LongAdder spilledAlarms = new LongAdder();
+    private final LongAdder replayedMeasurements = new LongAdder();
+    private final LongAdder replayedAlarms = new LongAdder();
+    private final LongAdder discardedMeasurements = new LongAdder();
+    private final LongAdder discardedAlarms = new LongAdder();
+    private Disposable replayTask;
+
+    public PersistenceSpill(MeasurementPersistenceService persistenceService, PersistenceConfig config) {
+        this.persistenceService = persistenceService;
+        this.config = config;
+        this.maxBytes = config.getSpillMaxSize().toBytes();
+        this.measurementLog = open(config, "db-measurements.spill", new MeasurementBatchCodec());
+        this.alarmLog = open(config, "db-alarms.spill", new AlarmEventCodec());
+    }
+
+    @PostConstruct
+    public void start() {
+        replayTask = Flux.interval(config.getReplayInterval(), config.getReplayInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> replay())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (replayTask != null && !replayTask.isDisposed()) {
+            replayTask.dispose();
+        }
+        close(measurementLog);
+        close(alarmLog);
+    }
+
+    /**
+     * Parks a batch of measurements on disk.
+     *
+     * @return false if the spill is full
+     */
+    public synchronized boolean spillMeasurements(List<SensorMeasurement> batch) {
+        if (!measurementLog.append(batch, maxBytes - alarmLog.getFileSizeBytes())) {
+            return false;
+        }
+        spilledMeasurements.add(batch.size());
+        return true;
+    }
+
+    /**
+     * Parks an alarm on disk.
+     *
+     * @return false if the spill is full
+     */
+    public synchronized boolean spillAlarm(AlarmEvent alarm) {
+        if (!alarmLog.append(alarm, maxBytes - measurementLog.getFileSizeBytes())) {
+            return false;
+        }
+        spilledAlarms.increment();
+        return true;
+    }
+
+    public long getSizeBytes() {
+        return measurementLog.getSizeBytes() + alarmLog.getSizeBytes();
+    }
+
+    public boolean isEmpty() {
+        return measurementLog.isEmpty() && alarmLog.isEmpty();
+    }
+
+    /**
+     * Writes spilled measurements, then spilled alarms, back to the database in spill order.
+     * Stops at the first transient failure; records rejected for any other reason are discarded,
+     * since they would block the spill forever.
+     */
+    Mono<Void> replay() {
+        return drain(measurementLog, persistenceService::saveMeasurements, replayedMeasurements, discardedMeasurements)
+                .then(drain(alarmLog, alarm -> persistenceService.saveAlarm(alarm).thenReturn(1L),
+                        replayedAlarms, discardedAlarms))
+                .onErrorResume(error -> {
+                    log.debug("Database still unavailable, replay postponed: {}", error.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private <T> Mono<Void> drain(SpillLog<T> spillLog, Function<T, Mono<Long>> save,
+                                 LongAdder replayed, LongAdder discarded) {
+        return Mono.defer(() -> {
+                    T record = spillLog.peek();
+                    if (record == null) {
+                        return Mono.just(false);
+                    }
+                    int count = record instanceof List<?> batch ? batch.size() : 1;
+                    return save.apply(record)
+                            .doOnSuccess(rows -> replayed.add(count))
+                            .onErrorResume(error -> !PersistenceRetry.isTransient(error), error -> {
+                                log.error("Discarding {} spilled record(s) rejected by the database: {}", count, error.getMessage());
+                                discarded.add(count);
+                                return Mono.just(0L);
+                            })
+                            .doOnSuccess(rows -> spillLog.remove())
+                            .thenReturn(true);
+                })
+                .repeat()
+                .takeWhile(Boolean::booleanValue)
+                .then();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "measurements", measurementLog, spilledMeasurements, replayedMeasurements, discardedMeasurements);
+        bind(registry, "alarms", alarmLog, spilledAlarms, replayedAlarms, discardedAlarms);
+    }
+
+    private static void bind(MeterRegistry registry, String stream, SpillLog<?> spillLog,
+                             LongAdder spilled, LongAdder replayed, LongAdder discarded) {
+        FunctionCounter.builder("wms.persistence.spilled", spilled, LongAdder::sum)
+                .description("Records written to the persistence spill after the database rejected them")
+                .tag("stream", stream)
+                .register(registry);
+        FunctionCounter.builder("wms.persistence.replayed", replayed, LongAdder::sum)
+                .description("Spilled records written back to the database")
+                .tag("stream", stream)
+                .register(registry);
+        FunctionCounter.builder("wms.persistence.spill.discarded", discarded, LongAdder::sum)
+                .description("Spilled records the database refused permanently")
+                .tag("stream", stream)
+                .register(registry);
+        Gauge.builder("wms.persistence.spill.size", spillLog, SpillLog::getSizeBytes)
+                .description("Bytes waiting in the persistence spill")
+                .baseUnit("bytes")
+                .tag("stream", stream)
+                .register(registry);
+    }
+
+    private static <T> SpillLog<T> open(PersistenceConfig config, String name, SpillLog.Codec<T> codec) {
+        Path file = Path.of(config.getSpillDirectory(), name);
+        try {
+            return new SpillLog<>(file, config.getSpillMaxSize().toBytes(), codec, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open persistence spill file " + file, e);
+        }
+    }
+
+    private static void close(SpillLog<?> spillLog) {
+        try {
+            if (!spillLog.isEmpty()) {
+                log.info("Keeping {} spilled record(s) in {} for replay on restart",
+                        spillLog.getRecordCount(), spillLog.getFile());
+            }
+            spillLog.close();
+        } catch (IOException e) {
+            log.warn("Failed to close spill file: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package mk.dmt.wms.spill;
+
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Spill codec for an alarm: the measurement in the layout of {@link MeasurementBatchCodec},
+ * followed by the threshold, the alarm timestamp (epoch seconds and nanoseconds), the
+ * severity ordinal, the episode state ordinal, the raise time, the peak value and the rule name.
+ * Records spilled before episodes existed end after the severity and decode as raises; records
+ * spilled before windowed rules existed end after the peak and decode as threshold alarms.
+ */
+public class AlarmEventCodec implements SpillLog.Codec<AlarmEvent> {
+
+    private static final AlarmEvent.Severity[] SEVERITIES = AlarmEvent.Severity.values();
+    private static final AlarmEvent.State[] STATES = AlarmEvent.State.values();
+
+    @Override
+    public byte[] encode(AlarmEvent alarm) {
+        SensorMeasurement m = alarm.measurement();
+        byte[] sensorId = MeasurementBatchCodec.toBytes(m.sensorId());
+        byte[] warehouseId = MeasurementBatchCodec.toBytes(m.warehouseId());
+        byte[] rule = MeasurementBatchCodec.toBytes(alarm.rule());
+        int length = MeasurementBatchCodec.stringLength(sensorId) + MeasurementBatchCodec.stringLength(warehouseId)
+                + Byte.BYTES + Double.BYTES + Long.BYTES + Integer.BYTES
+                + Double.BYTES + Long.BYTES + Integer.BYTES + Byte.BYTES
+                + Byte.BYTES + Long.BYTES + Integer.BYTES + Double.BYTES
+                + MeasurementBatchCodec.stringLength(rule);
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        MeasurementBatchCodec.putString(buffer, sensorId);
+        buffer.put((byte) m.sensorType().getCode());
+        buffer.putDouble(m.value());
+        buffer.putLong(m.timestamp().getEpochSecond());
+        buffer.putInt(m.timestamp().getNano());
+        MeasurementBatchCodec.putString(buffer, warehouseId);
+        buffer.putDouble(alarm.threshold());
+        buffer.putLong(alarm.timestamp().getEpochSecond());
+        buffer.putInt(alarm.timestamp().getNano());
+        buffer.put((byte) alarm.severity().ordinal());
+        buffer.put((byte) alarm.state().ordinal());
+        buffer.putLong(alarm.raisedAt().getEpochSecond());
+        buffer.putInt(alarm.raisedAt().getNano());
+        buffer.putDouble(alarm.peakValue());
+        MeasurementBatchCodec.putString(buffer, rule);
+        return buffer.array();
+    }
+
+    @Override
+    public AlarmEvent decode(ByteBuffer buffer) {
+        String sensorId = MeasurementBatchCodec.getString(buffer);
+        SensorType sensorType = SensorType.fromCode(buffer.get());
+        double value = buffer.getDouble();
+        Instant measured = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        String warehouseId = MeasurementBatchCodec.getString(buffer);
+        double threshold = buffer.getDouble();
+        Instant raised = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        AlarmEvent.Severity severity = SEVERITIES[buffer.get()];
+        SensorMeasurement measurement = new SensorMeasurement(sensorId, sensorType, value, measured, warehouseId);
+        if (!buffer.hasRemaining()) {
+            return new AlarmEvent(measurement, threshold, raised, severity);
+        }
+        AlarmEvent.State state = STATES[buffer.get()];
+        Instant episodeRaised = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        double peak = buffer.getDouble();
+        String rule = buffer.hasRemaining() ? MeasurementBatchCodec.getString(buffer) : AlarmEvent.THRESHOLD_RULE;
+        return new AlarmEvent(measurement, threshold, raised, severity, state, episodeRaised, peak, rule);
+    }
+}
@@ -0,0 +1,103 @@
+package mk.dmt.wms.spill;
+
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spill codec for a batch of measurements: a count followed by, per measurement, the sensor id,
+ * sensor type code, value, timestamp (epoch seconds and nanoseconds) and warehouse id.
+ * Strings are stored as a 2-byte length followed by UTF-8 bytes; the length {@code 0xFFFF} marks
+ * null, so a string may have at most {@value #MAX_STRING_BYTES} bytes.
+ */
+public class MeasurementBatchCodec implements SpillLog.Codec<List<SensorMeasurement>> {
+
+    static final int MAX_STRING_BYTES = 0xFFFE;
+    private static final int NULL_STRING = 0xFFFF;
+
+    @Override
+    public byte[] encode(List<SensorMeasurement> batch) {
+        byte[][] sensorIds = new byte[batch.size()][];
+        byte[][] warehouseIds = new byte[batch.size()][];
+        int length = Integer.BYTES;
+        for (int i = 0; i < batch.size(); i++) {
+            SensorMeasurement m = batch.get(i);
+            sensorIds[i] = toBytes(m.sensorId());
+            warehouseIds[i] = toBytes(m.warehouseId());
+            length += stringLength(sensorIds[i]) + stringLength(warehouseIds[i])
+                    + Byte.BYTES + Double.BYTES + Long.BYTES + Integer.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            SensorMeasurement m = batch.get(i);
+            putString(buffer, sensorIds[i]);
+            buffer.put((byte) m.sensorType().getCode());
+            buffer.putDouble(m.value());
+            buffer.putLong(m.timestamp().getEpochSecond());
+            buffer.putInt(m.timestamp().getNano());
+            putString(buffer, warehouseIds[i]);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public List<SensorMeasurement> decode(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<SensorMeasurement> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String sensorId = getString(buffer);
+            SensorType sensorType = SensorType.fromCode(buffer.get());
+            double value = buffer.getDouble();
+            Instant timestamp = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            String warehouseId = getString(buffer);
+            batch.add(new SensorMeasurement(sensorId, sensorType, value, timestamp, warehouseId));
+        }
+        return batch;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a string, or null for null.
+     *
+     * @throws IllegalArgumentException if the string has more than {@value #MAX_STRING_BYTES} bytes
+     */
+    static byte[] toBytes(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long to spill");
+        }
+        return bytes;
+    }
+
+    static int stringLength(byte[] bytes) {
+        return Short.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,294 @@
+package mk.dmt.wms.spill;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only FIFO of records on disk, used to park data that cannot be handed on right now.
+ * Each record is stored as a 4-byte length followed by the encoded bytes. Records are read
+ * back in append order with {@link #peek()} and {@link #remove()}; once everything has been
+ * read the file is truncated. A removed record is marked as read by inverting its length in
+ * place, so records read before a restart are not replayed after it. Delivery is still
+ * at-least-once: a record handed on but not yet removed is replayed. A torn record at the tail
+ * (e.g. after a crash) is discarded. A log opened with {@code sync} forces every append and
+ * removal to disk before returning.
+ * <p>
+ * The size limit applies to the file, read records included. Once half of the limit has been
+ * read, or an append would not fit otherwise, the unread records are copied to a new file that
+ * replaces the old one, so a log that never fully drains stays within its limit.
+ */
+public class SpillLog<T> implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SpillLog.class);
+
+    /**
+     * Converts records to and from their on-disk form.
+     */
+    public interface Codec<T> {
+
+        byte[] encode(T record);
+
+        T decode(ByteBuffer buffer);
+    }
+
+    private final Path file;
+    private final long maxBytes;
+    private final Codec<T> codec;
+    private final boolean sync;
+    private FileChannel channel;
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+
+    private long readPosition;
+    private long writePosition;
+    private long records;
+    private T head;
+    private int headLength;
+
+    public SpillLog(Path file, long maxBytes, Codec<T> codec) throws IOException {
+        this(file, maxBytes, codec, false);
+    }
+
+    public SpillLog(Path file, long maxBytes, Codec<T> codec, boolean sync) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.codec = codec;
+        this.sync = sync;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return false if the record does not fit into the configured size limit, or cannot be encoded
+     */
+    public synchronized boolean append(T record) {
+        return append(record, maxBytes);
+    }
+
+    /**
+     * Appends a record unless the log would grow beyond {@code limit} bytes or the configured
+     * size limit, whichever is lower. Lets several logs share one size budget.
+     *
+     * @return false if the record does not fit, or cannot be encoded
+     */
+    public synchronized boolean append(T record, long limit) {
+        byte[] bytes;
+        try {
+            bytes = codec.encode(record);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot spill record to {}: {}", file, e.getMessage());
+            return false;
+        }
+        long length = Integer.BYTES + (long) bytes.length;
+        long capacity = Math.min(limit, maxBytes);
+        if (writePosition - readPosition + length > capacity) {
+            return false;
+        }
+        if (writePosition + length > capacity) {
+            compact();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.putInt(bytes.length).put(bytes).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                writePosition += channel.write(buffer, writePosition);
+            }
+            sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to spill file " + file, e);
+        }
+        records++;
+        return true;
+    }
+
+    /**
+     * Returns the oldest record without removing it, or null if the log is empty.
+     */
+    public synchronized T peek() {
+        if (head == null && readPosition < writePosition) {
+            try {
+                headLength = readInt(readPosition);
+                ByteBuffer buffer = ByteBuffer.allocate(headLength);
+                read(buffer, readPosition + Integer.BYTES);
+                head = codec.decode(buffer.flip());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read spill file " + file, e);
+            }
+        }
+        return head;
+    }
+
+    /**
+     * Removes the oldest record. Truncates the file once all records have been read.
+     */
+    public synchronized void remove() {
+        if (peek() == null) {
+            return;
+        }
+        long position = readPosition;
+        readPosition += Integer.BYTES + headLength;
+        head = null;
+        records--;
+        if (readPosition == writePosition) {
+            try {
+                channel.truncate(0);
+                sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to truncate spill file " + file, e);
+            }
+            readPosition = 0;
+            writePosition = 0;
+        } else if (readPosition >= maxBytes / 2) {
+            compact();
+        } else {
+            try {
+                lengthBuffer.clear().putInt(~headLength).flip();
+                while (lengthBuffer.hasRemaining()) {
+                    channel.write(lengthBuffer, position + lengthBuffer.position());
+                }
+                sync();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to mark record as read in spill file " + file, e);
+            }
+        }
+    }
+
+    private void sync() throws IOException {
+        if (sync) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Replaces the file with a copy of its unread records. The copy is synced before it is renamed
+     * over the original, so a crash leaves either file intact.
+     */
+    private void compact() {
+        Path copy = file.resolveSibling(file.getFileName() + ".compact");
+        try {
+            try (FileChannel target = FileChannel.open(copy, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = readPosition;
+                while (position < writePosition) {
+                    position += channel.transferTo(position, writePosition - position, target);
+                }
+                target.force(true);
+            }
+            channel.close();
+            Files.move(copy, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact spill file " + file, e);
+        } finally {
+            reopen();
+        }
+        log.debug("Compacted spill file {}: dropped {} bytes already read", file, readPosition);
+        writePosition -= readPosition;
+        readPosition = 0;
+    }
+
+    private void reopen() {
+        if (channel.isOpen()) {
+            return;
+        }
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to reopen spill file " + file, e);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Returns the bytes of the records not read yet.
+     */
+    public synchronized long getSizeBytes() {
+        return writePosition - readPosition;
+    }
+
+    /**
+     * Returns the size of the file, which the size limit applies to.
+     */
+    public synchronized long getFileSizeBytes() {
+        return writePosition;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private void recover() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        while (position + Integer.BYTES <= size) {
+            int length = readInt(position);
+            boolean read = length < 0;
+            if (read) {
+                length = ~length;
+            }
+            if ((read && records > 0) || position + Integer.BYTES + length > size) {
+                break;
+            }
+            position += Integer.BYTES + length;
+            if (read) {
+                readPosition = position;
+            } else {
+                records++;
+            }
+        }
+        if (position < size) {
+            log.warn("Discarding {} bytes of incomplete record at the end of spill file {}", size - position, file);
+            channel.truncate(position);
+        }
+        writePosition = position;
+        if (records == 0 && position > 0) {
+            channel.truncate(0);
+            readPosition = 0;
+            writePosition = 0;
+        }
+        if (records > 0) {
+            log.info("Recovered {} spilled record(s) from {}", records, file);
+        }
+    }
+
+    private int readInt(long position) throws IOException {
+        read(lengthBuffer.clear(), position);
+        return lengthBuffer.getInt(0);
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of spill file " + file);
+            }
+        }
+    }
+}
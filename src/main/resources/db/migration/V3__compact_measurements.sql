@@ -0,0 +1,50 @@
+-- ==========================================
+-- Warehouse Monitoring System Database Schema
+-- Compact measurement rows (V3)
+-- ==========================================
+-- Sensor and warehouse ids move into dictionary tables and are referenced by integer keys,
+-- the sensor type becomes a smallint code (see sensor_types) and the value a double precision.
+-- created_at stays optional; the batch write paths leave it null.
+
+create table if not exists sensor_types (
+    code  smallint primary key,
+    name  text not null unique
+);
+insert into sensor_types (code, name) values (1, 'TEMPERATURE');
+insert into sensor_types (code, name) values (2, 'HUMIDITY');
+
+create table if not exists sensors (
+    id          integer generated by default as identity primary key,
+    sensor_key  text not null unique
+);
+
+create table if not exists warehouses (
+    id             integer generated by default as identity primary key,
+    warehouse_key  text not null unique
+);
+
+insert into sensors (sensor_key)
+select distinct sensor_id from sensor_measurements where sensor_id is not null;
+insert into warehouses (warehouse_key)
+select distinct warehouse_id from sensor_measurements where warehouse_id is not null;
+
+alter table sensor_measurements add column sensor_ref integer;
+alter table sensor_measurements add column warehouse_ref integer;
+alter table sensor_measurements add column sensor_type_code smallint;
+
+update sensor_measurements set
+    sensor_ref = (select s.id from sensors s where s.sensor_key = sensor_measurements.sensor_id),
+    warehouse_ref = (select w.id from warehouses w where w.warehouse_key = sensor_measurements.warehouse_id),
+    sensor_type_code = (select t.code from sensor_types t where t.name = sensor_measurements.sensor_type);
+
+-- A two-valued sensor type index never pays for itself
+drop index if exists idx_sensor_measurements_sensor_id;
+drop index if exists idx_sensor_measurements_sensor_type;
+
+alter table sensor_measurements drop column sensor_id;
+alter table sensor_measurements drop column warehouse_id;
+alter table sensor_measurements drop column sensor_type;
+alter table sensor_measurements rename column sensor_type_code to sensor_type;
+alter table sensor_measurements alter column measurement_value set data type double precision;
+
+create index idx_sensor_measurements_sensor_ref on sensor_measurements(sensor_ref);
@@ -0,0 +1,11 @@
+-- ==========================================
+-- Warehouse Monitoring System Database Schema
+-- History query indexes (V5)
+-- ==========================================
+-- "Latest N of a sensor/warehouse" queries read these indexes in order and stop after N rows.
+-- The sensor index supersedes the single-column one on sensor_ref.
+
+drop index if exists idx_sensor_measurements_sensor_ref;
+
+create index idx_sensor_measurements_sensor_time on sensor_measurements(sensor_ref, updated_at desc);
+create index idx_sensor_measurements_warehouse_time on sensor_measurements(warehouse_ref, updated_at desc);
@@ -0,0 +1,70 @@
+-- ==========================================
+-- Warehouse Monitoring System Database Schema
+-- Measurement rollups (V6)
+-- ==========================================
+-- Per-sensor summaries of 1-minute and 1-hour buckets, accumulated from the ingest stream and
+-- upserted when a bucket closes (see MeasurementRollups). Late measurements are merged into an
+-- existing row, so a bucket may be written more than once. avg = sum_value / sample_count.
+-- flush_id identifies the write that last merged into a row; repeating that write is a no-op.
+
+create table if not exists measurement_rollup_1m (
+    sensor_ref     integer not null,
+    bucket_start   timestamp not null,
+    sensor_type    smallint,
+    warehouse_ref  integer,
+    min_value      double precision not null,
+    max_value      double precision not null,
+    sum_value      double precision not null,
+    sample_count   bigint not null,
+    last_value     double precision not null,
+    last_at        timestamp not null,
+    flush_id       bigint not null default 0,
+    primary key (sensor_ref, bucket_start)
+);
+
+create table if not exists measurement_rollup_1h (
+    sensor_ref     integer not null,
+    bucket_start   timestamp not null,
+    sensor_type    smallint,
+    warehouse_ref  integer,
+    min_value      double precision not null,
+    max_value      double precision not null,
+    sum_value      double precision not null,
+    sample_count   bigint not null,
+    last_value     double precision not null,
+    last_at        timestamp not null,
+    flush_id       bigint not null default 0,
+    primary key (sensor_ref, bucket_start)
+);
+
+create index idx_measurement_rollup_1m_bucket on measurement_rollup_1m(bucket_start);
+create index idx_measurement_rollup_1m_warehouse on measurement_rollup_1m(warehouse_ref, bucket_start);
+create index idx_measurement_rollup_1h_bucket on measurement_rollup_1h(bucket_start);
+create index idx_measurement_rollup_1h_warehouse on measurement_rollup_1h(warehouse_ref, bucket_start);
+
+-- Backfill from the measurements stored so far; the ingest stream merges into these rows
+insert into measurement_rollup_1m (sensor_ref, bucket_start, sensor_type, warehouse_ref,
+                                   min_value, max_value, sum_value, sample_count, last_value, last_at)
+select sensor_ref, bucket_start,
+       max(case when rn = 1 then sensor_type end), max(case when rn = 1 then warehouse_ref end),
+       min(measurement_value), max(measurement_value), sum(measurement_value), count(*),
+       max(case when rn = 1 then measurement_value end), max(updated_at)
+from (select m.sensor_ref, m.sensor_type, m.warehouse_ref, m.measurement_value, m.updated_at,
+             date_trunc('minute', m.updated_at) as bucket_start,
+             row_number() over (partition by m.sensor_ref, date_trunc('minute', m.updated_at)
+                                order by m.updated_at desc, m.id desc) as rn
+      from sensor_measurements m
+      where m.sensor_ref is not null and m.updated_at is not null and m.measurement_value is not null) b
+group by sensor_ref, bucket_start;
+
+insert into measurement_rollup_1h (sensor_ref, bucket_start, sensor_type, warehouse_ref,
+                                   min_value, max_value, sum_value, sample_count, last_value, last_at)
+select sensor_ref, hour_start,
+       max(case when rn = 1 then sensor_type end), max(case when rn = 1 then warehouse_ref end),
+       min(min_value), max(max_value), sum(sum_value), sum(sample_count),
+       max(case when rn = 1 then last_value end), max(last_at)
+from (select r.*, date_trunc('hour', r.bucket_start) as hour_start,
+             row_number() over (partition by r.sensor_ref, date_trunc('hour', r.bucket_start)
+                                order by r.last_at desc) as rn
+      from measurement_rollup_1m r) b
+group by sensor_ref, hour_start;
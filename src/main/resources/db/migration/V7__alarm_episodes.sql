@@ -0,0 +1,16 @@
+-- ==========================================
+-- Warehouse Monitoring System Database Schema
+-- Alarm episodes (V7)
+-- ==========================================
+-- An alarm row now covers one episode, from the measurement that raised it (updated_at) until
+-- the one that cleared it (cleared_at, null while open). Rows written per sample before this
+-- version are closed episodes of their own.
+
+alter table alarm_events add column peak_value double precision;
+alter table alarm_events add column cleared_at timestamp;
+
+update alarm_events set peak_value = measurement_value, cleared_at = updated_at;
+
+-- Escalations and clears find their episode by sensor and raise time
+drop index if exists idx_alarm_events_sensor_id;
+create index idx_alarm_events_sensor_time on alarm_events(sensor_id, updated_at);
@@ -0,0 +1,9 @@
+-- ==========================================
+-- Warehouse Monitoring System Database Schema
+-- Windowed alarm rules (V8)
+-- ==========================================
+-- A sensor can have an open episode per rule: 'threshold' for the bounds of the measured value,
+-- or the name of a windowed rule (moving average, rate of change, time above a level). Episodes
+-- are identified by sensor, rule and raise time.
+
+alter table alarm_events add column alarm_rule varchar(64) not null default 'threshold';
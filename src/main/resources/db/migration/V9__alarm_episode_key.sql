@@ -0,0 +1,29 @@
+-- ==========================================
+-- Warehouse Monitoring System Database Schema
+-- Alarm episode key (V9)
+-- ==========================================
+-- Transitions of an episode are merged into its row by sensor, rule and raise time. Rows that
+-- concurrent writes duplicated before this version are folded into the newest one, which
+-- keeps the end of the episode if any of them recorded it.
+
+update alarm_events a
+set cleared_at = (select max(b.cleared_at) from alarm_events b
+                  where b.sensor_id = a.sensor_id
+                    and b.alarm_rule = a.alarm_rule
+                    and b.updated_at = a.updated_at)
+where a.cleared_at is null
+  and exists (select 1 from alarm_events b
+              where b.sensor_id = a.sensor_id
+                and b.alarm_rule = a.alarm_rule
+                and b.updated_at = a.updated_at
+                and b.cleared_at is not null);
+
+delete from alarm_events a
+where exists (select 1 from alarm_events b
+              where b.sensor_id = a.sensor_id
+                and b.alarm_rule = a.alarm_rule
+                and b.updated_at = a.updated_at
+                and b.id > a.id);
+
+-- On PostgreSQL the partition key updated_at is part of the key, as required
+create unique index uq_alarm_events_episode on alarm_events(sensor_id, alarm_rule, updated_at);
@@ -0,0 +1,76 @@
+package mk.dmt.wms.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mk.dmt.wms.config.SseConfig;
+import mk.dmt.wms.config.SseConfig.SlowConsumerPolicy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for per-connection SSE buffering.
+ */
+class SseConnectionManagerTest {
+
+    private SimpleMeterRegistry registry;
+    private SseConfig config;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        config = new SseConfig();
+        config.setBufferSize(4);
+    }
+
+    @Test
+    @DisplayName("Should drop the oldest events of a slow client and report its lag")
+    void shouldDropOldestEventsOfSlowClient() {
+        config.setSlowConsumerPolicy(SlowConsumerPolicy.DROP);
+        SseConnectionManager manager = new SseConnectionManager(config, registry);
+
+        StepVerifier.create(manager.attach("measurements", Flux.range(1, 10)), 0)
+                .then(() -> {
+                    assertEquals(1, manager.getConnectionCount());
+                    assertEquals(6, manager.getDroppedCount());
+                    Gauge lag = registry.get("wms.sse.connection.lag").tag("stream", "measurements").gauge();
+                    assertEquals(4, lag.value());
+                })
+                .thenRequest(10)
+                .expectNext(7, 8, 9, 10)
+                .verifyComplete();
+
+        assertEquals(0, manager.getConnectionCount());
+        assertNull(registry.find("wms.sse.connection.lag").gauge());
+    }
+
+    @Test
+    @DisplayName("Should disconnect a slow client without affecting the source")
+    void shouldDisconnectSlowClient() {
+        config.setSlowConsumerPolicy(SlowConsumerPolicy.DISCONNECT);
+        SseConnectionManager manager = new SseConnectionManager(config, registry);
+
+        StepVerifier.create(manager.attach("measurements", Flux.range(1, 10)), 0)
+                .expectSubscription()
+                .verifyComplete();
+
+        assertEquals(1, registry.get("wms.sse.disconnects").counter().count());
+        assertEquals(0, manager.getConnectionCount());
+    }
+
+    @Test
+    @DisplayName("Should deliver everything to a client that keeps up")
+    void shouldDeliverEverythingToFastClient() {
+        SseConnectionManager manager = new SseConnectionManager(config, registry);
+
+        StepVerifier.create(manager.attach("alarms", Flux.range(1, 100)))
+                .expectNextCount(100)
+                .verifyComplete();
+
+        assertEquals(0, manager.getDroppedCount());
+    }
+}
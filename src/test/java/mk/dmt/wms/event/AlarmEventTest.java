@@ -34,7 +34,10 @@ class AlarmEventTest {
         "35.0, 45.0, CRITICAL",      // ~28.5% over
         "50.0, 52.0, WARNING",       // 4% over
         "50.0, 56.0, HIGH",          // 12% over
-        "50.0, 65.0, CRITICAL"       // 30% over
+        "50.0, 65.0, CRITICAL",      // 30% over
+        "20.0, 19.0, WARNING",       // 5% under a minimum
+        "20.0, 17.0, HIGH",          // 15% under
+        "2.0, -1.0, CRITICAL"        // 150% under
     })
     void shouldDetermineCorrectSeverity(double threshold, double value, String expectedSeverity) {
         SensorMeasurement measurement = SensorMeasurement.of("t1", SensorType.TEMPERATURE, value);
@@ -43,6 +46,20 @@ class AlarmEventTest {
         assertEquals(expectedSeverity, alarm.getSeverity());
     }
 
+    @ParameterizedTest
+    @DisplayName("Should measure severity at bounds near zero against the scale")
+    @CsvSource({
+        "0.0, 0.5, 10.0, WARNING",   // 5% of the scale
+        "0.0, -1.5, 10.0, HIGH",     // 15% of the scale below a minimum of 0
+        "0.0, 3.0, 10.0, CRITICAL",  // 30% of the scale
+        "0.0, 3.0, 0.0, WARNING",    // nothing to measure against
+        "35.0, 39.0, 10.0, HIGH"     // bounds beyond the scale are measured against themselves
+    })
+    void shouldDetermineSeverityNearZero(double threshold, double value, double scale, String expectedSeverity) {
+        assertEquals(AlarmEvent.Severity.valueOf(expectedSeverity),
+                AlarmEvent.calculateSeverity(value, threshold, scale));
+    }
+
     @Test
     @DisplayName("Should format alarm message correctly")
     void shouldFormatAlarmMessageCorrectly() {
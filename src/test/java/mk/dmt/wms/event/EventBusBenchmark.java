@@ -0,0 +1,126 @@
+package mk.dmt.wms.event;
+
+import ch.qos.logback.classic.Level;
+import mk.dmt.wms.config.EventBusConfig;
+import mk.dmt.wms.config.EventBusConfig.OverflowPolicy;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the single-sink event bus with the partitioned ring-buffer bus.
+ * A parallel subscriber burns {@code consumerWork} JMH CPU tokens per measurement to stand in for
+ * monitoring and persistence. {@code publish} measures sustained throughput with four producers
+ * (BLOCK policy, so nothing is dropped and producers are throttled to what consumers can take);
+ * {@code roundTrip} samples the publish-to-delivery latency distribution of a single producer.
+ * Run with: ./mvnw test-compile exec:java -Dexec.mainClass=mk.dmt.wms.event.EventBusBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+
+    private static final int SENSORS = 1024;
+
+    @Param({"SINK", "PARTITIONED"})
+    public EventBusConfig.Type busType;
+
+    @Param({"200"})
+    public int consumerWork;
+
+    private MeasurementEventBus eventBus;
+    private Disposable subscription;
+    private SensorMeasurement[] measurements;
+    private final AtomicLong delivered = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        // Outside Spring, logback defaults to DEBUG; measure the production (INFO) code path
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        EventBusConfig config = new EventBusConfig();
+        config.setType(busType);
+        config.setOverflowPolicy(OverflowPolicy.BLOCK);
+        config.setBlockTimeout(Duration.ofSeconds(10));
+        config.setPartitions(4);
+        if (busType == EventBusConfig.Type.PARTITIONED) {
+            PartitionedMeasurementEventBus partitioned = new PartitionedMeasurementEventBus(config);
+            partitioned.start();
+            eventBus = partitioned;
+        } else {
+            eventBus = new SinkMeasurementEventBus(config);
+        }
+
+        measurements = new SensorMeasurement[SENSORS];
+        for (int i = 0; i < SENSORS; i++) {
+            measurements[i] = SensorMeasurement.of("sensor-" + i, SensorType.TEMPERATURE, 20.0 + i % 10);
+        }
+
+        int work = consumerWork;
+        subscription = eventBus.subscribeParallel().subscribe(m -> {
+            Blackhole.consumeCPU(work);
+            delivered.incrementAndGet();
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.dispose();
+        eventBus.complete();
+        if (eventBus instanceof PartitionedMeasurementEventBus partitioned) {
+            partitioned.stop();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(4)
+    public void publish() {
+        eventBus.publish(measurements[ThreadLocalRandom.current().nextInt(SENSORS)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @Threads(1)
+    public long roundTrip() {
+        long target = delivered.get() + 1;
+        eventBus.publish(measurements[ThreadLocalRandom.current().nextInt(SENSORS)]);
+        long seen;
+        while ((seen = delivered.get()) < target) {
+            Thread.onSpinWait();
+        }
+        return seen;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventBusBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,165 @@
+package mk.dmt.wms.event;
+
+import mk.dmt.wms.config.EventBusConfig;
+import mk.dmt.wms.config.EventBusConfig.OverflowPolicy;
+import mk.dmt.wms.event.MeasurementEventBus.DropReason;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for PartitionedMeasurementEventBus.
+ */
+class PartitionedMeasurementEventBusTest {
+
+    private PartitionedMeasurementEventBus eventBus;
+
+    @AfterEach
+    void tearDown() {
+        if (eventBus != null) {
+            eventBus.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should deliver published measurements to subscribers")
+    void shouldDeliverPublishedMeasurements() {
+        eventBus = start(config(4, 64));
+        SensorMeasurement m1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+        SensorMeasurement m2 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 26.0);
+
+        StepVerifier.create(eventBus.subscribe().take(2))
+                .then(() -> eventBus.publishAll(List.of(m1, m2)))
+                .expectNext(m1, m2)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Should keep per-sensor order with concurrent producers")
+    void shouldKeepPerSensorOrderWithConcurrentProducers() throws InterruptedException {
+        EventBusConfig config = config(4, 1024);
+        config.setOverflowPolicy(OverflowPolicy.BLOCK);
+        config.setBlockTimeout(Duration.ofSeconds(5));
+        eventBus = start(config);
+        int producers = 4;
+        int sensorsPerProducer = 8;
+        int perSensor = 2000;
+        int total = producers * sensorsPerProducer * perSensor;
+
+        Map<String, Double> lastValue = new ConcurrentHashMap<>();
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch received = new CountDownLatch(total);
+        Disposable subscription = eventBus.subscribeParallel().subscribe(m -> {
+            Double previous = lastValue.put(m.sensorId(), m.value());
+            if (previous != null && previous >= m.value()) {
+                outOfOrder.incrementAndGet();
+            }
+            received.countDown();
+        });
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < perSensor; i++) {
+                    for (int s = 0; s < sensorsPerProducer; s++) {
+                        eventBus.publish(SensorMeasurement.of("p" + producer + "-s" + s, SensorType.TEMPERATURE, i));
+                    }
+                }
+            }).start();
+        }
+
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        subscription.dispose();
+        assertEquals(0, outOfOrder.get());
+        assertEquals(producers * sensorsPerProducer, lastValue.size());
+        assertEquals(0, eventBus.getDroppedCount(DropReason.BLOCK_TIMEOUT));
+    }
+
+    @Test
+    @DisplayName("Should deliver each sensor on a single rail")
+    void shouldDeliverEachSensorOnSingleRail() throws InterruptedException {
+        // Rings large enough that nothing is dropped, however slowly the drain threads get scheduled
+        eventBus = start(config(4, 512));
+        Map<String, String> threadBySensor = new ConcurrentHashMap<>();
+        AtomicInteger mismatches = new AtomicInteger();
+        CountDownLatch received = new CountDownLatch(400);
+        Disposable subscription = eventBus.subscribeParallel().subscribe(m -> {
+            String thread = Thread.currentThread().getName();
+            if (!thread.equals(threadBySensor.computeIfAbsent(m.sensorId(), id -> thread))) {
+                mismatches.incrementAndGet();
+            }
+            received.countDown();
+        });
+
+        for (int i = 0; i < 400; i++) {
+            eventBus.publish(SensorMeasurement.of("s" + (i % 20), SensorType.HUMIDITY, i));
+        }
+
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        subscription.dispose();
+        assertEquals(0, mismatches.get());
+        assertEquals(4, eventBus.subscribeParallel().parallelism());
+    }
+
+    @Test
+    @DisplayName("Should drop and count measurements when a ring is full")
+    void shouldDropWhenRingIsFull() {
+        // Not started, so nothing drains the ring
+        eventBus = new PartitionedMeasurementEventBus(config(1, 4));
+
+        for (int i = 0; i < 6; i++) {
+            eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, i));
+        }
+
+        assertEquals(2, eventBus.getDroppedCount(DropReason.OVERFLOW));
+    }
+
+    @Test
+    @DisplayName("Should drain pending measurements before completing")
+    void shouldDrainBeforeCompleting() {
+        eventBus = new PartitionedMeasurementEventBus(config(2, 64));
+        List<SensorMeasurement> measurements = List.of(
+                SensorMeasurement.of("t1", SensorType.TEMPERATURE, 1.0),
+                SensorMeasurement.of("t2", SensorType.TEMPERATURE, 2.0),
+                SensorMeasurement.of("t3", SensorType.TEMPERATURE, 3.0));
+
+        StepVerifier.create(eventBus.subscribe())
+                .then(() -> {
+                    eventBus.publishAll(measurements);
+                    eventBus.complete();
+                    eventBus.start();
+                })
+                .expectNextCount(3)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private static PartitionedMeasurementEventBus start(EventBusConfig config) {
+        PartitionedMeasurementEventBus bus = new PartitionedMeasurementEventBus(config);
+        bus.start();
+        return bus;
+    }
+
+    private static EventBusConfig config(int partitions, int ringSize) {
+        EventBusConfig config = new EventBusConfig();
+        config.setType(EventBusConfig.Type.PARTITIONED);
+        config.setPartitions(partitions);
+        config.setRingSize(ringSize);
+        return config;
+    }
+}
@@ -0,0 +1,240 @@
+package mk.dmt.wms.event;
+
+import mk.dmt.wms.config.EventBusConfig;
+import mk.dmt.wms.config.EventBusConfig.OverflowPolicy;
+import mk.dmt.wms.event.MeasurementEventBus.DropReason;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SinkMeasurementEventBus using StepVerifier.
+ */
+class SinkMeasurementEventBusTest {
+
+    private SinkMeasurementEventBus eventBus;
+
+    @BeforeEach
+    void setUp() {
+        eventBus = new SinkMeasurementEventBus();
+    }
+
+    @Test
+    @DisplayName("Should deliver measurement to subscriber")
+    void shouldDeliverMeasurementToSubscriber() {
+        SensorMeasurement measurement = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+
+        StepVerifier.create(eventBus.subscribe().take(1))
+                .then(() -> eventBus.publish(measurement))
+                .expectNext(measurement)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should deliver parallel subscribers a single rail in publish order")
+    void shouldDeliverParallelSubscribersSingleRail() {
+        SensorMeasurement m1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+        SensorMeasurement m2 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 26.0);
+        SensorMeasurement m3 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 27.0);
+
+        assertEquals(1, eventBus.subscribeParallel().parallelism());
+        StepVerifier.create(eventBus.subscribeParallel().sequential().take(3))
+                .then(() -> eventBus.publishAll(List.of(m1, m2, m3)))
+                .expectNext(m1, m2, m3)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should deliver multiple measurements in order")
+    void shouldDeliverMultipleMeasurementsInOrder() {
+        SensorMeasurement m1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+        SensorMeasurement m2 = SensorMeasurement.of("h1", SensorType.HUMIDITY, 45.0);
+        SensorMeasurement m3 = SensorMeasurement.of("t2", SensorType.TEMPERATURE, 30.0);
+
+        StepVerifier.create(eventBus.subscribe().take(3))
+                .then(() -> {
+                    eventBus.publish(m1);
+                    eventBus.publish(m2);
+                    eventBus.publish(m3);
+                })
+                .expectNext(m1)
+                .expectNext(m2)
+                .expectNext(m3)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should deliver a published batch as individual measurements in order")
+    void shouldDeliverPublishedBatchInOrder() {
+        SensorMeasurement m1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+        SensorMeasurement m2 = SensorMeasurement.of("t2", SensorType.TEMPERATURE, 26.0);
+        SensorMeasurement m3 = SensorMeasurement.of("h1", SensorType.HUMIDITY, 45.0);
+
+        StepVerifier.create(eventBus.subscribe().take(3))
+                .then(() -> eventBus.publishAll(List.of(m1, m2, m3)))
+                .expectNext(m1, m2, m3)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should deliver batches unchanged to batch subscribers")
+    void shouldDeliverBatchesToBatchSubscribers() {
+        List<SensorMeasurement> batch = List.of(
+                SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0),
+                SensorMeasurement.of("t2", SensorType.TEMPERATURE, 26.0));
+
+        StepVerifier.create(eventBus.subscribeBatches().take(1))
+                .then(() -> eventBus.publishAll(batch))
+                .expectNext(batch)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should complete when complete is called")
+    void shouldCompleteWhenCompleteIsCalled() {
+        StepVerifier.create(eventBus.subscribe())
+                .then(() -> eventBus.complete())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not lose measurements published concurrently from several threads")
+    void shouldNotLoseConcurrentlyPublishedMeasurements() throws InterruptedException {
+        EventBusConfig config = new EventBusConfig();
+        config.setOverflowPolicy(OverflowPolicy.BLOCK);
+        config.setBlockTimeout(Duration.ofSeconds(5));
+        SinkMeasurementEventBus bus = new SinkMeasurementEventBus(config);
+        int producers = 4;
+        int perProducer = 5000;
+        AtomicInteger received = new AtomicInteger();
+        bus.subscribe().subscribe(m -> received.incrementAndGet());
+
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            String sensorId = "t" + p;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    bus.publish(SensorMeasurement.of(sensorId, SensorType.TEMPERATURE, i));
+                }
+                done.countDown();
+            }).start();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(producers * perProducer, received.get());
+        for (DropReason reason : DropReason.values()) {
+            assertEquals(0, bus.getDroppedCount(reason), reason.name());
+        }
+    }
+
+    @Test
+    @DisplayName("Should drop and count the newest batches when the buffer is full")
+    void shouldDropNewestWhenBufferIsFull() {
+        // The sink rounds small buffers up to 8 batches
+        SinkMeasurementEventBus bus = new SinkMeasurementEventBus(config(OverflowPolicy.DROP_NEWEST, 8));
+        List<SensorMeasurement> measurements = measurements(11);
+
+        StepVerifier.create(bus.subscribeBatches(), 0)
+                .then(() -> measurements.forEach(bus::publish))
+                .then(() -> assertEquals(3, bus.getDroppedCount(DropReason.OVERFLOW)))
+                .thenRequest(11)
+                .expectNextSequence(measurements.subList(0, 8).stream().map(List::of).toList())
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should evict and count the oldest batches when the buffer is full")
+    void shouldDropOldestWhenBufferIsFull() {
+        SinkMeasurementEventBus bus = new SinkMeasurementEventBus(config(OverflowPolicy.DROP_OLDEST, 2));
+        List<SensorMeasurement> measurements = measurements(5);
+
+        StepVerifier.create(bus.subscribeBatches(), 0)
+                .then(() -> measurements.forEach(bus::publish))
+                .then(() -> assertEquals(3, bus.getDroppedCount(DropReason.DROPPED_OLDEST)))
+                .thenRequest(5)
+                .expectNext(List.of(measurements.get(3)), List.of(measurements.get(4)))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should drop after the block timeout when the buffer stays full")
+    void shouldDropAfterBlockTimeout() {
+        EventBusConfig config = config(OverflowPolicy.BLOCK, 1);
+        config.setBlockTimeout(Duration.ofMillis(20));
+        SinkMeasurementEventBus bus = new SinkMeasurementEventBus(config);
+        List<SensorMeasurement> measurements = measurements(2);
+
+        StepVerifier.create(bus.subscribeBatches(), 0)
+                .then(() -> measurements.forEach(bus::publish))
+                .then(() -> assertEquals(1, bus.getDroppedCount(DropReason.BLOCK_TIMEOUT)))
+                .thenRequest(2)
+                .expectNext(List.of(measurements.get(0)))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should spill overflowing batches to disk and replay them in order")
+    void shouldSpillAndReplayInOrder(@TempDir Path spillDirectory) {
+        EventBusConfig config = config(OverflowPolicy.SPILL, 1);
+        config.setSpillDirectory(spillDirectory.toString());
+        SinkMeasurementEventBus bus = new SinkMeasurementEventBus(config);
+        List<SensorMeasurement> measurements = measurements(4);
+
+        try {
+            StepVerifier.create(bus.subscribeBatches(), 0)
+                    .then(() -> measurements.forEach(bus::publish))
+                    .then(() -> assertEquals(3, bus.getSpilledCount()))
+                    .thenRequest(10)
+                    .expectNext(List.of(measurements.get(0)))
+                    .then(bus::drainSpill)
+                    .expectNext(List.of(measurements.get(1)), List.of(measurements.get(2)), List.of(measurements.get(3)))
+                    .thenCancel()
+                    .verify();
+            assertEquals(0, bus.getDroppedCount(DropReason.SPILL_FULL));
+        } finally {
+            bus.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should count batches dropped while nobody is subscribed")
+    void shouldCountDropsWithoutSubscribers() {
+        SinkMeasurementEventBus bus = new SinkMeasurementEventBus(config(OverflowPolicy.DROP_NEWEST, 1));
+
+        measurements(3).forEach(bus::publish);
+
+        assertEquals(2, bus.getDroppedCount(DropReason.NO_SUBSCRIBERS));
+    }
+
+    private static EventBusConfig config(OverflowPolicy policy, int bufferSize) {
+        EventBusConfig config = new EventBusConfig();
+        config.setOverflowPolicy(policy);
+        config.setBufferSize(bufferSize);
+        return config;
+    }
+
+    private static List<SensorMeasurement> measurements(int count) {
+        List<SensorMeasurement> measurements = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            measurements.add(SensorMeasurement.of("t" + i, SensorType.TEMPERATURE, 20.0 + i));
+        }
+        return measurements;
+    }
+}
@@ -0,0 +1,189 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.config.AlarmConfig;
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for AlarmEpisodeTracker.
+ */
+class AlarmEpisodeTrackerTest {
+
+    private static final Instant START = Instant.parse("2026-03-01T10:00:00.123456789Z");
+
+    private AlarmConfig config;
+    private ThresholdRuleEngine thresholds;
+    private AlarmEpisodeTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        config = new AlarmConfig();
+        config.setClearAfter(Duration.ofSeconds(10));
+        config.setTemperatureHysteresis(1.0);
+        thresholds = new ThresholdRuleEngine(new MonitoringConfig());
+        tracker = new AlarmEpisodeTracker(config, thresholds);
+    }
+
+    @Test
+    @DisplayName("Should raise one episode for a sensor that stays across its threshold")
+    void shouldRaiseOneEpisode() {
+        AlarmEvent raised = evaluate(0, 36.0, 35.0);
+
+        assertEquals(AlarmEvent.State.RAISED, raised.state());
+        assertEquals(AlarmEvent.Severity.WARNING, raised.severity());
+        assertEquals(Instant.parse("2026-03-01T10:00:00.123456Z"), raised.raisedAt());
+        for (int second = 1; second < 3600; second++) {
+            assertNull(evaluate(second, 36.0 + (second % 2) * 0.5, 35.0));
+        }
+        assertEquals(1, tracker.getOpenEpisodeCount());
+    }
+
+    @Test
+    @DisplayName("Should escalate an open episode when its severity rises, and track the peak")
+    void shouldEscalate() {
+        evaluate(0, 36.0, 35.0);
+
+        AlarmEvent escalated = evaluate(1, 45.0, 35.0);
+        assertEquals(AlarmEvent.State.ESCALATED, escalated.state());
+        assertEquals(AlarmEvent.Severity.CRITICAL, escalated.severity());
+        assertEquals(45.0, escalated.peakValue());
+        assertNull(evaluate(2, 39.0, 35.0), "a lower severity does not de-escalate");
+    }
+
+    @Test
+    @DisplayName("Should clear only after the value stays inside the hysteresis band for clear-after")
+    void shouldClearWithHysteresis() {
+        AlarmEvent raised = evaluate(0, 37.0, 35.0);
+
+        // Inside the threshold but not by the hysteresis: still open
+        assertNull(evaluate(1, 34.5, Double.NaN));
+        assertNull(evaluate(2, 33.0, Double.NaN));
+        // Back up before clear-after elapsed restarts the clear timer
+        assertNull(evaluate(5, 34.2, Double.NaN));
+        assertNull(evaluate(6, 33.0, Double.NaN));
+        assertNull(evaluate(15, 33.0, Double.NaN));
+
+        AlarmEvent cleared = evaluate(16, 32.0, Double.NaN);
+        assertEquals(AlarmEvent.State.CLEARED, cleared.state());
+        assertEquals(raised.raisedAt(), cleared.raisedAt());
+        assertEquals(37.0, cleared.peakValue());
+        assertEquals(0, tracker.getOpenEpisodeCount());
+
+        assertEquals(AlarmEvent.State.RAISED, evaluate(17, 36.0, 35.0).state());
+    }
+
+    @Test
+    @DisplayName("Should clear an episode below a minimum once the value is above it by the hysteresis")
+    void shouldClearLowerBoundEpisode() {
+        config.setClearAfter(Duration.ZERO);
+        setRules(null, sensorRule(2.0, null));
+
+        assertEquals(AlarmEvent.State.RAISED, evaluate(0, 1.0, 2.0).state());
+        assertNull(evaluate(1, 2.5, Double.NaN));
+        assertEquals(AlarmEvent.State.CLEARED, evaluate(2, 3.0, Double.NaN).state());
+    }
+
+    @Test
+    @DisplayName("Should grade a violation of a zero bound by the severity scale of the type")
+    void shouldGradeZeroBoundBySeverityScale() {
+        config.setTemperatureSeverityScale(10.0);
+        setRules(null, sensorRule(0.0, null));
+
+        assertEquals(AlarmEvent.Severity.WARNING, evaluate(0, -0.5, 0.0).severity());
+        AlarmEvent escalated = evaluate(1, -1.5, 0.0);
+        assertEquals(AlarmEvent.Severity.HIGH, escalated.severity());
+        assertEquals(0.0, escalated.threshold());
+    }
+
+    @Test
+    @DisplayName("Should clear an episode and raise one at the other bound when the value swings across both")
+    void shouldRaiseAtOtherBoundOnSwing() {
+        config.setRaiseAfter(Duration.ofSeconds(5));
+        setRules(null, sensorRule(2.0, 8.0));
+        assertNull(evaluate(0, 9.0, 8.0));
+        AlarmEvent upper = evaluate(5, 9.0, 8.0);
+
+        List<AlarmEvent> swing = evaluateAll(6, 1.0, 2.0);
+
+        assertEquals(2, swing.size());
+        assertEquals(AlarmEvent.State.CLEARED, swing.get(0).state());
+        assertEquals(8.0, swing.get(0).threshold());
+        assertEquals(upper.raisedAt(), swing.get(0).raisedAt());
+        assertEquals(AlarmEvent.State.RAISED, swing.get(1).state());
+        assertEquals(2.0, swing.get(1).threshold());
+        assertEquals(START.plusSeconds(6).truncatedTo(ChronoUnit.MICROS), swing.get(1).raisedAt());
+        assertEquals(1, tracker.getOpenEpisodeCount());
+    }
+
+    @Test
+    @DisplayName("Should judge an open episode by the thresholds in effect after a reload")
+    void shouldApplyReloadedThresholdsToOpenEpisode() {
+        assertEquals(AlarmEvent.Severity.WARNING, evaluate(0, 36.0, 35.0).severity());
+
+        // Lowered: the same value is now further past the bound
+        setRules(30.0);
+        AlarmEvent escalated = evaluate(1, 36.0, 30.0);
+        assertEquals(AlarmEvent.State.ESCALATED, escalated.state());
+        assertEquals(AlarmEvent.Severity.HIGH, escalated.severity());
+        assertEquals(30.0, escalated.threshold());
+
+        // Raised above the value by more than the hysteresis: clears after clear-after
+        setRules(40.0);
+        assertNull(evaluate(2, 36.0, Double.NaN));
+        assertEquals(AlarmEvent.State.CLEARED, evaluate(12, 36.0, Double.NaN).state());
+        assertEquals(0, tracker.getOpenEpisodeCount());
+    }
+
+    @Test
+    @DisplayName("Should raise only after the threshold has been crossed for raise-after")
+    void shouldDebounceRaise() {
+        config.setRaiseAfter(Duration.ofSeconds(5));
+
+        assertNull(evaluate(0, 36.0, 35.0));
+        assertNull(evaluate(3, 36.0, 35.0));
+        // A sample within bounds resets the pending raise
+        assertNull(evaluate(4, 30.0, Double.NaN));
+        assertNull(evaluate(5, 36.0, 35.0));
+        assertNull(evaluate(9, 36.0, 35.0));
+
+        AlarmEvent raised = evaluate(10, 36.0, 35.0);
+        assertEquals(AlarmEvent.State.RAISED, raised.state());
+        assertEquals(START.plusSeconds(10), raised.measurement().timestamp());
+    }
+
+    private AlarmEvent evaluate(int second, double value, double violatedBound) {
+        List<AlarmEvent> transitions = evaluateAll(second, value, violatedBound);
+        assertTrue(transitions.size() <= 1, "at most one transition");
+        return transitions.isEmpty() ? null : transitions.get(0);
+    }
+
+    private List<AlarmEvent> evaluateAll(int second, double value, double violatedBound) {
+        SensorMeasurement measurement = new SensorMeasurement("t1", SensorType.TEMPERATURE, value,
+                START.plusSeconds(second), "warehouse-1");
+        return tracker.evaluate(measurement, violatedBound);
+    }
+
+    private void setRules(Double temperatureThreshold, MonitoringConfig.Rule... rules) {
+        thresholds.update(new ThresholdSettings(temperatureThreshold, null, List.of(rules)), "test");
+    }
+
+    private static MonitoringConfig.Rule sensorRule(Double min, Double max) {
+        MonitoringConfig.Rule rule = new MonitoringConfig.Rule();
+        rule.setSensorId("t1");
+        rule.setMin(min);
+        rule.setMax(max);
+        return rule;
+    }
+}
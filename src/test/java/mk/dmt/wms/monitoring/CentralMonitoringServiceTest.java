@@ -1,15 +1,40 @@
 package mk.dmt.wms.monitoring;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mk.dmt.wms.config.AlarmConfig;
+import mk.dmt.wms.config.IngestLogConfig;
 import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.event.AlarmEventBus;
 import mk.dmt.wms.event.MeasurementEventBus;
+import mk.dmt.wms.event.SinkMeasurementEventBus;
+import mk.dmt.wms.model.AlarmEventEntity;
 import mk.dmt.wms.model.SensorMeasurement;
 import mk.dmt.wms.model.SensorType;
 import mk.dmt.wms.service.MeasurementPersistenceService;
+import mk.dmt.wms.service.PersistenceSpill;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,17 +46,33 @@ class CentralMonitoringServiceTest {
 
     private CentralMonitoringService monitoringService;
     private MeasurementEventBus eventBus;
+    private AlarmEventBus alarmEventBus;
     private MonitoringConfig config;
     private MeasurementPersistenceService persistenceService;
+    private PersistenceConfig persistenceConfig;
+    private PersistenceSpill spill;
 
     @BeforeEach
     void setUp() {
-        eventBus = new MeasurementEventBus();
+        eventBus = new SinkMeasurementEventBus();
+        alarmEventBus = new AlarmEventBus();
         config = new MonitoringConfig();
         config.setTemperatureThreshold(35.0);
         config.setHumidityThreshold(50.0);
         persistenceService = mock(MeasurementPersistenceService.class);
-        monitoringService = new CentralMonitoringService(eventBus, config, persistenceService);
+        spill = mock(PersistenceSpill.class);
+        persistenceConfig = new PersistenceConfig();
+        persistenceConfig.setRetryMinBackoff(Duration.ofMillis(1));
+        monitoringService = createService();
+    }
+
+    private CentralMonitoringService createService() {
+        AlarmConfig alarmConfig = new AlarmConfig();
+        ThresholdRuleEngine thresholds = new ThresholdRuleEngine(config);
+        AlarmEpisodeTracker episodes = new AlarmEpisodeTracker(alarmConfig, thresholds);
+        return new CentralMonitoringService(eventBus, alarmEventBus, config, thresholds,
+                episodes, new WindowRuleEvaluator(config, alarmConfig, episodes), persistenceService,
+                new IngestStatistics(new IngestLogConfig()), persistenceConfig, spill);
     }
 
     @Test
@@ -103,4 +144,265 @@ class CentralMonitoringServiceTest {
         assertFalse(monitoringService.exceedsThreshold(belowThreshold));
         assertTrue(monitoringService.exceedsThreshold(aboveThreshold));
     }
+
+    @Test
+    @DisplayName("Should publish the persisted alarm to the alarm bus")
+    void shouldPublishPersistedAlarmToAlarmBus() {
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.just(new AlarmEventEntity()));
+        monitoringService.startMonitoring();
+        SensorMeasurement normal = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 30.0);
+        SensorMeasurement hot = SensorMeasurement.of("t2", SensorType.TEMPERATURE, 42.0);
+
+        try {
+            StepVerifier.create(alarmEventBus.subscribe().take(1))
+                    .then(() -> {
+                        eventBus.publish(normal);
+                        eventBus.publish(hot);
+                    })
+                    .assertNext(alarm -> {
+                        assertEquals(hot, alarm.measurement());
+                        assertEquals(35.0, alarm.threshold());
+                        verify(persistenceService).saveAlarm(alarm);
+                    })
+                    .verifyComplete();
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should publish alarms once stored or spilled, but not alarms the database rejected")
+    void shouldPublishStoredOrSpilledAlarms() {
+        when(persistenceService.saveAlarm(any())).thenAnswer(invocation -> {
+            AlarmEvent alarm = invocation.getArgument(0);
+            return switch (alarm.measurement().sensorId()) {
+                case "t1" -> Mono.error(new DataIntegrityViolationException("rejected"));
+                case "t2" -> Mono.error(new TransientDataAccessResourceException("database down"));
+                default -> Mono.just(new AlarmEventEntity());
+            };
+        });
+        when(spill.spillAlarm(any())).thenReturn(true);
+        monitoringService.startMonitoring();
+
+        try {
+            StepVerifier.create(alarmEventBus.subscribe().map(alarm -> alarm.measurement().sensorId()).take(2))
+                    .then(() -> {
+                        eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 42.0));
+                        eventBus.publish(SensorMeasurement.of("t2", SensorType.TEMPERATURE, 43.0));
+                        eventBus.publish(SensorMeasurement.of("t3", SensorType.TEMPERATURE, 44.0));
+                    })
+                    .recordWith(ArrayList::new)
+                    .expectNextCount(2)
+                    .consumeRecordedWith(sensorIds -> assertEquals(Set.of("t2", "t3"), Set.copyOf(sensorIds)))
+                    .verifyComplete();
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not replay earlier alarms to a new alarm bus subscriber")
+    void shouldNotReplayAlarmsToNewSubscriber() {
+        alarmEventBus.publish(AlarmEvent.of(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 42.0), 35.0));
+        AlarmEvent live = AlarmEvent.of(SensorMeasurement.of("t2", SensorType.TEMPERATURE, 43.0), 35.0);
+
+        StepVerifier.create(alarmEventBus.subscribe().take(1))
+                .then(() -> alarmEventBus.publish(live))
+                .expectNext(live)
+                .verifyComplete();
+        assertEquals(1, alarmEventBus.getDroppedCount());
+    }
+
+    @Test
+    @DisplayName("Should persist one alarm for a sensor that stays above its threshold")
+    void shouldPersistOneAlarmPerEpisode() {
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.empty());
+        monitoringService.startMonitoring();
+
+        try {
+            Instant start = Instant.now();
+            for (int i = 0; i < 100; i++) {
+                eventBus.publish(new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.0, start.plusSeconds(i),
+                        "warehouse-1"));
+            }
+            eventBus.publish(SensorMeasurement.of("t2", SensorType.TEMPERATURE, 36.0));
+
+            verify(persistenceService, timeout(5000)).saveAlarm(argThat(alarm -> alarm.measurement().sensorId().equals("t2")));
+            verify(persistenceService, times(1)).saveAlarm(argThat(alarm -> alarm.measurement().sensorId().equals("t1")));
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should raise window rule alarms below the instantaneous threshold")
+    void shouldRaiseWindowRuleAlarm() {
+        MonitoringConfig.WindowRule rule = new MonitoringConfig.WindowRule();
+        rule.setName("avg-1m");
+        rule.setType(MonitoringConfig.WindowRule.Type.AVERAGE);
+        rule.setSensorType(SensorType.TEMPERATURE);
+        rule.setWindow(Duration.ofMinutes(1));
+        rule.setMax(30.0);
+        config.setWindowRules(List.of(rule));
+        monitoringService = createService();
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.empty());
+        monitoringService.startMonitoring();
+
+        try {
+            Instant start = Instant.now();
+            double[] values = {25.0, 32.0, 32.0, 32.0, 33.0};
+            for (int i = 0; i < values.length; i++) {
+                eventBus.publish(new SensorMeasurement("t1", SensorType.TEMPERATURE, values[i], start.plusSeconds(i),
+                        "warehouse-1"));
+            }
+
+            verify(persistenceService, timeout(5000)).saveAlarm(argThat(alarm -> alarm.rule().equals("avg-1m")
+                    && alarm.state() == AlarmEvent.State.RAISED && alarm.measurement().value() == 32.0));
+            verify(persistenceService, times(1)).saveAlarm(any());
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should retry transient alarm persistence failures")
+    void shouldRetryTransientAlarmPersistenceFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new TransientDataAccessResourceException("connection reset"))
+                : Mono.just(new AlarmEventEntity())));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        monitoringService.bindTo(registry);
+        monitoringService.startMonitoring();
+
+        try {
+            eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 42.0));
+
+            await(() -> attempts.get() == 3);
+            assertEquals(2.0, registry.get("wms.persistence.retries").functionCounter().count());
+            await(() -> registry.get("wms.persistence.inflight").gauge().value() == 0.0);
+            assertEquals(0.0, registry.get("wms.persistence.failed").functionCounter().count());
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should spill an alarm the database keeps rejecting")
+    void shouldSpillAlarmAfterRetries() {
+        persistenceConfig.setRetryMaxAttempts(1);
+        when(persistenceService.saveAlarm(any()))
+                .thenReturn(Mono.error(new TransientDataAccessResourceException("database down")));
+        // Recorded by the answer: a timed verify can miss an invocation made on another thread
+        AtomicReference<AlarmEvent> spilled = new AtomicReference<>();
+        when(spill.spillAlarm(any())).thenAnswer(invocation -> {
+            spilled.set(invocation.getArgument(0));
+            return true;
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        monitoringService.bindTo(registry);
+        monitoringService.startMonitoring();
+
+        try {
+            SensorMeasurement hot = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 42.0);
+            eventBus.publish(hot);
+
+            await(() -> spilled.get() != null);
+            assertEquals(hot, spilled.get().measurement());
+            assertEquals(0.0, registry.get("wms.persistence.failed").functionCounter().count());
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should not retry non-transient alarm persistence failures")
+    void shouldNotRetryPermanentAlarmPersistenceFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new DataIntegrityViolationException("constraint violated"));
+        }));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        monitoringService.bindTo(registry);
+        monitoringService.startMonitoring();
+
+        try {
+            eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 42.0));
+
+            await(() -> registry.get("wms.persistence.failed").functionCounter().count() == 1.0);
+            assertEquals(1, attempts.get());
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should bound concurrent alarm writes and stop requesting measurements while saturated")
+    void shouldBoundConcurrentAlarmWrites() {
+        persistenceConfig.setMaxInFlightAlarms(2);
+        Sinks.Empty<Void> database = Sinks.empty();
+        when(persistenceService.saveAlarm(any())).thenReturn(database.asMono().then(Mono.just(new AlarmEventEntity())));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        monitoringService.bindTo(registry);
+        monitoringService.startMonitoring();
+
+        // The limit applies per rail
+        int limit = 2 * eventBus.subscribeParallel().parallelism();
+
+        try {
+            for (int i = 0; i < limit + 3; i++) {
+                eventBus.publish(SensorMeasurement.of("t" + i, SensorType.TEMPERATURE, 42.0));
+            }
+
+            assertEquals(limit, registry.get("wms.persistence.inflight").gauge().value());
+            verify(persistenceService, times(limit)).saveAlarm(any());
+
+            database.tryEmitEmpty();
+            await(() -> registry.get("wms.persistence.inflight").gauge().value() == 0.0);
+            verify(persistenceService, times(limit + 3)).saveAlarm(any());
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    @Test
+    @DisplayName("Should write the transitions of a sensor one after another")
+    void shouldSerializeAlarmWritesPerSensor() {
+        Sinks.Empty<Void> database = Sinks.empty();
+        List<AlarmEvent.State> saved = new CopyOnWriteArrayList<>();
+        when(persistenceService.saveAlarm(any())).thenAnswer(invocation -> {
+            AlarmEvent alarm = invocation.getArgument(0);
+            return Mono.defer(() -> {
+                saved.add(alarm.state());
+                return alarm.state() == AlarmEvent.State.RAISED
+                        ? database.asMono().then(Mono.just(new AlarmEventEntity()))
+                        : Mono.just(new AlarmEventEntity());
+            });
+        });
+        monitoringService.startMonitoring();
+
+        try {
+            eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 36.0));
+            eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 60.0));
+            eventBus.publish(SensorMeasurement.of("t2", SensorType.TEMPERATURE, 36.0));
+            await(() -> saved.size() == 2);
+            LockSupport.parkNanos(Duration.ofMillis(100).toNanos());
+            assertEquals(List.of(AlarmEvent.State.RAISED, AlarmEvent.State.RAISED), saved);
+
+            database.tryEmitEmpty();
+            await(() -> saved.size() == 3);
+            assertEquals(AlarmEvent.State.ESCALATED, saved.get(2));
+        } finally {
+            monitoringService.stopMonitoring();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 5s");
+            LockSupport.parkNanos(Duration.ofMillis(5).toNanos());
+        }
+    }
 }
@@ -0,0 +1,84 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.config.IngestLogConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestStatisticsTest {
+
+    private IngestLogConfig config;
+    private IngestStatistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        config = new IngestLogConfig();
+        config.setMaxAlarmLinesPerInterval(2);
+        statistics = new IngestStatistics(config);
+    }
+
+    @Test
+    @DisplayName("Should count measurements per sensor type")
+    void shouldCountMeasurementsPerSensorType() {
+        statistics.recordMeasurements(List.of(
+                SensorMeasurement.of("t1", SensorType.TEMPERATURE, 30.0),
+                SensorMeasurement.of("t2", SensorType.TEMPERATURE, 31.0),
+                SensorMeasurement.of("h1", SensorType.HUMIDITY, 40.0)));
+
+        assertEquals(2, statistics.getMeasurementCount(SensorType.TEMPERATURE));
+        assertEquals(1, statistics.getMeasurementCount(SensorType.HUMIDITY));
+    }
+
+    @Test
+    @DisplayName("Should count rejected text records and binary frames separately")
+    void shouldCountRejectedRecords() {
+        statistics.recordRejected(SensorType.HUMIDITY, 3);
+        statistics.recordRejected(SensorType.HUMIDITY, 0);
+        statistics.recordRejectedBinary(1);
+
+        assertEquals(0, statistics.getRejectedCount(SensorType.TEMPERATURE));
+        assertEquals(3, statistics.getRejectedCount(SensorType.HUMIDITY));
+        assertEquals(1, statistics.getRejectedBinaryCount());
+    }
+
+    @Test
+    @DisplayName("Should rate-limit alarm lines but count every alarm")
+    void shouldRateLimitAlarmLines() {
+        assertTrue(statistics.recordAlarm(AlarmEvent.Severity.WARNING));
+        assertTrue(statistics.recordAlarm(AlarmEvent.Severity.HIGH));
+        assertFalse(statistics.recordAlarm(AlarmEvent.Severity.CRITICAL));
+        assertFalse(statistics.recordAlarm(AlarmEvent.Severity.CRITICAL));
+
+        assertEquals(1, statistics.getAlarmCount(AlarmEvent.Severity.WARNING));
+        assertEquals(2, statistics.getAlarmCount(AlarmEvent.Severity.CRITICAL));
+    }
+
+    @Test
+    @DisplayName("Should restore the alarm line budget after each summary")
+    void shouldRestoreAlarmBudgetAfterSummary() {
+        statistics.recordAlarm(AlarmEvent.Severity.WARNING);
+        statistics.recordAlarm(AlarmEvent.Severity.WARNING);
+        assertFalse(statistics.recordAlarm(AlarmEvent.Severity.WARNING));
+
+        statistics.logSummary();
+
+        assertTrue(statistics.recordAlarm(AlarmEvent.Severity.WARNING));
+    }
+
+    @Test
+    @DisplayName("Should sample every message when the sample rate is 1")
+    void shouldSampleEveryMessageWithRateOne() {
+        config.setSampleRate(1);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(statistics.sample());
+        }
+    }
+}
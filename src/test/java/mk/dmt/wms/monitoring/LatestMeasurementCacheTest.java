@@ -0,0 +1,184 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.event.AlarmEventBus;
+import mk.dmt.wms.event.SinkMeasurementEventBus;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for LatestMeasurementCache.
+ */
+class LatestMeasurementCacheTest {
+
+    private SinkMeasurementEventBus eventBus;
+    private AlarmEventBus alarmEventBus;
+    private LatestMeasurementCache cache;
+
+    @BeforeEach
+    void setUp() {
+        eventBus = new SinkMeasurementEventBus();
+        alarmEventBus = new AlarmEventBus();
+        cache = new LatestMeasurementCache(eventBus, alarmEventBus);
+        cache.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.stop();
+    }
+
+    @Test
+    @DisplayName("Should keep only the latest measurement per sensor")
+    void shouldKeepLatestMeasurementPerSensor() {
+        SensorMeasurement t1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+        SensorMeasurement t1Latest = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 26.0);
+        SensorMeasurement h1 = SensorMeasurement.of("h1", SensorType.HUMIDITY, 40.0);
+
+        eventBus.publishAll(List.of(t1, h1, t1Latest));
+
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getVersion());
+        List<SensorMeasurement> all = cache.changedSince(0, cache.getVersion());
+        assertEquals(2, all.size());
+        assertTrue(all.containsAll(List.of(t1Latest, h1)));
+    }
+
+    @Test
+    @DisplayName("Should return only sensors changed after a version")
+    void shouldReturnOnlyChangedSensors() {
+        eventBus.publish(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0));
+        eventBus.publish(SensorMeasurement.of("t2", SensorType.TEMPERATURE, 26.0));
+        long seen = cache.getVersion();
+        SensorMeasurement t2Latest = SensorMeasurement.of("t2", SensorType.TEMPERATURE, 27.0);
+        eventBus.publish(t2Latest);
+
+        assertEquals(List.of(t2Latest), cache.changedSince(seen, cache.getVersion()));
+        assertTrue(cache.changedSince(cache.getVersion(), cache.getVersion()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should find recent changes in the change log and older ones by scanning")
+    void shouldReadChangesFromLogOrScan() {
+        int sensors = LatestMeasurementCache.CHANGE_LOG_SIZE + 10;
+        for (int i = 0; i < sensors; i++) {
+            eventBus.publish(SensorMeasurement.of("s" + i, SensorType.TEMPERATURE, i));
+        }
+        long seen = cache.getVersion();
+        SensorMeasurement s7 = SensorMeasurement.of("s7", SensorType.TEMPERATURE, 1.0);
+        SensorMeasurement s3 = SensorMeasurement.of("s3", SensorType.TEMPERATURE, 2.0);
+        SensorMeasurement s7Latest = SensorMeasurement.of("s7", SensorType.TEMPERATURE, 3.0);
+        eventBus.publishAll(List.of(s7, s3, s7Latest));
+        alarmEventBus.publish(AlarmEvent.of(SensorMeasurement.of("s5", SensorType.TEMPERATURE, 42.0), 35.0));
+
+        // In the log: each sensor once, at its latest update
+        List<SensorMeasurement> recent = cache.changedSince(seen, cache.getVersion());
+        assertEquals(List.of("s3", "s7", "s5"), recent.stream().map(SensorMeasurement::sensorId).toList());
+        assertEquals(s7Latest, recent.get(1));
+
+        // Overwritten in the log: scanned
+        List<SensorMeasurement> all = cache.changedSince(0, cache.getVersion());
+        assertEquals(sensors, all.size());
+        assertEquals(s3, all.get(3));
+        assertEquals(s7Latest, all.get(7));
+    }
+
+    @Test
+    @DisplayName("Should emit a full snapshot first and then coalesced changes per interval")
+    void shouldEmitCoalescedChangesPerInterval() {
+        SensorMeasurement t1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 25.0);
+        SensorMeasurement h1 = SensorMeasurement.of("h1", SensorType.HUMIDITY, 40.0);
+        eventBus.publishAll(List.of(t1, h1));
+        SensorMeasurement t1Second = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 26.0);
+        SensorMeasurement t1Third = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 27.0);
+
+        StepVerifier.withVirtualTime(() -> cache.changes(Duration.ofMillis(250)))
+                .assertNext(snapshot -> assertEquals(2, snapshot.size()))
+                .then(() -> {
+                    eventBus.publish(t1Second);
+                    eventBus.publish(t1Third);
+                })
+                .thenAwait(Duration.ofMillis(250))
+                .expectNext(List.of(t1Third))
+                .thenAwait(Duration.ofMillis(1000))
+                .expectNoEvent(Duration.ZERO)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Should hold the alarm state of an open episode until it is cleared")
+    void shouldTrackAlarmState() {
+        SensorMeasurement hot = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 42.0);
+        eventBus.publish(hot);
+        AlarmEvent raised = AlarmEvent.of(hot, 35.0);
+        alarmEventBus.publish(raised);
+
+        SensorSnapshot snapshot = cache.get("t1");
+        assertEquals(42.0, snapshot.value());
+        assertEquals(AlarmEvent.Severity.HIGH, snapshot.alarm());
+
+        // Further samples of the episode keep its state
+        SensorMeasurement stillHot = new SensorMeasurement("t1", SensorType.TEMPERATURE, 41.0,
+                hot.timestamp().plusSeconds(1), "warehouse-1");
+        eventBus.publish(stillHot);
+        assertEquals(AlarmEvent.Severity.HIGH, cache.get("t1").alarm());
+
+        SensorMeasurement normal = new SensorMeasurement("t1", SensorType.TEMPERATURE, 30.0,
+                hot.timestamp().plusSeconds(2), "warehouse-1");
+        eventBus.publish(normal);
+        alarmEventBus.publish(new AlarmEvent(normal, 35.0, Instant.now(), AlarmEvent.Severity.HIGH,
+                AlarmEvent.State.CLEARED, raised.raisedAt(), 42.0));
+
+        assertNull(cache.get("t1").alarm());
+        assertEquals(30.0, cache.get("t1").value());
+        assertNull(cache.get("unknown"));
+    }
+
+    @Test
+    @DisplayName("Should snapshot every sensor across pages with its warehouse and type")
+    void shouldSnapshotAllSensors() {
+        int sensors = LatestMeasurementCache.PAGE_SIZE * 2 + 10;
+        Instant timestamp = Instant.parse("2026-03-01T10:00:00.123456789Z");
+        for (int i = 0; i < sensors; i++) {
+            eventBus.publish(new SensorMeasurement("s" + i, i % 2 == 0 ? SensorType.TEMPERATURE : SensorType.HUMIDITY,
+                    i, timestamp, "warehouse-" + (i % 3)));
+        }
+
+        List<SensorSnapshot> all = cache.snapshot().collectList().block();
+
+        assertEquals(sensors, all.size());
+        SensorSnapshot last = all.get(sensors - 1);
+        assertEquals(new SensorSnapshot("s" + (sensors - 1), SensorType.HUMIDITY, sensors - 1, timestamp,
+                "warehouse-" + ((sensors - 1) % 3), null), last);
+    }
+
+    @Test
+    @DisplayName("Should never return a torn entry while a sensor is updated concurrently")
+    void shouldReadConsistentEntriesUnderUpdates() throws InterruptedException {
+        eventBus.publish(new SensorMeasurement("t1", SensorType.TEMPERATURE, 0, Instant.ofEpochSecond(0), "warehouse-1"));
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 200_000; i++) {
+                eventBus.publish(new SensorMeasurement("t1", SensorType.TEMPERATURE, i, Instant.ofEpochSecond(i), "warehouse-1"));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            SensorSnapshot snapshot = cache.get("t1");
+            assertEquals(snapshot.value(), snapshot.timestamp().getEpochSecond(), 0.0);
+        }
+        writer.join();
+        assertEquals(200_000, cache.get("t1").value());
+    }
+}
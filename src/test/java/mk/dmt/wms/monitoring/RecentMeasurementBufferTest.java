@@ -0,0 +1,129 @@
+package mk.dmt.wms.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mk.dmt.wms.config.HistoryBufferConfig;
+import mk.dmt.wms.event.SinkMeasurementEventBus;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RecentMeasurementBuffer.
+ */
+class RecentMeasurementBufferTest {
+
+    private SinkMeasurementEventBus eventBus;
+    private RecentMeasurementBuffer buffer;
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        HistoryBufferConfig config = new HistoryBufferConfig();
+        config.setCapacityPerSensor(4);
+        // Room for two sensors of 4 entries
+        config.setMaxSize(DataSize.ofBytes(2 * 4 * 16));
+        eventBus = new SinkMeasurementEventBus();
+        buffer = new RecentMeasurementBuffer(eventBus, config);
+        buffer.start();
+        now = Instant.now();
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffer.stop();
+    }
+
+    @Test
+    @DisplayName("Should return the latest measurements of a sensor, newest first")
+    void shouldReturnSensorHistoryNewestFirst() {
+        for (int i = 1; i <= 6; i++) {
+            eventBus.publish(measurement("t1", i, now.plusSeconds(i)));
+        }
+
+        List<SensorMeasurement> history = buffer.history("t1", 3);
+
+        assertNotNull(history);
+        assertEquals(List.of(6.0, 5.0, 4.0), history.stream().map(SensorMeasurement::value).toList());
+        assertEquals(now.plusSeconds(6), history.get(0).timestamp());
+        assertEquals("warehouse-1", history.get(0).warehouseId());
+    }
+
+    @Test
+    @DisplayName("Should not answer sensor history the buffer cannot fully cover")
+    void shouldMissWhenHistoryIsNotCovered() {
+        eventBus.publish(measurement("t1", 1, now));
+        eventBus.publish(measurement("t1", 2, now.plusSeconds(1)));
+
+        assertNull(buffer.history("t1", 3));
+        assertNull(buffer.history("t1", 5));
+        assertNull(buffer.history("unknown", 1));
+        assertEquals(2, buffer.history("t1", 2).size());
+    }
+
+    @Test
+    @DisplayName("Should answer a recent window only while nothing in it was evicted")
+    void shouldAnswerRecentWindowWhileComplete() {
+        eventBus.publish(measurement("t1", 1, now.plusSeconds(1)));
+        eventBus.publish(measurement("h1", 2, now.plusSeconds(2)));
+        eventBus.publish(measurement("t1", 3, now.plusSeconds(3)));
+
+        List<SensorMeasurement> recent = buffer.recent(now, 2);
+        assertNotNull(recent);
+        assertEquals(List.of(3.0, 2.0), recent.stream().map(SensorMeasurement::value).toList());
+        assertNull(buffer.recent(now.minusSeconds(3600), 10), "window starts before the buffer did");
+
+        // t1 wraps around and evicts the measurement at now + 1s
+        for (int i = 4; i <= 6; i++) {
+            eventBus.publish(measurement("t1", i, now.plusSeconds(i)));
+        }
+        assertNull(buffer.recent(now, 10));
+        assertEquals(5, buffer.recent(now.plusSeconds(1), 10).size());
+    }
+
+    @Test
+    @DisplayName("Should return the newest measurements across sensors, including late ones")
+    void shouldReturnNewestAcrossSensors() {
+        eventBus.publish(measurement("t1", 1, now.plusSeconds(1)));
+        eventBus.publish(measurement("t1", 5, now.plusSeconds(5)));
+        eventBus.publish(measurement("h1", 4, now.plusSeconds(4)));
+        eventBus.publish(measurement("h1", 2, now.plusSeconds(2)));
+        // Arrives late
+        eventBus.publish(measurement("t1", 3, now.plusSeconds(3)));
+
+        assertEquals(List.of(5.0, 4.0, 3.0), buffer.recent(now, 3).stream().map(SensorMeasurement::value).toList());
+        assertEquals(List.of(5.0, 4.0, 3.0, 2.0, 1.0),
+                buffer.recent(now, 10).stream().map(SensorMeasurement::value).toList());
+        assertEquals(List.of(5.0, 4.0), buffer.recent(now.plusSeconds(3), 10).stream().map(SensorMeasurement::value).toList());
+        assertTrue(buffer.recent(now, 0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should stop buffering new sensors at the size cap and report it")
+    void shouldCapMemory() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        buffer.bindTo(registry);
+
+        eventBus.publish(measurement("t1", 1, now.plusSeconds(1)));
+        eventBus.publish(measurement("t2", 2, now.plusSeconds(2)));
+        eventBus.publish(measurement("t3", 3, now.plusSeconds(3)));
+
+        assertEquals(2, buffer.getSensorCount());
+        assertNull(buffer.history("t3", 1));
+        assertNull(buffer.recent(now, 10), "t3 is missing from the buffer");
+        assertEquals(128.0, registry.get("wms.history.buffer.bytes").gauge().value());
+        assertEquals(1.0, registry.get("wms.history.buffer.rejected").functionCounter().count());
+    }
+
+    private static SensorMeasurement measurement(String sensorId, double value, Instant timestamp) {
+        return new SensorMeasurement(sensorId, SensorType.TEMPERATURE, value, timestamp, "warehouse-1");
+    }
+}
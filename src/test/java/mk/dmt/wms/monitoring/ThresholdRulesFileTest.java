@@ -0,0 +1,84 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ThresholdRulesFile.
+ */
+class ThresholdRulesFileTest {
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private ThresholdRuleEngine engine;
+    private ThresholdRulesFile rulesFile;
+
+    @BeforeEach
+    void setUp() {
+        file = directory.resolve("thresholds.json");
+        MonitoringConfig config = new MonitoringConfig();
+        config.setRulesFile(file.toString());
+        engine = new ThresholdRuleEngine(config);
+        rulesFile = new ThresholdRulesFile(config, engine, JsonMapper.builder().build());
+    }
+
+    @Test
+    @DisplayName("Should apply the rules file and reload it only when it changes")
+    void shouldReloadChangedFile() throws IOException {
+        SensorMeasurement t1 = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 10.0);
+        assertFalse(rulesFile.reloadIfChanged(), "no file yet");
+
+        write("""
+                {"rules": [{"sensorId": "t1", "min": 2.0, "max": 8.0}]}
+                """, 1);
+        assertTrue(rulesFile.reloadIfChanged());
+        assertEquals(8.0, engine.violatedBound(t1));
+        assertFalse(rulesFile.reloadIfChanged());
+
+        write("""
+                {"temperatureThreshold": 5.0, "rules": [{"warehouseId": "warehouse-1", "sensorType": "TEMPERATURE", "min": 12.0}]}
+                """, 2);
+        assertTrue(rulesFile.reloadIfChanged());
+        assertEquals(5.0, engine.violatedBound(t1));
+        assertEquals(12.0, engine.violatedBound(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 4.0)));
+    }
+
+    @Test
+    @DisplayName("Should keep the rules in effect when the file is invalid")
+    void shouldIgnoreInvalidFile() throws IOException {
+        write("""
+                {"rules": [{"sensorId": "t1", "max": 8.0}]}
+                """, 1);
+        assertTrue(rulesFile.reloadIfChanged());
+
+        write("{\"rules\": [{\"max\": 8.0}]}", 2);
+        assertFalse(rulesFile.reloadIfChanged());
+        write("{\"rules\": [", 3);
+        assertFalse(rulesFile.reloadIfChanged());
+
+        assertEquals(1, engine.getRules().size());
+        assertEquals(8.0, engine.violatedBound(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 10.0)));
+    }
+
+    private void write(String content, long second) throws IOException {
+        Files.writeString(file, content);
+        // Distinct modification times regardless of the file system's resolution
+        Files.setLastModifiedTime(file, FileTime.from(Instant.ofEpochSecond(1_700_000_000L + second)));
+    }
+}
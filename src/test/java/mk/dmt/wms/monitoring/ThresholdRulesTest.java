@@ -0,0 +1,145 @@
+package mk.dmt.wms.monitoring;
+
+import com.sun.management.ThreadMXBean;
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for ThresholdRules and ThresholdRuleEngine.
+ */
+class ThresholdRulesTest {
+
+    @Test
+    @DisplayName("Should prefer sensor rules over warehouse rules over the per-type threshold, per bound")
+    void shouldResolveBoundsBySpecificity() {
+        ThresholdRules rules = ThresholdRules.compile(List.of(
+                warehouseRule("cold-room", SensorType.TEMPERATURE, 2.0, 8.0),
+                sensorRule("t1", null, 6.0)));
+
+        // t1: max from its own rule, min from the warehouse
+        assertEquals(6.0, rules.violatedBound("t1", SensorType.TEMPERATURE, "cold-room", 7.0, 35.0));
+        assertEquals(2.0, rules.violatedBound("t1", SensorType.TEMPERATURE, "cold-room", 1.0, 35.0));
+        assertTrue(Double.isNaN(rules.violatedBound("t1", SensorType.TEMPERATURE, "cold-room", 6.0, 35.0)));
+        // t2 in the cold room: both bounds from the warehouse
+        assertEquals(8.0, rules.violatedBound("t2", SensorType.TEMPERATURE, "cold-room", 9.0, 35.0));
+        // Humidity in the cold room and sensors elsewhere keep the per-type threshold
+        assertTrue(Double.isNaN(rules.violatedBound("h1", SensorType.HUMIDITY, "cold-room", 9.0, 50.0)));
+        assertEquals(35.0, rules.violatedBound("t3", SensorType.TEMPERATURE, "dry-storage", 36.0, 35.0));
+        assertTrue(Double.isNaN(rules.violatedBound("t3", SensorType.TEMPERATURE, "dry-storage", -40.0, 35.0)));
+    }
+
+    @Test
+    @DisplayName("Should reject incomplete, contradictory and duplicate rules")
+    void shouldRejectInvalidRules() {
+        MonitoringConfig.Rule both = sensorRule("t1", 1.0, 2.0);
+        both.setWarehouseId("warehouse-1");
+
+        assertThrows(IllegalArgumentException.class, () -> ThresholdRules.compile(List.of(both)));
+        assertThrows(IllegalArgumentException.class,
+                () -> ThresholdRules.compile(List.of(warehouseRule("warehouse-1", null, 1.0, 2.0))));
+        assertThrows(IllegalArgumentException.class,
+                () -> ThresholdRules.compile(List.of(sensorRule("t1", null, null))));
+        assertThrows(IllegalArgumentException.class,
+                () -> ThresholdRules.compile(List.of(sensorRule("t1", 5.0, 1.0))));
+        assertThrows(IllegalArgumentException.class,
+                () -> ThresholdRules.compile(List.of(sensorRule("t1", 1.0, 2.0), sensorRule("t1", 3.0, 4.0))));
+    }
+
+    @Test
+    @DisplayName("Should read the per-type thresholds live from the configuration")
+    void shouldReadDefaultThresholdsLive() {
+        MonitoringConfig config = new MonitoringConfig();
+        config.getRules().add(sensorRule("t1", 10.0, null));
+        ThresholdRuleEngine engine = new ThresholdRuleEngine(config);
+        SensorMeasurement measurement = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 38.0);
+
+        assertEquals(35.0, engine.violatedBound(measurement));
+        config.setTemperatureThreshold(40.0);
+        assertTrue(Double.isNaN(engine.violatedBound(measurement)));
+    }
+
+    @Test
+    @DisplayName("Should swap in updated thresholds and rules, and keep them on an invalid update")
+    void shouldApplyRuntimeUpdates() {
+        MonitoringConfig config = new MonitoringConfig();
+        ThresholdRuleEngine engine = new ThresholdRuleEngine(config);
+        SensorMeasurement measurement = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 30.0);
+        assertTrue(Double.isNaN(engine.violatedBound(measurement)));
+
+        engine.update(new ThresholdSettings(25.0, null, List.of(sensorRule("t2", 1.0, null))), "test");
+        assertEquals(25.0, engine.violatedBound(measurement));
+        assertEquals(new ThresholdSettings(25.0, 50.0, engine.getRules().getRules()), engine.getSettings());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.update(new ThresholdSettings(20.0, null, List.of(sensorRule("t1", 9.0, 1.0))), "test"));
+        assertEquals(25.0, engine.violatedBound(measurement));
+        assertEquals(1, engine.getRules().size());
+    }
+
+    @Test
+    @DisplayName("Should evaluate against 100k rules without allocating")
+    void shouldEvaluateWithoutAllocating() {
+        List<MonitoringConfig.Rule> definitions = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            definitions.add(sensorRule("t" + i, 0.0, 10.0 + i % 10));
+        }
+        for (int i = 0; i < 1_000; i++) {
+            definitions.add(warehouseRule("warehouse-" + i, SensorType.HUMIDITY, 20.0, 60.0));
+        }
+        ThresholdRules rules = ThresholdRules.compile(definitions);
+        SensorMeasurement[] measurements = new SensorMeasurement[1024];
+        for (int i = 0; i < measurements.length; i++) {
+            measurements[i] = new SensorMeasurement("t" + i * 97, SensorType.TEMPERATURE, i % 25,
+                    Instant.now(), "warehouse-" + i);
+        }
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        int violations = evaluate(rules, measurements, 100);
+        long before = threads.getThreadAllocatedBytes(thread);
+        violations += evaluate(rules, measurements, 1_000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(violations > 0);
+        assertTrue(allocated < 64 * 1024, "allocated " + allocated + " bytes for 1M evaluations");
+    }
+
+    private static int evaluate(ThresholdRules rules, SensorMeasurement[] measurements, int rounds) {
+        int violations = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (SensorMeasurement m : measurements) {
+                if (!Double.isNaN(rules.violatedBound(m.sensorId(), m.sensorType(), m.warehouseId(), m.value(), 35.0))) {
+                    violations++;
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static MonitoringConfig.Rule sensorRule(String sensorId, Double min, Double max) {
+        MonitoringConfig.Rule rule = new MonitoringConfig.Rule();
+        rule.setSensorId(sensorId);
+        rule.setMin(min);
+        rule.setMax(max);
+        return rule;
+    }
+
+    private static MonitoringConfig.Rule warehouseRule(String warehouseId, SensorType sensorType, Double min, Double max) {
+        MonitoringConfig.Rule rule = new MonitoringConfig.Rule();
+        rule.setWarehouseId(warehouseId);
+        rule.setSensorType(sensorType);
+        rule.setMin(min);
+        rule.setMax(max);
+        return rule;
+    }
+}
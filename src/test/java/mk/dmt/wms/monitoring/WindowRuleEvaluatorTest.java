@@ -0,0 +1,192 @@
+package mk.dmt.wms.monitoring;
+
+import mk.dmt.wms.config.AlarmConfig;
+import mk.dmt.wms.config.MonitoringConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for WindowRuleEvaluator.
+ */
+class WindowRuleEvaluatorTest {
+
+    private static final Instant START = Instant.parse("2026-03-01T10:00:00Z");
+
+    private MonitoringConfig config;
+    private AlarmConfig alarmConfig;
+
+    @BeforeEach
+    void setUp() {
+        config = new MonitoringConfig();
+        alarmConfig = new AlarmConfig();
+        alarmConfig.setClearAfter(Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("Should alarm on the moving average and drop samples that left the window")
+    void shouldEvaluateMovingAverage() {
+        WindowRuleEvaluator evaluator = evaluator(rule("avg", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofSeconds(10), null, 30.0));
+
+        assertTrue(evaluate(evaluator, 0, 25.0).isEmpty());
+        assertTrue(evaluate(evaluator, 1, 34.0).isEmpty(), "average 29.5");
+        List<AlarmEvent> raised = evaluate(evaluator, 2, 32.0);
+        assertEquals(1, raised.size());
+        assertEquals("avg", raised.get(0).rule());
+        assertEquals(AlarmEvent.State.RAISED, raised.get(0).state());
+        assertEquals(30.0, raised.get(0).threshold());
+        assertEquals(91.0 / 3, raised.get(0).peakValue(), 1e-9);
+
+        assertTrue(evaluate(evaluator, 3, 31.0).isEmpty(), "still above, same severity");
+        // Second 0 left the window: (34 + 32 + 31 + 23) / 4 is within the hysteresis band
+        assertTrue(evaluate(evaluator, 11, 23.0).isEmpty());
+        // Seconds 1 and 2 left the window: (31 + 23 + 20) / 3
+        List<AlarmEvent> cleared = evaluate(evaluator, 13, 20.0);
+        assertEquals(AlarmEvent.State.CLEARED, cleared.get(0).state());
+        assertEquals(1, evaluator.getSensorCount());
+        assertEquals(0, evaluator.getOpenEpisodeCount());
+    }
+
+    @Test
+    @DisplayName("Should alarm on the rate of change per minute over the window")
+    void shouldEvaluateRateOfChange() {
+        WindowRuleEvaluator evaluator = evaluator(rule("rise", MonitoringConfig.WindowRule.Type.RATE_OF_CHANGE,
+                Duration.ofMinutes(1), -3.0, 3.0));
+
+        // 0.5 degrees per 10 seconds: 3 per minute, on the bound
+        for (int second = 0; second <= 60; second += 10) {
+            assertTrue(evaluate(evaluator, second, 20.0 + second / 20.0).isEmpty());
+        }
+        // 23.0 at 60s, 25.0 at 70s: (25.0 - 20.5) over the minute since 10s
+        List<AlarmEvent> raised = evaluate(evaluator, 70, 25.0);
+        assertEquals(1, raised.size());
+        assertEquals(4.5, raised.get(0).peakValue(), 1e-9);
+        assertEquals(3.0, raised.get(0).threshold());
+
+        // Falling back down: the rate becomes negative and the episode clears
+        List<AlarmEvent> cleared = evaluate(evaluator, 80, 20.0);
+        assertEquals(AlarmEvent.State.CLEARED, cleared.get(0).state());
+    }
+
+    @Test
+    @DisplayName("Should alarm when a share of the window is above a level, once the window is covered")
+    void shouldEvaluateTimeAbove() {
+        MonitoringConfig.WindowRule rule = rule("mostly-warm", MonitoringConfig.WindowRule.Type.TIME_ABOVE,
+                Duration.ofMinutes(1), null, null);
+        rule.setLevel(30.0);
+        rule.setPercent(50.0);
+        WindowRuleEvaluator evaluator = evaluator(rule);
+
+        assertTrue(evaluate(evaluator, 0, 31.0).isEmpty(), "the window is not covered yet");
+        assertTrue(evaluate(evaluator, 20, 29.0).isEmpty());
+        assertTrue(evaluate(evaluator, 40, 31.0).isEmpty());
+        // 3 of 4 samples above 30
+        List<AlarmEvent> raised = evaluate(evaluator, 60, 31.0);
+        assertEquals(1, raised.size());
+        assertEquals(75.0, raised.get(0).peakValue(), 1e-9);
+
+        // The sample of second 0 left the window: 2 of 4 above
+        List<AlarmEvent> cleared = evaluate(evaluator, 61, 29.0);
+        assertEquals(AlarmEvent.State.CLEARED, cleared.get(0).state());
+    }
+
+    @Test
+    @DisplayName("Should bound a window by the ring capacity per sensor")
+    void shouldBoundWindowByCapacity() {
+        config.setWindowCapacity(4);
+        WindowRuleEvaluator evaluator = evaluator(rule("avg", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofHours(1), null, 30.0));
+
+        assertFalse(evaluate(evaluator, 0, 100.0).isEmpty());
+        for (int second = 1; second < 4; second++) {
+            evaluate(evaluator, second, 20.0);
+        }
+        // The 100.0 was overwritten; the window is the last four samples
+        List<AlarmEvent> cleared = evaluate(evaluator, 4, 20.0);
+        assertEquals(AlarmEvent.State.CLEARED, cleared.get(0).state());
+        for (int second = 5; second < 10_000; second++) {
+            assertTrue(evaluate(evaluator, second, 20.0 + second % 7).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should apply rules only to matching sensors, each with its own episode")
+    void shouldMatchRulesPerSensor() {
+        MonitoringConfig.WindowRule warehouse = rule("avg-cold", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofMinutes(1), null, 8.0);
+        warehouse.setWarehouseId("cold-room");
+        MonitoringConfig.WindowRule all = rule("avg", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofMinutes(1), null, 9.0);
+        MonitoringConfig.WindowRule humidity = rule("avg-humidity", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofMinutes(1), null, 5.0);
+        humidity.setSensorType(SensorType.HUMIDITY);
+        WindowRuleEvaluator evaluator = evaluator(warehouse, all, humidity);
+
+        List<AlarmEvent> cold = evaluator.evaluate(new SensorMeasurement("t1", SensorType.TEMPERATURE, 10.0, START,
+                "cold-room"));
+        assertEquals(List.of("avg-cold", "avg"), cold.stream().map(AlarmEvent::rule).toList());
+        List<AlarmEvent> other = evaluator.evaluate(new SensorMeasurement("t2", SensorType.TEMPERATURE, 10.0, START,
+                "warehouse-1"));
+        assertEquals(List.of("avg"), other.stream().map(AlarmEvent::rule).toList());
+        assertEquals(3, evaluator.getOpenEpisodeCount());
+    }
+
+    @Test
+    @DisplayName("Should reject incomplete, contradictory and duplicate rules")
+    void shouldRejectInvalidRules() {
+        MonitoringConfig.WindowRule noBounds = rule("a", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofMinutes(1), null, null);
+        assertThrows(IllegalArgumentException.class, () -> evaluator(noBounds));
+
+        MonitoringConfig.WindowRule inverted = rule("a", MonitoringConfig.WindowRule.Type.RATE_OF_CHANGE,
+                Duration.ofMinutes(1), 5.0, 1.0);
+        assertThrows(IllegalArgumentException.class, () -> evaluator(inverted));
+
+        MonitoringConfig.WindowRule noLevel = rule("a", MonitoringConfig.WindowRule.Type.TIME_ABOVE,
+                Duration.ofMinutes(1), null, null);
+        noLevel.setPercent(50.0);
+        assertThrows(IllegalArgumentException.class, () -> evaluator(noLevel));
+
+        MonitoringConfig.WindowRule noWindow = rule("a", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ZERO, null, 30.0);
+        assertThrows(IllegalArgumentException.class, () -> evaluator(noWindow));
+
+        MonitoringConfig.WindowRule first = rule("a", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofMinutes(1), null, 30.0);
+        MonitoringConfig.WindowRule second = rule("a", MonitoringConfig.WindowRule.Type.AVERAGE,
+                Duration.ofMinutes(5), null, 30.0);
+        assertThrows(IllegalArgumentException.class, () -> evaluator(first, second));
+    }
+
+    private WindowRuleEvaluator evaluator(MonitoringConfig.WindowRule... rules) {
+        config.setWindowRules(List.of(rules));
+        return new WindowRuleEvaluator(config, alarmConfig, new AlarmEpisodeTracker(alarmConfig, new ThresholdRuleEngine(config)));
+    }
+
+    private static MonitoringConfig.WindowRule rule(String name, MonitoringConfig.WindowRule.Type type,
+                                                    Duration window, Double min, Double max) {
+        MonitoringConfig.WindowRule rule = new MonitoringConfig.WindowRule();
+        rule.setName(name);
+        rule.setType(type);
+        rule.setSensorType(SensorType.TEMPERATURE);
+        rule.setWindow(window);
+        rule.setMin(min);
+        rule.setMax(max);
+        return rule;
+    }
+
+    private static List<AlarmEvent> evaluate(WindowRuleEvaluator evaluator, int second, double value) {
+        return evaluator.evaluate(new SensorMeasurement("t1", SensorType.TEMPERATURE, value,
+                START.plusSeconds(second), "warehouse-1"));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.TestPropertySource;
 import reactor.test.StepVerifier;
 
@@ -25,6 +26,9 @@ class SensorMeasurementRepositoryTest {
     @Autowired
     private SensorMeasurementRepository repository;
 
+    @Autowired
+    private DatabaseClient databaseClient;
+
     @BeforeEach
     void setUp() {
         // Clean up before each test - commented out to avoid errors before Flyway runs
@@ -150,5 +154,57 @@ class SensorMeasurementRepositoryTest {
             .assertNext(saved -> { assertThat(saved.getTimestamp()).isEqualTo(specificTime);})
             .verifyComplete();
     }
-}
 
+    @Test
+    void shouldReadIdsBackThroughDictionaries() {
+        // Given - two measurements of one sensor share a dictionary row
+        repository.save(new SensorMeasurementEntity("zone_a", SensorType.HUMIDITY.name(), 45.0, Instant.now(), "warehouse-2")).block();
+        SensorMeasurementEntity second = repository.save(
+            new SensorMeasurementEntity("zone_a", SensorType.HUMIDITY.name(), 46.0, Instant.now(), "warehouse-2")).block();
+
+        // When & Then
+        StepVerifier.create(repository.findLatestMeasurements(10).collectList())
+            .assertNext(found -> {
+                assertThat(found).hasSize(2);
+                assertThat(found).allSatisfy(entity -> {
+                    assertThat(entity.getSensorId()).isEqualTo("zone_a");
+                    assertThat(entity.getSensorRef()).isEqualTo(second.getSensorRef());
+                    assertThat(entity.getWarehouseId()).isEqualTo("warehouse-2");
+                    assertThat(entity.getSensorType()).isEqualTo("HUMIDITY");
+                });
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldLimitSensorHistoryInSql() {
+        // Given
+        Instant now = Instant.now();
+        for (int i = 0; i < 5; i++) {
+            repository.save(new SensorMeasurementEntity("zone_a", SensorType.TEMPERATURE.name(), 20.0 + i, now.minusSeconds(i), "warehouse-1")).block();
+        }
+        repository.save(new SensorMeasurementEntity("zone_b", SensorType.TEMPERATURE.name(), 30.0, now, "warehouse-1")).block();
+
+        // When & Then - only the newest three rows of zone_a
+        StepVerifier.create(repository.findLatestBySensorId("zone_a", 3).map(SensorMeasurementEntity::getValue))
+            .expectNext(20.0, 21.0, 22.0)
+            .verifyComplete();
+        StepVerifier.create(repository.findLatestAfter(now.minusSeconds(10), 4))
+            .expectNextCount(4)
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldReadSensorHistoryFromCompositeIndex() {
+        // When - the plan of the sensor history query
+        String plan = databaseClient.sql("EXPLAIN SELECT m.* FROM sensor_measurements m"
+                + " WHERE m.sensor_ref = (SELECT id FROM sensors WHERE sensor_key = 'zone_a')"
+                + " ORDER BY m.updated_at DESC LIMIT 10")
+            .map(row -> row.get(0, String.class))
+            .one()
+            .block();
+
+        // Then
+        assertThat(plan).containsIgnoringCase("idx_sensor_measurements_sensor_time");
+    }
+}
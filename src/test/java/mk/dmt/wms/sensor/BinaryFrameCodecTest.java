@@ -0,0 +1,128 @@
+package mk.dmt.wms.sensor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BinaryFrameCodec.
+ */
+class BinaryFrameCodecTest {
+
+    private BinaryFrameCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        codec = new BinaryFrameCodec();
+    }
+
+    @Test
+    @DisplayName("Should round-trip a frame with timestamp and sequence number")
+    void shouldRoundTripFrame() {
+        Instant timestamp = Instant.parse("2026-02-08T10:30:00Z");
+        SensorMeasurement measurement = new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.25, timestamp, "warehouse-1");
+        ByteBuf frame = Unpooled.buffer();
+        BinaryFrameCodec.encode(measurement, 42, frame);
+
+        assertEquals(BinaryFrameCodec.frameLength(BinaryFrameCodec.FLAG_TIMESTAMP | BinaryFrameCodec.FLAG_SEQUENCE),
+                frame.readableBytes());
+
+        Optional<SensorMeasurement> result = codec.decode(frame);
+
+        assertTrue(result.isPresent());
+        assertEquals(measurement, result.get());
+        assertEquals(0, frame.readerIndex());
+    }
+
+    @Test
+    @DisplayName("Should stamp frames without timestamp with the receive time")
+    void shouldStampFramesWithoutTimestamp() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(BinaryFrameCodec.VERSION);
+        frame.writeByte(SensorType.HUMIDITY.getCode());
+        frame.writeByte(0);
+        frame.writeByte(0);
+        frame.writeBytes(new byte[] {'h', '1'});
+        frame.writeZero(BinaryFrameCodec.SENSOR_ID_LENGTH - 2);
+        frame.writeDouble(40.0);
+        Instant before = Instant.now();
+
+        Optional<SensorMeasurement> result = codec.decode(frame);
+
+        assertTrue(result.isPresent());
+        assertEquals("h1", result.get().sensorId());
+        assertEquals(SensorType.HUMIDITY, result.get().sensorType());
+        assertEquals(40.0, result.get().value());
+        assertFalse(result.get().timestamp().isBefore(before));
+    }
+
+    @ParameterizedTest
+    @DisplayName("Should reject malformed frames")
+    @ValueSource(ints = {0, 1, 2, 3, 4, 5})
+    void shouldRejectMalformedFrames(int corruption) {
+        SensorMeasurement measurement = SensorMeasurement.of("t1", SensorType.TEMPERATURE, 30.0);
+        ByteBuf frame = Unpooled.buffer();
+        BinaryFrameCodec.encode(measurement, 7, frame);
+
+        switch (corruption) {
+            case 0 -> frame.setByte(0, 2);                    // unknown version
+            case 1 -> frame.setByte(1, 9);                    // unknown sensor type
+            case 2 -> frame.setByte(2, 0x80);                 // unknown flag
+            case 3 -> frame.setByte(3, 1);                    // reserved byte set
+            case 4 -> frame.setZero(BinaryFrameCodec.HEADER_LENGTH, BinaryFrameCodec.SENSOR_ID_LENGTH); // empty id
+            default -> frame.writerIndex(frame.writerIndex() - 1); // truncated
+        }
+
+        assertTrue(codec.decode(frame).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should decode back-to-back frames as one batch")
+    void shouldDecodeBatchOfFrames() {
+        ByteBuf datagram = Unpooled.buffer();
+        for (int i = 0; i < 5; i++) {
+            BinaryFrameCodec.encode(SensorMeasurement.of("t" + i, SensorType.TEMPERATURE, 20.0 + i), i % 2 == 0 ? i : -1, datagram);
+        }
+
+        List<SensorMeasurement> batch = codec.decodeBatch(datagram);
+
+        assertEquals(5, batch.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("t" + i, batch.get(i).sensorId());
+            assertEquals(20.0 + i, batch.get(i).value());
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep frames decoded before a malformed frame")
+    void shouldStopBatchAtMalformedFrame() {
+        ByteBuf datagram = Unpooled.buffer();
+        BinaryFrameCodec.encode(SensorMeasurement.of("t1", SensorType.TEMPERATURE, 21.0), 1, datagram);
+        datagram.writeBytes(new byte[] {9, 9, 9});
+
+        List<SensorMeasurement> batch = codec.decodeBatch(datagram);
+
+        assertEquals(1, batch.size());
+        assertEquals("t1", batch.get(0).sensorId());
+    }
+
+    @Test
+    @DisplayName("Should reject sensor ids that do not fit the frame")
+    void shouldRejectOversizedSensorIds() {
+        SensorMeasurement measurement = SensorMeasurement.of("sensor-id-longer-than-16", SensorType.TEMPERATURE, 30.0);
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryFrameCodec.encode(measurement, -1, Unpooled.buffer()));
+    }
+}
@@ -0,0 +1,83 @@
+package mk.dmt.wms.sensor;
+
+import ch.qos.logback.classic.Level;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput comparison of the text protocol (String + regex and in-place ByteBuf scanning)
+ * against the binary frame protocol.
+ * Run with: ./mvnw test-compile exec:java -Dexec.mainClass=mk.dmt.wms.sensor.SensorDecodingBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorDecodingBenchmark {
+
+    private static final String TEXT_MESSAGE = "sensor_id=zone_a_t01; value=23.75\n";
+
+    private SensorMessageParser textParser;
+    private BinaryFrameCodec binaryCodec;
+    private ByteBuf textFrame;
+    private ByteBuf binaryFrame;
+
+    @Setup
+    public void setUp() {
+        // Outside Spring, logback defaults to DEBUG; measure the production (INFO) code path
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        textParser = new SensorMessageParser();
+        binaryCodec = new BinaryFrameCodec();
+
+        textFrame = Unpooled.directBuffer().writeBytes(TEXT_MESSAGE.getBytes(StandardCharsets.UTF_8));
+        binaryFrame = Unpooled.directBuffer();
+        BinaryFrameCodec.encode(new SensorMeasurement("zone_a_t01", SensorType.TEMPERATURE, 23.75,
+                Instant.now(), "warehouse-1"), 1, binaryFrame);
+    }
+
+    @Benchmark
+    public Optional<SensorMeasurement> textStringRegex() {
+        return textParser.parse(textFrame.toString(StandardCharsets.UTF_8), SensorType.TEMPERATURE);
+    }
+
+    @Benchmark
+    public Optional<SensorMeasurement> textByteBuf() {
+        return textParser.parse(textFrame, SensorType.TEMPERATURE);
+    }
+
+    @Benchmark
+    public Optional<SensorMeasurement> binaryFrame() {
+        return binaryCodec.decode(binaryFrame);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SensorDecodingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -1,5 +1,7 @@
 package mk.dmt.wms.sensor;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import mk.dmt.wms.model.SensorMeasurement;
 import mk.dmt.wms.model.SensorType;
 import org.junit.jupiter.api.BeforeEach;
@@ -9,6 +11,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -115,4 +119,111 @@ class SensorMessageParserTest {
         assertEquals("T1", result.get().sensorId());
         assertEquals(30.0, result.get().value());
     }
+
+    @ParameterizedTest
+    @DisplayName("Should parse ByteBuf messages with various spacing")
+    @CsvSource({
+        "'sensor_id=t1; value=30', t1, 30.0",
+        "'sensor_id = t1 ; value = 30', t1, 30.0",
+        "'sensor_id=t1;value=30', t1, 30.0",
+        "'sensor_id=temp_sensor_001; value=25.5', temp_sensor_001, 25.5",
+        "'SENSOR_ID=T1; VALUE=35.75', T1, 35.75"
+    })
+    void shouldParseByteBufMessagesWithVariousSpacing(String message, String expectedId, double expectedValue) {
+        Optional<SensorMeasurement> result = parser.parse(buffer(message), SensorType.TEMPERATURE);
+
+        assertTrue(result.isPresent());
+        assertEquals(expectedId, result.get().sensorId());
+        assertEquals(SensorType.TEMPERATURE, result.get().sensorType());
+        assertEquals(expectedValue, result.get().value());
+    }
+
+    @ParameterizedTest
+    @DisplayName("Should return empty for invalid ByteBuf messages")
+    @ValueSource(strings = {
+        "",
+        "   ",
+        "invalid message",
+        "sensor_id=t1",
+        "value=30",
+        "sensor_id=; value=30",
+        "sensor_id=t1; value=abc",
+        "sensor_id=t1; value=1.2.3",
+        "sensor_id=t1; value=."
+    })
+    void shouldReturnEmptyForInvalidByteBufMessages(String message) {
+        Optional<SensorMeasurement> result = parser.parse(buffer(message), SensorType.TEMPERATURE);
+
+        assertTrue(result.isEmpty());
+    }
+
+    @ParameterizedTest
+    @DisplayName("Should accept the same messages as the regex parser")
+    @ValueSource(strings = {
+        "sensor_id=t1; value=30\n",
+        "  sensor_id=t1; value=30  ",
+        "prefix sensor_id=t1; value=30 suffix",
+        "sensor_id=a;x sensor_id=b; value=3",
+        "sensor_id=sensor_id=t1; value=3",
+        "sensor_id= ; value=1",
+        "sensor_id=t1;\tvalue\t=\t07.50",
+        "sensor_id=t1; value=30abc",
+        "sensor_id=t1; value=.5",
+        "sensor_id=t1; value=5.",
+        "sensor_id=t1; value=0.1",
+        "sensor_id=t1; value=12345678901234567890.123",
+        "sensor_id=t1; value=1.0000000000000000000000001",
+        "sensor_id=t1; value=-5",
+        "sensor_id=zone \u00e9; value=21.3",
+        "Sensor_Id=t1; Value=30"
+    })
+    void shouldMatchRegexParserBehaviour(String message) {
+        Optional<SensorMeasurement> expected = parser.parseTemperature(message);
+        Optional<SensorMeasurement> actual = parser.parse(buffer(message), SensorType.TEMPERATURE);
+
+        assertEquals(expected.isPresent(), actual.isPresent());
+        expected.ifPresent(m -> {
+            assertEquals(m.sensorId(), actual.get().sensorId());
+            assertEquals(m.value(), actual.get().value());
+        });
+    }
+
+    @Test
+    @DisplayName("Should not consume the ByteBuf reader index")
+    void shouldNotConsumeByteBufReaderIndex() {
+        ByteBuf content = buffer("sensor_id=h1; value=40");
+
+        Optional<SensorMeasurement> result = parser.parse(content, SensorType.HUMIDITY);
+
+        assertTrue(result.isPresent());
+        assertEquals("h1", result.get().sensorId());
+        assertEquals(0, content.readerIndex());
+    }
+
+    @Test
+    @DisplayName("Should parse newline-separated readings as one batch")
+    void shouldParseNewlineSeparatedBatch() {
+        ByteBuf content = buffer("sensor_id=t1; value=30\r\n\nsensor_id=t2; value=abc\nsensor_id=t3; value=32.5\n");
+
+        List<SensorMeasurement> batch = parser.parseBatch(content, SensorType.TEMPERATURE);
+
+        assertEquals(2, batch.size());
+        assertEquals("t1", batch.get(0).sensorId());
+        assertEquals(30.0, batch.get(0).value());
+        assertEquals("t3", batch.get(1).sensorId());
+        assertEquals(32.5, batch.get(1).value());
+    }
+
+    @Test
+    @DisplayName("Should parse a single reading without newline as a batch of one")
+    void shouldParseSingleReadingAsBatch() {
+        List<SensorMeasurement> batch = parser.parseBatch(buffer("sensor_id=h1; value=40"), SensorType.HUMIDITY);
+
+        assertEquals(1, batch.size());
+        assertEquals("h1", batch.get(0).sensorId());
+    }
+
+    private static ByteBuf buffer(String message) {
+        return Unpooled.copiedBuffer(message, StandardCharsets.UTF_8);
+    }
 }
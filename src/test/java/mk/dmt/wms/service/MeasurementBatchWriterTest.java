@@ -0,0 +1,176 @@
+package mk.dmt.wms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.event.SinkMeasurementEventBus;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for MeasurementBatchWriter.
+ */
+@ExtendWith(MockitoExtension.class)
+class MeasurementBatchWriterTest {
+
+    @Mock
+    private MeasurementPersistenceService persistenceService;
+
+    @Mock
+    private PersistenceSpill spill;
+
+    private PersistenceConfig config;
+    private SimpleMeterRegistry registry;
+    private MeasurementBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        config = new PersistenceConfig();
+        config.setBatchSize(3);
+        config.setBatchLinger(Duration.ofMillis(50));
+        config.setMaxInFlightBatches(2);
+        config.setRetryMinBackoff(Duration.ofMillis(1));
+        registry = new SimpleMeterRegistry();
+        writer = new MeasurementBatchWriter(new SinkMeasurementEventBus(), persistenceService, spill, config, registry);
+    }
+
+    @Test
+    @DisplayName("Should flush a batch as soon as it is full")
+    void shouldFlushFullBatch() {
+        when(persistenceService.saveMeasurements(anyList()))
+                .thenAnswer(invocation -> Mono.just((long) invocation.<List<?>>getArgument(0).size()));
+
+        StepVerifier.create(writer.batches(Flux.range(0, 7).map(MeasurementBatchWriterTest::measurement)))
+                .expectNext(3L, 3L, 1L)
+                .verifyComplete();
+
+        verify(persistenceService, times(3)).saveMeasurements(anyList());
+        assertEquals(3, registry.get("wms.persistence.batch.size").summary().count());
+        assertEquals(7.0, registry.get("wms.persistence.batch.size").summary().totalAmount());
+        assertEquals(3, registry.get("wms.persistence.batch.flush").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should flush a partial batch after the linger time")
+    void shouldFlushPartialBatchAfterLinger() {
+        when(persistenceService.saveMeasurements(anyList())).thenReturn(Mono.just(1L));
+        Sinks.Many<SensorMeasurement> source = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(writer.batches(source.asFlux()))
+                .then(() -> source.tryEmitNext(measurement(1)))
+                .expectNext(1L)
+                .then(source::tryEmitComplete)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Should limit the number of batches written concurrently")
+    void shouldLimitBatchesInFlight() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(persistenceService.saveMeasurements(anyList())).thenAnswer(invocation -> Mono.defer(() -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return Mono.delay(Duration.ofMillis(20)).map(tick -> {
+                inFlight.decrementAndGet();
+                return 3L;
+            });
+        }));
+
+        StepVerifier.create(writer.batches(Flux.range(0, 30).map(MeasurementBatchWriterTest::measurement)))
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertTrue(maxInFlight.get() <= 2, "at most 2 batches in flight, saw " + maxInFlight.get());
+    }
+
+    @Test
+    @DisplayName("Should retry a batch after a transient failure")
+    void shouldRetryTransientFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(persistenceService.saveMeasurements(anyList())).thenReturn(Mono.defer(() -> attempts.incrementAndGet() == 1
+                ? Mono.error(new QueryTimeoutException("statement timeout"))
+                : Mono.just(3L)));
+
+        StepVerifier.create(writer.batches(Flux.range(0, 3).map(MeasurementBatchWriterTest::measurement)))
+                .expectNext(3L)
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, registry.get("wms.persistence.retries").counter().count());
+        assertEquals(0.0, registry.get("wms.persistence.failed").counter().count());
+        assertEquals(0.0, registry.get("wms.persistence.inflight").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should spill a batch that still fails after retries")
+    void shouldSpillBatchAfterRetries() {
+        config.setRetryMaxAttempts(1);
+        when(persistenceService.saveMeasurements(anyList()))
+                .thenReturn(Mono.error(new QueryTimeoutException("statement timeout")));
+        when(spill.spillMeasurements(anyList())).thenReturn(true);
+
+        StepVerifier.create(writer.batches(Flux.range(0, 3).map(MeasurementBatchWriterTest::measurement)))
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(persistenceService).saveMeasurements(anyList());
+        verify(spill).spillMeasurements(argThat(batch -> batch.size() == 3));
+        assertEquals(0.0, registry.get("wms.persistence.failed").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should report rows waiting for a write slot as queued")
+    void shouldReportQueuedRows() {
+        Sinks.Empty<Void> database = Sinks.empty();
+        when(persistenceService.saveMeasurements(anyList())).thenReturn(database.asMono().then(Mono.just(3L)));
+
+        StepVerifier.create(writer.batches(Flux.range(0, 12).map(MeasurementBatchWriterTest::measurement)))
+                .then(() -> {
+                    assertEquals(2.0, registry.get("wms.persistence.inflight").gauge().value());
+                    assertEquals(6.0, registry.get("wms.persistence.queued").gauge().value());
+                    database.tryEmitEmpty();
+                })
+                .expectNextCount(4)
+                .verifyComplete();
+
+        assertEquals(0.0, registry.get("wms.persistence.queued").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should count failed rows and keep writing")
+    void shouldContinueAfterFailedBatch() {
+        when(persistenceService.saveMeasurements(anyList()))
+                .thenReturn(Mono.error(new IllegalStateException("database down")))
+                .thenReturn(Mono.just(3L));
+
+        StepVerifier.create(writer.batches(Flux.range(0, 6).map(MeasurementBatchWriterTest::measurement)))
+                .expectNext(0L, 3L)
+                .verifyComplete();
+
+        assertEquals(3.0, registry.get("wms.persistence.failed").counter().count());
+    }
+
+    private static SensorMeasurement measurement(int i) {
+        return SensorMeasurement.of("t" + i, SensorType.TEMPERATURE, 20.0 + i);
+    }
+}
@@ -0,0 +1,78 @@
+package mk.dmt.wms.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for MeasurementCopyEncoder.
+ */
+class MeasurementCopyEncoderTest {
+
+    private static final Map<String, Integer> SENSORS = Map.of("t1", 7, "h1", 8);
+    private static final Map<String, Integer> WAREHOUSES = Map.of("warehouse-1", 1, "warehouse-2", 2);
+
+    @Test
+    @DisplayName("Should encode one tab-separated line of dictionary keys per measurement")
+    void shouldEncodeRows() {
+        List<SensorMeasurement> measurements = List.of(
+                new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.5, Instant.parse("2026-01-02T03:04:00Z"), "warehouse-1"),
+                new SensorMeasurement("h1", SensorType.HUMIDITY, 40.0, Instant.parse("2026-01-02T03:04:01.5Z"), "warehouse-2"));
+
+        assertEquals("7\t1\t1\t36.5\t2026-01-02 03:04:00.000000\n"
+                        + "8\t2\t2\t40.0\t2026-01-02 03:04:01.500000\n",
+                withDefaultZone("UTC", () -> encode(measurements)));
+    }
+
+    @Test
+    @DisplayName("Should write timestamps as wall-clock time of the default zone, like the INSERT path")
+    void shouldWriteTimestampsInDefaultZone() {
+        List<SensorMeasurement> measurements = List.of(
+                new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.5, Instant.parse("2026-01-02T03:04:00Z"), "warehouse-1"),
+                new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.5, Instant.parse("2026-07-02T03:04:00Z"), "warehouse-1"));
+
+        assertEquals("7\t1\t1\t36.5\t2026-01-02 04:04:00.000000\n"
+                        + "7\t1\t1\t36.5\t2026-07-02 05:04:00.000000\n",
+                withDefaultZone("Europe/Skopje", () -> encode(measurements)));
+    }
+
+    @Test
+    @DisplayName("Should write a missing warehouse and timestamp as \\N")
+    void shouldWriteNulls() {
+        List<SensorMeasurement> measurements = List.of(
+                new SensorMeasurement("t1", SensorType.TEMPERATURE, 1.0, null, null));
+
+        assertEquals("7\t\\N\t1\t1.0\t\\N\n", encode(measurements));
+    }
+
+    private static <T> T withDefaultZone(String zone, Supplier<T> action) {
+        TimeZone previous = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        try {
+            return action.get();
+        } finally {
+            TimeZone.setDefault(previous);
+        }
+    }
+
+    private static String encode(List<SensorMeasurement> measurements) {
+        ByteBuf buf = MeasurementCopyEncoder.encode(measurements, SENSORS::get, WAREHOUSES::get, UnpooledByteBufAllocator.DEFAULT);
+        try {
+            return buf.toString(StandardCharsets.UTF_8);
+        } finally {
+            buf.release();
+        }
+    }
+}
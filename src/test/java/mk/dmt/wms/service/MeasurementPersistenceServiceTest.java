@@ -1,18 +1,29 @@
 package mk.dmt.wms.service;
 
+import mk.dmt.wms.config.PersistenceConfig;
 import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.AlarmEventEntity;
 import mk.dmt.wms.model.SensorMeasurement;
 import mk.dmt.wms.model.SensorType;
 import mk.dmt.wms.repository.AlarmEventRepository;
+import mk.dmt.wms.repository.SensorDictionary;
 import mk.dmt.wms.repository.SensorMeasurementRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -33,6 +44,12 @@ class MeasurementPersistenceServiceTest {
     @Autowired
     private AlarmEventRepository alarmRepository;
 
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SensorDictionary dictionary;
+
     @BeforeEach
     void setUp() {
         // Clean up before each test - commented out to avoid errors before Flyway runs
@@ -183,6 +200,115 @@ class MeasurementPersistenceServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    void shouldKeepOneRowPerAlarmEpisode() {
+        // Given
+        Instant raisedAt = Instant.parse("2026-03-01T10:00:00.123456Z");
+        SensorMeasurement hot = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 36.5, raisedAt, "warehouse-1");
+        SensorMeasurement hotter = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 44.0,
+            raisedAt.plusSeconds(5), "warehouse-1");
+        SensorMeasurement normal = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 30.0,
+            raisedAt.plusSeconds(60), "warehouse-1");
+
+        // When
+        persistenceService.saveAlarm(new AlarmEvent(hot, 35.0, Instant.now(), AlarmEvent.Severity.WARNING)).block();
+        persistenceService.saveAlarm(new AlarmEvent(hotter, 35.0, Instant.now(), AlarmEvent.Severity.CRITICAL,
+            AlarmEvent.State.ESCALATED, raisedAt, 44.0)).block();
+        persistenceService.saveAlarm(new AlarmEvent(normal, 35.0, Instant.now(), AlarmEvent.Severity.CRITICAL,
+            AlarmEvent.State.CLEARED, raisedAt, 44.0)).block();
+
+        // Then
+        StepVerifier.create(alarmRepository.findAll())
+            .assertNext(entity -> {
+                assertThat(entity.getValue()).isEqualTo(36.5);
+                assertThat(entity.getSeverity()).isEqualTo("CRITICAL");
+                assertThat(entity.getPeakValue()).isEqualTo(44.0);
+                assertThat(entity.getTimestamp()).isEqualTo(raisedAt);
+                assertThat(entity.getClearedAt()).isEqualTo(raisedAt.plusSeconds(60));
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldKeepEpisodesPerRule() {
+        // Given
+        Instant raisedAt = Instant.parse("2026-03-01T10:00:00.123456Z");
+        SensorMeasurement hot = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 36.5, raisedAt, "warehouse-1");
+        SensorMeasurement normal = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 30.0,
+            raisedAt.plusSeconds(60), "warehouse-1");
+
+        // When
+        persistenceService.saveAlarm(new AlarmEvent(hot, 35.0, Instant.now(), AlarmEvent.Severity.WARNING)).block();
+        persistenceService.saveAlarm(new AlarmEvent(hot, 30.0, Instant.now(), AlarmEvent.Severity.WARNING,
+            AlarmEvent.State.RAISED, raisedAt, 31.0, "avg-5m")).block();
+        persistenceService.saveAlarm(new AlarmEvent(normal, 30.0, Instant.now(), AlarmEvent.Severity.WARNING,
+            AlarmEvent.State.CLEARED, raisedAt, 31.5, "avg-5m")).block();
+
+        // Then
+        StepVerifier.create(alarmRepository.findAll().sort(Comparator.comparing(AlarmEventEntity::getRule)))
+            .assertNext(entity -> {
+                assertThat(entity.getRule()).isEqualTo("avg-5m");
+                assertThat(entity.getPeakValue()).isEqualTo(31.5);
+                assertThat(entity.getClearedAt()).isEqualTo(raisedAt.plusSeconds(60));
+            })
+            .assertNext(entity -> {
+                assertThat(entity.getRule()).isEqualTo(AlarmEvent.THRESHOLD_RULE);
+                assertThat(entity.getClearedAt()).isNull();
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldInsertEpisodeWhoseRaiseIsMissing() {
+        // Given
+        Instant raisedAt = Instant.parse("2026-03-01T10:00:00Z");
+        SensorMeasurement normal = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 30.0,
+            raisedAt.plusSeconds(60), "warehouse-1");
+
+        // When
+        persistenceService.saveAlarm(new AlarmEvent(normal, 35.0, Instant.now(), AlarmEvent.Severity.HIGH,
+            AlarmEvent.State.CLEARED, raisedAt, 39.0)).block();
+
+        // Then
+        StepVerifier.create(alarmRepository.findAll())
+            .assertNext(entity -> {
+                assertThat(entity.getTimestamp()).isEqualTo(raisedAt);
+                assertThat(entity.getClearedAt()).isEqualTo(raisedAt.plusSeconds(60));
+                assertThat(entity.getPeakValue()).isEqualTo(39.0);
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldMergeRacingAndReplayedWritesOfOneEpisode() {
+        // Given
+        Instant raisedAt = Instant.parse("2026-03-01T10:00:00Z");
+        SensorMeasurement hot = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 36.5, raisedAt, "warehouse-1");
+        SensorMeasurement hotter = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 44.0,
+            raisedAt.plusSeconds(5), "warehouse-1");
+        SensorMeasurement normal = new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 30.0,
+            raisedAt.plusSeconds(60), "warehouse-1");
+
+        // When: the clear is stored first, then the raise and escalation arrive concurrently
+        persistenceService.saveAlarm(new AlarmEvent(normal, 35.0, Instant.now(), AlarmEvent.Severity.CRITICAL,
+            AlarmEvent.State.CLEARED, raisedAt, 44.0)).block();
+        Mono.when(
+            persistenceService.saveAlarm(new AlarmEvent(hot, 35.0, Instant.now(), AlarmEvent.Severity.WARNING))
+                .subscribeOn(Schedulers.parallel()),
+            persistenceService.saveAlarm(new AlarmEvent(hotter, 35.0, Instant.now(), AlarmEvent.Severity.CRITICAL,
+                AlarmEvent.State.ESCALATED, raisedAt, 44.0)).subscribeOn(Schedulers.parallel())
+        ).block();
+
+        // Then
+        StepVerifier.create(alarmRepository.findAll())
+            .assertNext(entity -> {
+                assertThat(entity.getSeverity()).isEqualTo("CRITICAL");
+                assertThat(entity.getPeakValue()).isEqualTo(44.0);
+                assertThat(entity.getClearedAt()).isEqualTo(raisedAt.plusSeconds(60));
+            })
+            .verifyComplete();
+    }
+
     @Test
     void shouldGetTotalAlarmCount() {
         // Given
@@ -197,6 +323,105 @@ class MeasurementPersistenceServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    void shouldPersistBatchWithSingleInsert() {
+        // Given
+        List<SensorMeasurement> batch = List.of(
+            new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 21.5, Instant.now(), "warehouse-1"),
+            new SensorMeasurement("zone_b", SensorType.HUMIDITY, 48.0, Instant.now(), "warehouse-1"),
+            new SensorMeasurement("zone_c", SensorType.TEMPERATURE, 36.0, Instant.now(), "warehouse-2")
+        );
+
+        // When & Then
+        StepVerifier.create(persistenceService.saveMeasurements(batch))
+            .expectNext(3L)
+            .verifyComplete();
+
+        StepVerifier.create(persistenceService.getMeasurementHistory("zone_b", 10))
+            .assertNext(measurement -> {
+                assertThat(measurement.sensorType()).isEqualTo(SensorType.HUMIDITY);
+                assertThat(measurement.value()).isEqualTo(48.0);
+                assertThat(measurement.warehouseId()).isEqualTo("warehouse-1");
+            })
+            .verifyComplete();
+
+        StepVerifier.create(measurementRepository.count())
+            .expectNext(3L)
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldSplitBatchesBeyondTheBindParameterLimit() {
+        // Given - more rows than fit into one statement of at least four columns
+        int rows = MeasurementPersistenceService.rowsPerStatement(4) + 100;
+        Instant now = Instant.now();
+        List<SensorMeasurement> batch = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new SensorMeasurement("zone_" + (i % 10), SensorType.TEMPERATURE, 20.0, now.plusMillis(i),
+                "warehouse-1"));
+        }
+
+        // When & Then
+        assertThat(MeasurementPersistenceService.rowsPerStatement(6) * 6)
+            .isLessThanOrEqualTo(MeasurementPersistenceService.MAX_BIND_PARAMETERS);
+        StepVerifier.create(persistenceService.saveMeasurements(batch))
+            .expectNext((long) rows)
+            .verifyComplete();
+        StepVerifier.create(measurementRepository.count())
+            .expectNext((long) rows)
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldIgnoreEmptyBatch() {
+        StepVerifier.create(persistenceService.saveMeasurements(List.of()))
+            .expectNext(0L)
+            .verifyComplete();
+    }
+
+    @Test
+    void shouldResolveUnknownIdsInBulk() {
+        // Given - more new ids than fit in one batch, partly known already
+        List<String> sensorIds = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            sensorIds.add("bulk_" + i);
+        }
+        dictionary.resolveAll(sensorIds.subList(0, 10), List.of("bulk-warehouse")).block();
+
+        // When - two writers resolve the same ids at once
+        StepVerifier.create(Mono.when(
+                dictionary.resolveAll(sensorIds, List.of("bulk-warehouse")),
+                dictionary.resolveAll(sensorIds, List.of("bulk-warehouse"))))
+            .verifyComplete();
+
+        // Then - every id has its own key
+        Set<Integer> keys = new HashSet<>();
+        for (String sensorId : sensorIds) {
+            assertThat(dictionary.cachedSensorRef(sensorId)).isNotNull();
+            keys.add(dictionary.cachedSensorRef(sensorId));
+        }
+        assertThat(keys).hasSize(1500);
+        assertThat(dictionary.cachedWarehouseRef("bulk-warehouse")).isNotNull();
+    }
+
+    @Test
+    void shouldFallBackToInsertWhenCopyIsNotSupported() {
+        // Given - COPY requested on H2
+        PersistenceConfig config = new PersistenceConfig();
+        config.setWriteMode(PersistenceConfig.WriteMode.COPY);
+        MeasurementPersistenceService copyService =
+            new MeasurementPersistenceService(measurementRepository, alarmRepository, template, dictionary, config);
+        List<SensorMeasurement> batch = List.of(
+            new SensorMeasurement("zone_a", SensorType.TEMPERATURE, 21.5, Instant.now(), "warehouse-1"),
+            new SensorMeasurement("zone_b", SensorType.HUMIDITY, 48.0, Instant.now(), "warehouse-1")
+        );
+
+        // When & Then
+        StepVerifier.create(copyService.saveMeasurements(batch))
+            .expectNext(2L)
+            .verifyComplete();
+    }
+
     @Test
     void shouldHandleMultipleMeasurementsConcurrently() {
         // Given - Create multiple measurements
@@ -229,4 +454,3 @@ class MeasurementPersistenceServiceTest {
             .verifyComplete();
     }
 }
-
@@ -0,0 +1,318 @@
+package mk.dmt.wms.service;
+
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.config.RollupConfig;
+import mk.dmt.wms.event.MeasurementEventBus;
+import mk.dmt.wms.model.MeasurementAggregate;
+import mk.dmt.wms.model.MeasurementRollup;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import mk.dmt.wms.repository.MeasurementRollupRepository;
+import mk.dmt.wms.repository.MeasurementRollupRepository.Resolution;
+import mk.dmt.wms.repository.SensorDictionary;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.TestPropertySource;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Integration tests for MeasurementRollups against the H2 rollup tables.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(locations = "classpath:application-test.properties")
+class MeasurementRollupsTest {
+
+    private static final Instant START = Instant.parse("2026-03-01T10:00:00Z");
+
+    @Autowired
+    private MeasurementRollups rollups;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private MeasurementRollupRepository repository;
+
+    @Autowired
+    private SensorDictionary dictionary;
+
+    @Autowired
+    private MeasurementEventBus eventBus;
+
+    @Autowired
+    private RollupConfig rollupConfig;
+
+    @Autowired
+    private PersistenceConfig persistenceConfig;
+
+    @BeforeEach
+    void setUp() {
+        rollups.flush(Instant.MAX).block();
+        databaseClient.sql("delete from measurement_rollup_1m").then().block();
+        databaseClient.sql("delete from measurement_rollup_1h").then().block();
+    }
+
+    @Test
+    @DisplayName("Should aggregate a sensor per bucket from minute rollups")
+    void shouldAggregateSensorPerBucket() {
+        // Given - three readings in 10:00 and two in 10:01, plus one outside the range
+        rollups.accumulate(List.of(
+            measurement("zone_a", SensorType.TEMPERATURE, 21.0, 5, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 25.0, 50, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 23.0, 30, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 30.0, 61, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 20.0, 70, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 99.0, 7200, "warehouse-1"),
+            measurement("zone_b", SensorType.TEMPERATURE, 50.0, 10, "warehouse-1")));
+        rollups.flush(Instant.MAX).block();
+
+        // When & Then
+        StepVerifier.create(rollups.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(3600)))
+            .expectNext(new MeasurementAggregate(START, 3, 21.0, 25.0, 23.0, 25.0))
+            .expectNext(new MeasurementAggregate(START.plusSeconds(60), 2, 20.0, 30.0, 25.0, 20.0))
+            .verifyComplete();
+        StepVerifier.create(rollups.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.FIVE_MINUTES,
+                START, START.plusSeconds(3600)))
+            .expectNext(new MeasurementAggregate(START, 5, 20.0, 30.0, 23.8, 20.0))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should aggregate a sensor type and a warehouse from hour rollups")
+    void shouldAggregateSensorTypeAndWarehouse() {
+        // Given
+        rollups.accumulate(List.of(
+            measurement("zone_a", SensorType.TEMPERATURE, 20.0, 60, "warehouse-1"),
+            measurement("zone_b", SensorType.TEMPERATURE, 30.0, 1800, "warehouse-2"),
+            measurement("zone_c", SensorType.HUMIDITY, 45.0, 120, "warehouse-1")));
+        rollups.flush(Instant.MAX).block();
+
+        // When & Then
+        StepVerifier.create(rollups.getSensorTypeAggregates("TEMPERATURE", MeasurementAggregate.Bucket.ONE_HOUR,
+                START, START.plusSeconds(3600)))
+            .expectNext(new MeasurementAggregate(START, 2, 20.0, 30.0, 25.0, 30.0))
+            .verifyComplete();
+        Instant day = LocalDate.parse("2026-03-01").atStartOfDay(ZoneId.systemDefault()).toInstant();
+        StepVerifier.create(rollups.getWarehouseAggregates("warehouse-1", MeasurementAggregate.Bucket.ONE_DAY,
+                START, START.plusSeconds(3600)))
+            .expectNext(new MeasurementAggregate(day, 2, 20.0, 45.0, 32.5, 45.0))
+            .verifyComplete();
+        StepVerifier.create(rollups.getSensorTypeAggregates("PRESSURE", MeasurementAggregate.Bucket.ONE_HOUR,
+                START, START.plusSeconds(3600)))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should keep buckets in memory until they are closed")
+    void shouldFlushOnlyClosedBuckets() {
+        // Given
+        rollups.accumulate(List.of(measurement("zone_a", SensorType.TEMPERATURE, 20.0, 10, "warehouse-1")));
+
+        // When - the minute bucket is closed, the hour bucket is not
+        rollups.flush(START.plusSeconds(120)).block();
+
+        // Then
+        assertThat(rollups.getOpenBucketCount()).isEqualTo(1);
+        assertThat(count("measurement_rollup_1m")).isEqualTo(1);
+        assertThat(count("measurement_rollup_1h")).isZero();
+
+        // When - the hour is over as well
+        rollups.flush(START.plusSeconds(3700)).block();
+
+        // Then
+        assertThat(rollups.getOpenBucketCount()).isZero();
+        assertThat(count("measurement_rollup_1h")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should merge late measurements into a written bucket")
+    void shouldMergeLateMeasurements() {
+        // Given - a written bucket
+        rollups.accumulate(List.of(
+            measurement("zone_a", SensorType.TEMPERATURE, 20.0, 10, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 22.0, 40, "warehouse-1")));
+        rollups.flush(Instant.MAX).block();
+
+        // When - late measurements for the same minute, one older than the last one written
+        rollups.accumulate(List.of(
+            measurement("zone_a", SensorType.TEMPERATURE, 10.0, 30, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 30.0, 50, "warehouse-1")));
+        rollups.flush(Instant.MAX).block();
+
+        // Then
+        assertThat(count("measurement_rollup_1m")).isEqualTo(1);
+        StepVerifier.create(rollups.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .expectNext(new MeasurementAggregate(START, 4, 10.0, 30.0, 20.5, 30.0))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should include buckets still open in memory in the aggregates")
+    void shouldAggregateOpenBuckets() {
+        // Given - 10:00 is written, a late reading for it and the 10:01 reading are still open
+        rollups.accumulate(List.of(measurement("zone_a", SensorType.TEMPERATURE, 20.0, 10, "warehouse-1")));
+        rollups.flush(START.plusSeconds(120)).block();
+        rollups.accumulate(List.of(
+            measurement("zone_a", SensorType.TEMPERATURE, 30.0, 20, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 25.0, 70, "warehouse-1"),
+            measurement("zone_b", SensorType.HUMIDITY, 50.0, 70, "warehouse-2")));
+
+        // When & Then
+        StepVerifier.create(rollups.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(3600)))
+            .expectNext(new MeasurementAggregate(START, 2, 20.0, 30.0, 25.0, 30.0))
+            .expectNext(new MeasurementAggregate(START.plusSeconds(60), 1, 25.0, 25.0, 25.0, 25.0))
+            .verifyComplete();
+        StepVerifier.create(rollups.getWarehouseAggregates("warehouse-1", MeasurementAggregate.Bucket.ONE_HOUR,
+                START, START.plusSeconds(3600)))
+            .expectNext(new MeasurementAggregate(START, 3, 20.0, 30.0, 25.0, 25.0))
+            .verifyComplete();
+        StepVerifier.create(rollups.getSensorTypeAggregates("HUMIDITY", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should keep aggregates complete while a rollup write fails or its outcome is unknown")
+    void shouldAggregateUnwrittenBuckets() {
+        // Given - a rollup writer whose database first rejects writes, then commits but reports a failure
+        AtomicInteger mode = new AtomicInteger();
+        MeasurementRollupRepository failing = spy(new MeasurementRollupRepository(databaseClient, dictionary));
+        doAnswer(invocation -> {
+            Mono<Long> merge = repository.merge(invocation.getArgument(0), invocation.getArgument(1),
+                invocation.getArgument(2));
+            return switch (mode.get()) {
+                case 0 -> Mono.error(new DataIntegrityViolationException("rejected"));
+                case 1 -> merge.then(Mono.error(new DataIntegrityViolationException("lost reply")));
+                default -> merge;
+            };
+        }).when(failing).merge(any(), anyLong(), any());
+        MeasurementRollups writer = new MeasurementRollups(eventBus, failing, rollupConfig, persistenceConfig);
+        writer.accumulate(List.of(
+            measurement("zone_a", SensorType.TEMPERATURE, 20.0, 10, "warehouse-1"),
+            measurement("zone_a", SensorType.TEMPERATURE, 30.0, 20, "warehouse-1")));
+        MeasurementAggregate expected = new MeasurementAggregate(START, 2, 20.0, 30.0, 25.0, 30.0);
+
+        // When & Then - the write of the closed minute fails: it is served from memory
+        writer.flush(START.plusSeconds(120)).block();
+        assertThat(writer.getOpenBucketCount()).isEqualTo(1);
+        StepVerifier.create(writer.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .expectNext(expected)
+            .verifyComplete();
+
+        // When & Then - the repeated write commits unnoticed: it is stored and counted once
+        mode.set(1);
+        writer.flush(START.plusSeconds(120)).block();
+        assertThat(count("measurement_rollup_1m")).isEqualTo(1);
+        StepVerifier.create(writer.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .expectNext(expected)
+            .verifyComplete();
+
+        // When & Then - the next repeat succeeds without changing the row
+        mode.set(2);
+        writer.flush(START.plusSeconds(120)).block();
+        StepVerifier.create(writer.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .expectNext(expected)
+            .verifyComplete();
+        StepVerifier.create(rollups.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .expectNext(expected)
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should not merge a repeated rollup write twice")
+    void shouldIgnoreRepeatedWrite() {
+        // Given
+        List<MeasurementRollup> rollup = List.of(new MeasurementRollup("zone_a", SensorType.TEMPERATURE,
+            "warehouse-1", START, 20.0, 30.0, 50.0, 2, 30.0, START.plusSeconds(30)));
+
+        // When - the same write twice, e.g. retried after a timeout, then another one
+        repository.merge(Resolution.MINUTE, 1, rollup).block();
+        repository.merge(Resolution.MINUTE, 1, rollup).block();
+        repository.merge(Resolution.MINUTE, 2, rollup).block();
+
+        // Then
+        StepVerifier.create(rollups.getSensorAggregates("zone_a", MeasurementAggregate.Bucket.ONE_MINUTE,
+                START, START.plusSeconds(60)))
+            .expectNext(new MeasurementAggregate(START, 4, 20.0, 30.0, 25.0, 30.0))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should backfill rollups from measurements stored before they were introduced")
+    void shouldBackfillRollups() throws SQLException {
+        String url = "jdbc:h2:mem:backfill;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE";
+        FluentConfiguration flyway = Flyway.configure()
+            .placeholderReplacement(false)
+            .locations("classpath:db/migration", "classpath:db/vendor/h2")
+            .dataSource(url, "sa", "");
+        flyway.target("5").load().migrate();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("insert into sensors (id, sensor_key) values (1, 'zone_a')");
+            statement.execute("insert into warehouses (id, warehouse_key) values (1, 'warehouse-1')");
+            statement.execute("insert into sensor_measurements (sensor_ref, warehouse_ref, sensor_type, measurement_value, updated_at)"
+                + " values (1, 1, 1, 20.0, timestamp '2026-03-01 10:00:10'), (1, 1, 1, 30.0, timestamp '2026-03-01 10:00:40'),"
+                + " (1, 1, 1, 25.0, timestamp '2026-03-01 10:01:05')");
+
+            flyway.target("6").load().migrate();
+
+            ResultSet minutes = statement.executeQuery("select count(*), sum(sample_count) from measurement_rollup_1m");
+            assertThat(minutes.next()).isTrue();
+            assertThat(minutes.getLong(1)).isEqualTo(2);
+            assertThat(minutes.getLong(2)).isEqualTo(3);
+            ResultSet hour = statement.executeQuery("select min_value, max_value, sum_value, sample_count, last_value"
+                + " from measurement_rollup_1h where bucket_start = timestamp '2026-03-01 10:00:00'");
+            assertThat(hour.next()).isTrue();
+            assertThat(hour.getDouble(1)).isEqualTo(20.0);
+            assertThat(hour.getDouble(2)).isEqualTo(30.0);
+            assertThat(hour.getDouble(3)).isEqualTo(75.0);
+            assertThat(hour.getLong(4)).isEqualTo(3);
+            assertThat(hour.getDouble(5)).isEqualTo(25.0);
+            assertThat(hour.next()).isFalse();
+        }
+    }
+
+    private static SensorMeasurement measurement(String sensorId, SensorType type, double value,
+                                                 long offsetSeconds, String warehouseId) {
+        return new SensorMeasurement(sensorId, type, value, START.plusSeconds(offsetSeconds), warehouseId);
+    }
+
+    private long count(String table) {
+        return databaseClient.sql("select count(*) from " + table)
+            .map(row -> row.get(0, Long.class))
+            .one()
+            .block();
+    }
+}
@@ -0,0 +1,57 @@
+package mk.dmt.wms.service;
+
+import mk.dmt.wms.config.PersistenceConfig;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the partition naming and expiry rules of PartitionMaintenance.
+ */
+class PartitionMaintenanceTest {
+
+    @Test
+    @DisplayName("Should name daily partitions after their table and day")
+    void shouldNamePartitions() {
+        assertEquals("sensor_measurements_p20260105",
+                PartitionMaintenance.partitionName("sensor_measurements", LocalDate.of(2026, 1, 5)));
+    }
+
+    @Test
+    @DisplayName("Should expire only partitions that end before the cutoff")
+    void shouldExpirePartitionsEndingBeforeCutoff() {
+        LocalDateTime cutoff = LocalDateTime.of(2026, 1, 10, 12, 0);
+
+        assertTrue(PartitionMaintenance.isExpired("alarm_events", "alarm_events_p20260108", cutoff));
+        assertTrue(PartitionMaintenance.isExpired("alarm_events", "alarm_events_p20260109", cutoff));
+        // Still holds rows newer than the cutoff
+        assertFalse(PartitionMaintenance.isExpired("alarm_events", "alarm_events_p20260110", cutoff));
+        assertFalse(PartitionMaintenance.isExpired("alarm_events", "alarm_events_p20260111", cutoff));
+    }
+
+    @Test
+    @DisplayName("Should never expire the default partition or partitions of other tables")
+    void shouldIgnoreOtherPartitions() {
+        LocalDateTime cutoff = LocalDateTime.of(2026, 1, 10, 0, 0);
+
+        assertFalse(PartitionMaintenance.isExpired("alarm_events", "alarm_events_default", cutoff));
+        assertFalse(PartitionMaintenance.isExpired("alarm_events", "sensor_measurements_p20250101", cutoff));
+        assertFalse(PartitionMaintenance.isExpired("alarm_events", "alarm_events_p2025xx01", cutoff));
+    }
+
+    @Test
+    @DisplayName("Should take days and the cutoff from wall-clock time of the default zone")
+    void shouldUseWallClockTimeOfDefaultZone() {
+        Clock clock = Clock.fixed(Instant.parse("2026-01-09T23:30:00Z"), ZoneId.of("Europe/Skopje"));
+        PartitionMaintenance maintenance = new PartitionMaintenance(null, new PersistenceConfig(), clock);
+
+        assertEquals(LocalDateTime.of(2026, 1, 10, 0, 30), maintenance.wallClockNow());
+    }
+}
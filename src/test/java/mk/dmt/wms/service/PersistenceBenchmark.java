@@ -0,0 +1,152 @@
+package mk.dmt.wms.service;
+
+import ch.qos.logback.classic.Level;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import mk.dmt.wms.repository.AlarmEventRepository;
+import mk.dmt.wms.repository.SensorDictionary;
+import mk.dmt.wms.repository.SensorMeasurementRepository;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second written to {@code sensor_measurements} by one save per measurement (the
+ * pre-batching behaviour, with as many concurrent saves as pooled connections), batched
+ * multi-row INSERT and COPY. Needs a running PostgreSQL, configured with the same
+ * DB_HOST, DB_PORT, DB_NAME, DB_USER and DB_PASSWORD variables as the application; the schema is
+ * migrated on setup and the table is truncated after every iteration.
+ * Run with: ./mvnw test-compile exec:java -Dexec.mainClass=mk.dmt.wms.service.PersistenceBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int POOL_SIZE = 10;
+
+    private ConnectionPool pool;
+    private R2dbcEntityTemplate template;
+    private MeasurementPersistenceService insertService;
+    private MeasurementPersistenceService copyService;
+    private List<SensorMeasurement> batch;
+
+    @Setup
+    public void setUp() {
+        // Outside Spring, logback defaults to DEBUG; measure the production (INFO) code path
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        String host = env("DB_HOST", "localhost");
+        String port = env("DB_PORT", "5432");
+        String database = env("DB_NAME", "wmsdb");
+        String user = env("DB_USER", "postgres");
+        String password = env("DB_PASSWORD", "postgres");
+
+        Flyway.configure()
+                .baselineOnMigrate(true)
+                .placeholderReplacement(false)
+                .dataSource("jdbc:postgresql://" + host + ":" + port + "/" + database, user, password)
+                .load()
+                .migrate();
+
+        ConnectionFactory factory = ConnectionFactories.get(
+                "r2dbc:postgresql://" + user + ":" + password + "@" + host + ":" + port + "/" + database);
+        pool = new ConnectionPool(ConnectionPoolConfiguration.builder(factory)
+                .maxSize(POOL_SIZE)
+                .build());
+        template = new R2dbcEntityTemplate(pool);
+        R2dbcRepositoryFactory repositories = new R2dbcRepositoryFactory(template);
+        SensorMeasurementRepository measurementRepository = repositories.getRepository(SensorMeasurementRepository.class);
+        AlarmEventRepository alarmRepository = repositories.getRepository(AlarmEventRepository.class);
+        SensorDictionary dictionary = new SensorDictionary(template.getDatabaseClient());
+
+        PersistenceConfig insertConfig = new PersistenceConfig();
+        insertConfig.setWriteMode(PersistenceConfig.WriteMode.INSERT);
+        insertService = new MeasurementPersistenceService(measurementRepository, alarmRepository, template, dictionary, insertConfig);
+        PersistenceConfig copyConfig = new PersistenceConfig();
+        copyConfig.setWriteMode(PersistenceConfig.WriteMode.COPY);
+        copyService = new MeasurementPersistenceService(measurementRepository, alarmRepository, template, dictionary, copyConfig);
+
+        batch = new ArrayList<>(BATCH_SIZE);
+        Instant now = Instant.now();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new SensorMeasurement("zone_" + (i % 64),
+                    i % 2 == 0 ? SensorType.TEMPERATURE : SensorType.HUMIDITY,
+                    20.0 + i % 30, now.plusMillis(i), "warehouse-1"));
+        }
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void truncate() {
+        template.getDatabaseClient().sql("truncate table sensor_measurements").then().block();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void singleSave() {
+        Flux.fromIterable(batch)
+                .flatMap(insertService::saveMeasurement, POOL_SIZE)
+                .then()
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Long batchedInsert() {
+        return insertService.saveMeasurements(batch).block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Long copy() {
+        return copyService.saveMeasurements(batch).block();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PersistenceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
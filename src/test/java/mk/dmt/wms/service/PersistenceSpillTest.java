@@ -0,0 +1,149 @@
+package mk.dmt.wms.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mk.dmt.wms.config.PersistenceConfig;
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.AlarmEventEntity;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for PersistenceSpill.
+ */
+class PersistenceSpillTest {
+
+    @TempDir
+    Path directory;
+
+    private MeasurementPersistenceService persistenceService;
+    private PersistenceConfig config;
+    private PersistenceSpill spill;
+
+    @BeforeEach
+    void setUp() {
+        persistenceService = mock(MeasurementPersistenceService.class);
+        config = new PersistenceConfig();
+        config.setSpillDirectory(directory.toString());
+        spill = new PersistenceSpill(persistenceService, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        spill.stop();
+    }
+
+    @Test
+    @DisplayName("Should replay spilled measurements and alarms in spill order")
+    void shouldReplayInOrder() {
+        List<List<SensorMeasurement>> written = new ArrayList<>();
+        when(persistenceService.saveMeasurements(anyList())).thenAnswer(invocation -> {
+            List<SensorMeasurement> batch = invocation.getArgument(0);
+            written.add(batch);
+            return Mono.just((long) batch.size());
+        });
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.just(new AlarmEventEntity()));
+        List<SensorMeasurement> first = List.of(measurement("t1", 21.0), measurement("t2", 22.0));
+        List<SensorMeasurement> second = List.of(measurement("t3", 23.0));
+        AlarmEvent alarm = new AlarmEvent(measurement("t4", 40.0), 35.0, Instant.now(), AlarmEvent.Severity.HIGH);
+
+        assertTrue(spill.spillMeasurements(first));
+        assertTrue(spill.spillMeasurements(second));
+        assertTrue(spill.spillAlarm(alarm));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        spill.bindTo(registry);
+
+        StepVerifier.create(spill.replay()).verifyComplete();
+
+        assertEquals(List.of(first, second), written);
+        verify(persistenceService).saveAlarm(alarm);
+        assertTrue(spill.isEmpty());
+        assertEquals(3.0, registry.get("wms.persistence.replayed").tag("stream", "measurements").functionCounter().count());
+        assertEquals(1.0, registry.get("wms.persistence.replayed").tag("stream", "alarms").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should keep spilled records while the database is unavailable")
+    void shouldKeepRecordsOnTransientFailure() {
+        when(persistenceService.saveMeasurements(anyList()))
+                .thenReturn(Mono.error(new TransientDataAccessResourceException("database down")))
+                .thenReturn(Mono.just(1L));
+        when(persistenceService.saveAlarm(any())).thenReturn(Mono.just(new AlarmEventEntity()));
+        assertTrue(spill.spillMeasurements(List.of(measurement("t1", 21.0))));
+
+        StepVerifier.create(spill.replay()).verifyComplete();
+        assertFalse(spill.isEmpty());
+        verify(persistenceService, never()).saveAlarm(any());
+
+        StepVerifier.create(spill.replay()).verifyComplete();
+        assertTrue(spill.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should discard spilled records the database rejects permanently")
+    void shouldDiscardPermanentlyRejectedRecords() {
+        when(persistenceService.saveMeasurements(anyList()))
+                .thenReturn(Mono.error(new DataIntegrityViolationException("constraint violated")))
+                .thenReturn(Mono.just(1L));
+        assertTrue(spill.spillMeasurements(List.of(measurement("t1", 21.0))));
+        assertTrue(spill.spillMeasurements(List.of(measurement("t2", 22.0))));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        spill.bindTo(registry);
+
+        StepVerifier.create(spill.replay()).verifyComplete();
+
+        assertTrue(spill.isEmpty());
+        assertEquals(1.0, registry.get("wms.persistence.spill.discarded").tag("stream", "measurements").functionCounter().count());
+        assertEquals(1.0, registry.get("wms.persistence.replayed").tag("stream", "measurements").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should refuse records once the spill reaches its size cap")
+    void shouldRefuseRecordsWhenFull() {
+        spill.stop();
+        config.setSpillMaxSize(DataSize.ofBytes(96));
+        spill = new PersistenceSpill(persistenceService, config);
+
+        assertTrue(spill.spillMeasurements(List.of(measurement("t1", 21.0), measurement("t2", 22.0))));
+        assertFalse(spill.spillMeasurements(List.of(measurement("t3", 23.0))));
+        assertFalse(spill.spillAlarm(new AlarmEvent(measurement("t4", 40.0), 35.0, Instant.now(), AlarmEvent.Severity.HIGH)));
+    }
+
+    @Test
+    @DisplayName("Should keep spilled records across a restart")
+    void shouldKeepRecordsAcrossRestart() {
+        List<SensorMeasurement> batch = List.of(measurement("t1", 21.0));
+        assertTrue(spill.spillMeasurements(batch));
+        spill.stop();
+
+        spill = new PersistenceSpill(persistenceService, config);
+        when(persistenceService.saveMeasurements(anyList())).thenReturn(Mono.just(1L));
+        StepVerifier.create(spill.replay()).verifyComplete();
+
+        verify(persistenceService).saveMeasurements(batch);
+        assertTrue(spill.isEmpty());
+    }
+
+    private static SensorMeasurement measurement(String sensorId, double value) {
+        return new SensorMeasurement(sensorId, SensorType.TEMPERATURE, value, Instant.ofEpochMilli(1_000), "warehouse-1");
+    }
+}
@@ -0,0 +1,169 @@
+package mk.dmt.wms.spill;
+
+import mk.dmt.wms.event.AlarmEvent;
+import mk.dmt.wms.model.SensorMeasurement;
+import mk.dmt.wms.model.SensorType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<SensorMeasurement> first = List.of(
+            new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.5, Instant.ofEpochMilli(1_000), "warehouse-1"),
+            new SensorMeasurement("h1", SensorType.HUMIDITY, 55.0, Instant.ofEpochMilli(2_000), "warehouse-2"));
+    private final List<SensorMeasurement> second = List.of(
+            new SensorMeasurement("t2", SensorType.TEMPERATURE, 20.0, Instant.ofEpochMilli(3_000), "warehouse-1"));
+
+    @Test
+    @DisplayName("Should return records in append order and truncate when drained")
+    void shouldReturnRecordsInOrder() throws IOException {
+        Path file = directory.resolve("test.spill");
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(file, 1024)) {
+            assertTrue(spillLog.append(first));
+            assertTrue(spillLog.append(second));
+            assertEquals(2, spillLog.getRecordCount());
+
+            assertEquals(first, spillLog.peek());
+            assertEquals(first, spillLog.peek());
+            spillLog.remove();
+            assertEquals(second, spillLog.peek());
+            spillLog.remove();
+
+            assertNull(spillLog.peek());
+            assertTrue(spillLog.isEmpty());
+            assertEquals(0, Files.size(file));
+        }
+    }
+
+    @Test
+    @DisplayName("Should round-trip alarms through the alarm codec")
+    void shouldRoundTripAlarms() throws IOException {
+        AlarmEvent alarm = new AlarmEvent(first.get(0), 35.0, Instant.ofEpochSecond(5, 123_456_789), AlarmEvent.Severity.HIGH);
+        try (SpillLog<AlarmEvent> spillLog = new SpillLog<>(directory.resolve("alarms.spill"), 1024, new AlarmEventCodec())) {
+            assertTrue(spillLog.append(alarm));
+            assertEquals(alarm, spillLog.peek());
+            spillLog.remove();
+
+            AlarmEvent cleared = new AlarmEvent(first.get(0), 35.0, Instant.ofEpochSecond(9), AlarmEvent.Severity.CRITICAL,
+                    AlarmEvent.State.CLEARED, Instant.ofEpochSecond(3, 456_000), 44.5);
+            assertTrue(spillLog.append(cleared));
+            assertEquals(cleared, spillLog.peek());
+            spillLog.remove();
+
+            AlarmEvent windowed = new AlarmEvent(first.get(0), 3.0, Instant.ofEpochSecond(11), AlarmEvent.Severity.HIGH,
+                    AlarmEvent.State.RAISED, Instant.ofEpochSecond(11), 3.4, "rise-per-minute");
+            assertTrue(spillLog.append(windowed));
+            assertEquals(windowed, spillLog.peek());
+        }
+    }
+
+    @Test
+    @DisplayName("Should round-trip a missing warehouse and reject ids too long to encode")
+    void shouldHandleNullAndOversizedStrings() throws IOException {
+        List<SensorMeasurement> noWarehouse = List.of(
+                new SensorMeasurement("t1", SensorType.TEMPERATURE, 36.5, Instant.ofEpochMilli(1_000), null));
+        List<SensorMeasurement> longId = List.of(new SensorMeasurement("x".repeat(MeasurementBatchCodec.MAX_STRING_BYTES + 1),
+                SensorType.TEMPERATURE, 36.5, Instant.ofEpochMilli(1_000), "warehouse-1"));
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(directory.resolve("test.spill"), 1 << 20)) {
+            assertTrue(spillLog.append(noWarehouse));
+            assertFalse(spillLog.append(longId));
+            assertEquals(noWarehouse, spillLog.peek());
+            assertEquals(1, spillLog.getRecordCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject records beyond the size limit")
+    void shouldRejectRecordsBeyondSizeLimit() throws IOException {
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(directory.resolve("test.spill"), 100)) {
+            assertTrue(spillLog.append(first));
+            assertFalse(spillLog.append(second));
+            assertEquals(1, spillLog.getRecordCount());
+        }
+    }
+
+    @Test
+    @DisplayName("Should compact read records so a log that never drains stays within its limit")
+    void shouldCompactReadRecords() throws IOException {
+        Path file = directory.resolve("test.spill");
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(file, 512)) {
+            assertTrue(spillLog.append(first));
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(spillLog.append(i % 2 == 0 ? second : first), "append " + i);
+                spillLog.remove();
+                assertTrue(Files.size(file) <= 512);
+                assertEquals(spillLog.getFileSizeBytes(), Files.size(file));
+                assertEquals(1, spillLog.getRecordCount());
+            }
+            assertEquals(first, spillLog.peek());
+        }
+        try (SpillLog<List<SensorMeasurement>> reopened = open(file, 512)) {
+            assertEquals(1, reopened.getRecordCount());
+            assertEquals(first, reopened.peek());
+        }
+        assertFalse(Files.exists(directory.resolve("test.spill.compact")));
+    }
+
+    @Test
+    @DisplayName("Should recover records after reopening and discard a torn tail")
+    void shouldRecoverRecordsAfterReopen() throws IOException {
+        Path file = directory.resolve("test.spill");
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(file, 1024)) {
+            spillLog.append(first);
+            spillLog.append(second);
+        }
+        // Simulate a crash in the middle of writing a third record
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(file, 1024)) {
+            assertEquals(2, spillLog.getRecordCount());
+            assertEquals(first, spillLog.peek());
+            spillLog.remove();
+            assertEquals(second, spillLog.peek());
+            spillLog.remove();
+            assertTrue(spillLog.isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("Should not replay records removed before reopening")
+    void shouldNotReplayRemovedRecords() throws IOException {
+        Path file = directory.resolve("test.spill");
+        try (SpillLog<List<SensorMeasurement>> spillLog = new SpillLog<>(file, 4096, new MeasurementBatchCodec(), true)) {
+            spillLog.append(first);
+            spillLog.append(second);
+            spillLog.append(first);
+            spillLog.remove();
+            spillLog.remove();
+        }
+
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(file, 4096)) {
+            assertEquals(1, spillLog.getRecordCount());
+            assertEquals(first, spillLog.peek());
+            assertTrue(spillLog.append(second));
+            spillLog.remove();
+        }
+
+        try (SpillLog<List<SensorMeasurement>> spillLog = open(file, 4096)) {
+            assertEquals(1, spillLog.getRecordCount());
+            assertEquals(second, spillLog.peek());
+        }
+    }
+
+    private static SpillLog<List<SensorMeasurement>> open(Path file, long maxBytes) throws IOException {
+        return new SpillLog<>(file, maxBytes, new MeasurementBatchCodec());
+    }
+}